@@ -1,5 +1,9 @@
 package sistema.biblioteca.colas;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Interfaz para manejar las colas de reservas de recursos
  */
@@ -12,4 +16,32 @@ public interface ColaReservas {
      * @return true si hay reservas pendientes, false en caso contrario
      */
     boolean tieneReservasPendientes(String idRecurso);
+    
+    /**
+     * Cuenta las reservas pendientes de un recurso. Por defecto solo distingue
+     * entre ninguna y alguna reserva.
+     * 
+     * @param idRecurso Identificador del recurso
+     * @return Cantidad de reservas pendientes
+     */
+    default int contarReservasPendientes(String idRecurso) {
+        return tieneReservasPendientes(idRecurso) ? 1 : 0;
+    }
+    
+    /**
+     * Verifica de una sola vez qué recursos de una colección tienen reservas pendientes.
+     * Las implementaciones pueden redefinirlo para resolver la consulta en bloque.
+     * 
+     * @param idsRecurso Identificadores de los recursos a verificar
+     * @return Conjunto con los identificadores que tienen reservas pendientes
+     */
+    default Set<String> filtrarConReservasPendientes(Collection<String> idsRecurso) {
+        Set<String> conReservas = new HashSet<>();
+        for (String idRecurso : idsRecurso) {
+            if (tieneReservasPendientes(idRecurso)) {
+                conReservas.add(idRecurso);
+            }
+        }
+        return conReservas;
+    }
 } 
\ No newline at end of file
@@ -21,6 +21,11 @@ public class ColaReservasSimple implements ColaReservas {
         return reservas != null && !reservas.isEmpty();
     }
     
+    @Override
+    public int contarReservasPendientes(String idRecurso) {
+        return getCantidadReservas(idRecurso);
+    }
+    
     /**
      * Agrega una reserva a la cola para un recurso específico
      * 
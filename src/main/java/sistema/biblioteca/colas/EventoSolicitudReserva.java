@@ -0,0 +1,54 @@
+package sistema.biblioteca.colas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder para el procesamiento de una solicitud de reserva
+ */
+@Name("sistema.biblioteca.SolicitudReserva")
+@Label("Solicitud de reserva")
+@Category({"Biblioteca", "Reservas"})
+@Description("Procesamiento de una solicitud de la cola del ProcesadorReservas")
+@StackTrace(false)
+class EventoSolicitudReserva extends Event {
+    
+    @Label("Tipo de solicitud")
+    String tipo;
+    
+    @Label("Id del recurso")
+    String idRecurso;
+    
+    @Label("Id de la reserva")
+    String idReserva;
+    
+    @Label("Id del usuario")
+    String idUsuario;
+    
+    @Label("Exitosa")
+    boolean exito;
+    
+    /**
+     * Termina la medición y registra el evento si la grabación lo requiere
+     * 
+     * @param solicitud La solicitud procesada
+     * @param exito Si la solicitud se procesó sin errores
+     */
+    void registrar(SolicitudReserva solicitud, boolean exito) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        
+        this.tipo = solicitud.getTipo() != null ? solicitud.getTipo().name() : null;
+        this.idRecurso = solicitud.getIdRecurso();
+        this.idReserva = solicitud.getIdReserva();
+        this.idUsuario = solicitud.getUsuario() != null ? solicitud.getUsuario().getId() : null;
+        this.exito = exito;
+        commit();
+    }
+}
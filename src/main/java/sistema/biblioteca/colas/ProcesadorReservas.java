@@ -86,26 +86,34 @@ public class ProcesadorReservas {
      * @param solicitud la solicitud a procesar
      */
     private void procesarSolicitud(SolicitudReserva solicitud) {
+        EventoSolicitudReserva evento = new EventoSolicitudReserva();
+        evento.begin();
+        boolean exito = false;
         try {
             switch (solicitud.getTipo()) {
                 case CREAR:
                     gestorReservas.crearReserva(solicitud.getIdRecurso(), solicitud.getUsuario());
+                    exito = true;
                     break;
                     
                 case CANCELAR:
                     gestorReservas.cancelarReserva(solicitud.getIdReserva());
+                    exito = true;
                     break;
                     
                 case COMPLETAR:
                     gestorReservas.completarReserva(solicitud.getIdReserva());
+                    exito = true;
                     break;
                     
                 case EXTENDER:
                     gestorReservas.extenderReserva(solicitud.getIdReserva(), solicitud.getDiasExtension());
+                    exito = true;
                     break;
                     
                 case VERIFICAR_EXPIRADAS:
                     // Este caso se maneja internamente en el GestorReservas
+                    exito = true;
                     break;
                     
                 default:
@@ -115,6 +123,8 @@ public class ProcesadorReservas {
             System.out.println("Error al procesar solicitud " + solicitud.getTipo() + ": " + e.getMessage());
         } catch (Exception e) {
             System.out.println("Error inesperado al procesar solicitud: " + e.getMessage());
+        } finally {
+            evento.registrar(solicitud, exito);
         }
     }
     
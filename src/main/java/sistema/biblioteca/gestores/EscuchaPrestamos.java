@@ -0,0 +1,17 @@
+package sistema.biblioteca.gestores;
+
+import sistema.biblioteca.modelos.Prestamo;
+
+/**
+ * Interfaz para recibir los cambios en el ciclo de vida de los préstamos
+ * (creación, renovación y devolución) sin tener que recorrerlos periódicamente
+ */
+public interface EscuchaPrestamos {
+    
+    /**
+     * Se invoca después de crear, renovar o devolver un préstamo
+     * 
+     * @param prestamo El préstamo modificado
+     */
+    void prestamoModificado(Prestamo prestamo);
+}
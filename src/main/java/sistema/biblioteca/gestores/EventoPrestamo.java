@@ -0,0 +1,59 @@
+package sistema.biblioteca.gestores;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder para la creación, devolución y renovación de préstamos.
+ * Con la grabación apagada, crear y terminar el evento no tiene costo apreciable;
+ * los campos solo se completan cuando el evento se va a registrar.
+ */
+@Name("sistema.biblioteca.Prestamo")
+@Label("Operación de préstamo")
+@Category({"Biblioteca", "Préstamos"})
+@Description("Creación, devolución o renovación de un préstamo")
+@StackTrace(false)
+class EventoPrestamo extends Event {
+    
+    static final String CREAR = "CREAR";
+    static final String DEVOLVER = "DEVOLVER";
+    static final String RENOVAR = "RENOVAR";
+    
+    @Label("Operación")
+    String operacion;
+    
+    @Label("Id del préstamo")
+    String idPrestamo;
+    
+    @Label("Id del recurso")
+    String idRecurso;
+    
+    @Label("Id del usuario")
+    String idUsuario;
+    
+    @Label("Exitosa")
+    boolean exito;
+    
+    /**
+     * Termina la medición del evento
+     * 
+     * @return true si el evento debe registrarse, y por lo tanto completarse con {@link #registrar}
+     */
+    boolean terminar() {
+        end();
+        return shouldCommit();
+    }
+    
+    void registrar(String operacion, String idPrestamo, String idRecurso, String idUsuario, boolean exito) {
+        this.operacion = operacion;
+        this.idPrestamo = idPrestamo;
+        this.idRecurso = idRecurso;
+        this.idUsuario = idUsuario;
+        this.exito = exito;
+        commit();
+    }
+}
@@ -6,24 +6,42 @@ import sistema.biblioteca.modelos.EstadoRecurso;
 import sistema.biblioteca.modelos.Prestamo;
 import sistema.biblioteca.modelos.RecursoBase;
 import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.servicios.PlantillaMensaje;
 import sistema.biblioteca.servicios.ServicioNotificaciones;
 import sistema.biblioteca.servicios.ValidadorRenovaciones;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class GestorPrestamos {
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final PlantillaMensaje PLANTILLA_PRESTAMO = PlantillaMensaje.compilar(
+            "Préstamo realizado con éxito. Recurso: {0} - Fecha devolución: {1}");
+    private static final PlantillaMensaje PLANTILLA_DEVOLUCION = PlantillaMensaje.compilar(
+            "Devolución registrada con éxito. Recurso: {0}");
+    private static final PlantillaMensaje PLANTILLA_RENOVACION = PlantillaMensaje.compilar(
+            "Tu préstamo para {0} ha sido renovado. Nueva fecha de devolución: {1}");
+    private static final PlantillaMensaje PLANTILLA_RESUMEN_RENOVACIONES = PlantillaMensaje.compilar(
+            "Se renovaron {0} de tus préstamos:");
+    private static final PlantillaMensaje PLANTILLA_LINEA_RENOVACION = PlantillaMensaje.compilar(
+            "\n- {0}: nueva fecha de devolución {1}");
+    
     private Map<String, Prestamo> prestamos;
     private GestorRecursos gestorRecursos;
     private GestorUsuarios gestorUsuarios;
     private ServicioNotificaciones servicioNotificaciones;
     private ValidadorRenovaciones validadorRenovaciones;
     private GestorReglaRenovacion gestorReglaRenovacion;
+    private final List<EscuchaPrestamos> escuchas;
+    private final AtomicInteger cantidadActivos;
     
     public GestorPrestamos(GestorRecursos gestorRecursos, GestorUsuarios gestorUsuarios,
                           ServicioNotificaciones servicioNotificaciones) {
@@ -35,6 +53,38 @@ public class GestorPrestamos {
         // Inicializar gestor de reglas y validador de renovaciones
         this.gestorReglaRenovacion = new GestorReglaRenovacion();
         this.validadorRenovaciones = null; // Se configura con setValidadorRenovaciones
+        this.escuchas = new CopyOnWriteArrayList<>();
+        this.cantidadActivos = new AtomicInteger(0);
+    }
+    
+    /**
+     * Registra un objeto que será avisado cada vez que se crea, renueva o devuelve un préstamo
+     * 
+     * @param escucha El objeto a avisar
+     */
+    public void agregarEscucha(EscuchaPrestamos escucha) {
+        if (escucha != null) {
+            escuchas.add(escucha);
+        }
+    }
+    
+    /**
+     * Deja de avisar a un objeto registrado con agregarEscucha
+     * 
+     * @param escucha El objeto que ya no debe ser avisado
+     */
+    public void quitarEscucha(EscuchaPrestamos escucha) {
+        escuchas.remove(escucha);
+    }
+    
+    private void avisarEscuchas(Prestamo prestamo) {
+        for (EscuchaPrestamos escucha : escuchas) {
+            try {
+                escucha.prestamoModificado(prestamo);
+            } catch (Exception e) {
+                System.out.println("Error al avisar el cambio del préstamo " + prestamo.getId() + ": " + e.getMessage());
+            }
+        }
     }
     
     /**
@@ -57,6 +107,22 @@ public class GestorPrestamos {
     
     public Prestamo crearPrestamo(String idRecurso, String idUsuario) 
             throws RecursoNoDisponibleException, UsuarioNoEncontradoException {
+        EventoPrestamo evento = new EventoPrestamo();
+        evento.begin();
+        Prestamo prestamo = null;
+        try {
+            prestamo = registrarPrestamo(idRecurso, idUsuario);
+            return prestamo;
+        } finally {
+            if (evento.terminar()) {
+                evento.registrar(EventoPrestamo.CREAR, prestamo != null ? prestamo.getId() : null,
+                        idRecurso, idUsuario, prestamo != null);
+            }
+        }
+    }
+    
+    private Prestamo registrarPrestamo(String idRecurso, String idUsuario) 
+            throws RecursoNoDisponibleException, UsuarioNoEncontradoException {
         RecursoBase recurso = gestorRecursos.buscarRecursoPorId(idRecurso);
         
         if (recurso == null) {
@@ -80,34 +146,68 @@ public class GestorPrestamos {
         
         // Registrar préstamo
         prestamos.put(idPrestamo, prestamo);
+        cantidadActivos.incrementAndGet();
+        avisarEscuchas(prestamo);
         
         // Enviar notificación
-        String mensaje = "Préstamo realizado con éxito. Recurso: " + recurso.getTitulo() 
-                + " - Fecha devolución: " + prestamo.getFechaDevolucionEstimada();
+        String mensaje = PLANTILLA_PRESTAMO.renderizar(recurso.getTitulo(), prestamo.getFechaDevolucionEstimada());
         servicioNotificaciones.enviarNotificacion(usuario, mensaje);
         
         return prestamo;
     }
     
     public void devolverPrestamo(String idPrestamo) {
+        EventoPrestamo evento = new EventoPrestamo();
+        evento.begin();
+        boolean devuelto = false;
+        try {
+            devuelto = aplicarDevolucion(idPrestamo);
+        } finally {
+            if (evento.terminar()) {
+                registrarEvento(evento, EventoPrestamo.DEVOLVER, idPrestamo, devuelto);
+            }
+        }
+    }
+    
+    private boolean aplicarDevolucion(String idPrestamo) {
         Prestamo prestamo = prestamos.get(idPrestamo);
+        if (prestamo == null) {
+            return false;
+        }
         
-        if (prestamo != null && prestamo.isActivo()) {
+        // El préstamo es el candado de su devolución y sus renovaciones
+        synchronized (prestamo) {
+            if (!prestamo.isActivo()) {
+                return false;
+            }
+            
             // Registrar devolución
             prestamo.registrarDevolucion();
             
             // Actualizar estado del recurso
-            RecursoBase recurso = prestamo.getRecurso();
-            recurso.actualizarEstado(EstadoRecurso.DISPONIBLE);
+            prestamo.getRecurso().actualizarEstado(EstadoRecurso.DISPONIBLE);
             
             // Actualizar contador de préstamos del usuario
-            Usuario usuario = prestamo.getUsuario();
-            usuario.decrementarPrestamos();
-            
-            // Notificar al usuario
-            String mensaje = "Devolución registrada con éxito. Recurso: " + recurso.getTitulo();
-            servicioNotificaciones.enviarNotificacion(usuario, mensaje);
+            prestamo.getUsuario().decrementarPrestamos();
+            cantidadActivos.decrementAndGet();
+            avisarEscuchas(prestamo);
         }
+        
+        // Notificar al usuario
+        String mensaje = PLANTILLA_DEVOLUCION.renderizar(prestamo.getRecurso().getTitulo());
+        servicioNotificaciones.enviarNotificacion(prestamo.getUsuario(), mensaje);
+        return true;
+    }
+    
+    /**
+     * Completa y registra un evento de préstamo con los ids de su recurso y su usuario.
+     * Solo se llama si la grabación de eventos lo requiere.
+     */
+    private void registrarEvento(EventoPrestamo evento, String operacion, String idPrestamo, boolean exito) {
+        Prestamo prestamo = idPrestamo != null ? prestamos.get(idPrestamo) : null;
+        evento.registrar(operacion, idPrestamo,
+                prestamo != null ? prestamo.getRecurso().getIdentificador() : null,
+                prestamo != null ? prestamo.getUsuario().getId() : null, exito);
     }
     
     public List<Prestamo> buscarPrestamosPorUsuario(String idUsuario) {
@@ -171,8 +271,13 @@ public class GestorPrestamos {
         return prestamos.size();
     }
     
+    /**
+     * Obtiene la cantidad de préstamos activos, que se lleva al crear y devolver
+     * préstamos para no tener que recorrerlos
+     * @return el número de préstamos activos
+     */
     public int getCantidadPrestamosActivos() {
-        return listarPrestamosActivos().size();
+        return cantidadActivos.get();
     }
     
     public int getCantidadPrestamosVencidos() {
@@ -192,6 +297,20 @@ public class GestorPrestamos {
      * @throws IllegalArgumentException si el préstamo no existe o no se puede renovar
      */
     public void renovarPrestamo(String idPrestamo, int diasExtension, String motivo, boolean forzarRenovacion) {
+        EventoPrestamo evento = new EventoPrestamo();
+        evento.begin();
+        boolean renovado = false;
+        try {
+            aplicarRenovacion(idPrestamo, diasExtension, motivo, forzarRenovacion);
+            renovado = true;
+        } finally {
+            if (evento.terminar()) {
+                registrarEvento(evento, EventoPrestamo.RENOVAR, idPrestamo, renovado);
+            }
+        }
+    }
+    
+    private void aplicarRenovacion(String idPrestamo, int diasExtension, String motivo, boolean forzarRenovacion) {
         if (diasExtension <= 0) {
             throw new IllegalArgumentException("Los días de extensión deben ser positivos");
         }
@@ -202,35 +321,38 @@ public class GestorPrestamos {
             throw new IllegalArgumentException("El préstamo con ID " + idPrestamo + " no existe");
         }
         
-        // Si no hay validador configurado, usar validación simple
-        if (validadorRenovaciones == null) {
-            if (!prestamo.isActivo()) {
-                throw new IllegalArgumentException("El préstamo ya ha sido devuelto y no puede renovarse");
+        // Validar y renovar con el préstamo bloqueado, para que no se devuelva en medio
+        synchronized (prestamo) {
+            // Si no hay validador configurado, usar validación simple
+            if (validadorRenovaciones == null) {
+                if (!prestamo.isActivo()) {
+                    throw new IllegalArgumentException("El préstamo ya ha sido devuelto y no puede renovarse");
+                }
+            } else if (!forzarRenovacion) {
+                // Usar el validador para verificar reglas complejas
+                ValidadorRenovaciones.ResultadoValidacion resultado = 
+                        validadorRenovaciones.validarRenovacion(prestamo);
+                
+                if (!resultado.isRenovacionPermitida()) {
+                    throw new IllegalArgumentException(
+                        "No se puede renovar el préstamo por los siguientes motivos:\n" + 
+                        resultado.getMensajesRechazo());
+                }
+                
+                // Usar los días sugeridos si no se forzó un valor específico
+                if (diasExtension <= 0) {
+                    diasExtension = resultado.getDiasSugeridos();
+                }
             }
-        } else if (!forzarRenovacion) {
-            // Usar el validador para verificar reglas complejas
-            ValidadorRenovaciones.ResultadoValidacion resultado = 
-                    validadorRenovaciones.validarRenovacion(prestamo);
             
-            if (!resultado.isRenovacionPermitida()) {
-                throw new IllegalArgumentException(
-                    "No se puede renovar el préstamo por los siguientes motivos:\n" + 
-                    resultado.getMensajesRechazo());
-            }
-            
-            // Usar los días sugeridos si no se forzó un valor específico
-            if (diasExtension <= 0) {
-                diasExtension = resultado.getDiasSugeridos();
-            }
+            // Aplicar la renovación utilizando el nuevo método
+            prestamo.renovar(diasExtension, motivo != null ? motivo : "Renovación estándar");
+            avisarEscuchas(prestamo);
         }
         
-        // Aplicar la renovación utilizando el nuevo método
-        prestamo.renovar(diasExtension, motivo != null ? motivo : "Renovación estándar");
-        
         // Notificar al usuario
-        String mensaje = "Tu préstamo para " + prestamo.getRecurso().getTitulo() + 
-                " ha sido renovado. Nueva fecha de devolución: " + 
-                prestamo.getFechaDevolucionEstimada().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        String mensaje = PLANTILLA_RENOVACION.renderizar(prestamo.getRecurso().getTitulo(),
+                prestamo.getFechaDevolucionEstimada().format(FORMATO_FECHA));
         
         servicioNotificaciones.enviarNotificacion(prestamo.getUsuario(), mensaje);
     }
@@ -249,6 +371,97 @@ public class GestorPrestamos {
         renovarPrestamo(idPrestamo, diasExtension, motivo, false);
     }
     
+    /**
+     * Renueva de una vez todos los préstamos activos que cumplen las reglas de renovación,
+     * por ejemplo al cierre de un período. Los préstamos se validan en paralelo, las reservas
+     * pendientes se consultan una vez por recurso y cada usuario recibe una sola notificación
+     * con el resumen de sus préstamos renovados.
+     * Cada préstamo se extiende los días que sugieren las reglas de su categoría.
+     * 
+     * @param motivo Motivo de la renovación (opcional)
+     * @return Resultado con la cantidad de préstamos renovados, rechazados y usuarios notificados
+     */
+    public ResultadoRenovacionMasiva renovarPrestamosElegibles(String motivo) {
+        List<Prestamo> activos = listarPrestamosActivos();
+        
+        // Sin validador configurado se aplican igual las reglas de renovación por categoría
+        ValidadorRenovaciones validador = validadorRenovaciones != null
+                ? validadorRenovaciones
+                : new ValidadorRenovaciones(gestorReglaRenovacion, null);
+        Map<String, ValidadorRenovaciones.ResultadoValidacion> validaciones = validador.validarLote(activos);
+        
+        Map<String, List<Prestamo>> elegiblesPorUsuario = activos.stream()
+                .filter(prestamo -> validaciones.get(prestamo.getId()).isRenovacionPermitida())
+                .collect(Collectors.groupingBy(prestamo -> prestamo.getUsuario().getId()));
+        int elegibles = elegiblesPorUsuario.values().stream().mapToInt(List::size).sum();
+        
+        String motivoRenovacion = motivo != null ? motivo : "Renovación masiva";
+        AtomicInteger renovados = new AtomicInteger(0);
+        AtomicInteger yaNoElegibles = new AtomicInteger(0);
+        AtomicInteger usuariosNotificados = new AtomicInteger(0);
+        
+        elegiblesPorUsuario.values().parallelStream().forEach(prestamosUsuario -> {
+            StringBuilder detalle = new StringBuilder();
+            int renovadosUsuario = 0;
+            
+            for (Prestamo prestamo : prestamosUsuario) {
+                synchronized (prestamo) {
+                    if (!prestamo.isActivo()) {
+                        continue; // Se devolvió mientras se validaba el lote
+                    }
+                    if (!validador.puedeRenovarse(prestamo)) {
+                        // Otra renovación lo dejó sin cumplir las reglas mientras se validaba el lote
+                        yaNoElegibles.incrementAndGet();
+                        continue;
+                    }
+                    prestamo.renovar(validaciones.get(prestamo.getId()).getDiasSugeridos(), motivoRenovacion);
+                    avisarEscuchas(prestamo);
+                }
+                renovadosUsuario++;
+                PLANTILLA_LINEA_RENOVACION.renderizarEn(detalle, prestamo.getRecurso().getTitulo(),
+                        prestamo.getFechaDevolucionEstimada().format(FORMATO_FECHA));
+            }
+            
+            if (renovadosUsuario > 0) {
+                renovados.addAndGet(renovadosUsuario);
+                usuariosNotificados.incrementAndGet();
+                String mensaje = PLANTILLA_RESUMEN_RENOVACIONES.renderizar(renovadosUsuario) + detalle;
+                servicioNotificaciones.enviarNotificacion(prestamosUsuario.get(0).getUsuario(), mensaje);
+            }
+        });
+        
+        // Los préstamos devueltos durante el lote no se renuevan, pero tampoco se rechazaron
+        return new ResultadoRenovacionMasiva(renovados.get(), activos.size() - elegibles + yaNoElegibles.get(),
+                usuariosNotificados.get());
+    }
+    
+    /**
+     * Resultado de una renovación masiva de préstamos
+     */
+    public static class ResultadoRenovacionMasiva {
+        private final int prestamosRenovados;
+        private final int prestamosRechazados;
+        private final int usuariosNotificados;
+        
+        public ResultadoRenovacionMasiva(int prestamosRenovados, int prestamosRechazados, int usuariosNotificados) {
+            this.prestamosRenovados = prestamosRenovados;
+            this.prestamosRechazados = prestamosRechazados;
+            this.usuariosNotificados = usuariosNotificados;
+        }
+        
+        public int getPrestamosRenovados() {
+            return prestamosRenovados;
+        }
+        
+        public int getPrestamosRechazados() {
+            return prestamosRechazados;
+        }
+        
+        public int getUsuariosNotificados() {
+            return usuariosNotificados;
+        }
+    }
+    
     /**
      * Obtiene el historial de renovaciones de un préstamo
      * @param idPrestamo ID del préstamo
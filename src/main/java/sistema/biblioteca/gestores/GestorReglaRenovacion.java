@@ -3,47 +3,94 @@ package sistema.biblioteca.gestores;
 import sistema.biblioteca.modelos.CategoriaRecurso;
 import sistema.biblioteca.modelos.RecursoBase;
 import sistema.biblioteca.modelos.ReglaRenovacion;
-import sistema.biblioteca.modelos.Usuario;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Gestor para administrar las reglas de renovación de préstamos.
  * Permite definir reglas específicas por categoría de recurso 
  * y verificar si una renovación es posible.
+ * 
+ * Las reglas se guardan en una tabla inmutable indexada por el ordinal de la categoría,
+ * que tiene una regla para cada categoría. Los cambios construyen una tabla nueva y la
+ * publican de una sola vez, así que las consultas nunca se bloquean ni ven una tabla
+ * a medio actualizar, y las reglas pueden recargarse mientras el sistema está en uso.
+ * {@link #evaluar} devuelve de una sola consulta todas las decisiones de la regla.
  */
 public class GestorReglaRenovacion {
-    private Map<CategoriaRecurso, ReglaRenovacion> reglasRenovacion;
+    private volatile ReglaRenovacion[] reglasPorCategoria;
+    private volatile PoliticaRenovacion politica;
+    private long ultimaVersionPolitica;
+    
+    /** Bit de la decisión que indica que el préstamo no alcanzó el máximo de renovaciones */
+    public static final long PUEDE_RENOVARSE = 1L;
+    
+    /** Bit de la decisión que indica que la renovación requiere autorización */
+    public static final long REQUIERE_AUTORIZACION = 1L << 1;
     
     // Valores por defecto
     private static final int MAXIMO_RENOVACIONES_DEFAULT = 2;
     private static final int DIAS_POR_RENOVACION_DEFAULT = 7;
+    private static final ReglaRenovacion REGLA_SIN_CATEGORIA = new ReglaRenovacion(
+            null, MAXIMO_RENOVACIONES_DEFAULT, DIAS_POR_RENOVACION_DEFAULT, false);
     
     public GestorReglaRenovacion() {
-        this.reglasRenovacion = new HashMap<>();
-        inicializarReglasDefault();
+        this.reglasPorCategoria = construirTabla(reglasDefault());
     }
     
     /**
-     * Inicializa reglas por defecto para cada categoría
+     * Crea las reglas por defecto para cada categoría
      */
-    private void inicializarReglasDefault() {
+    private static Collection<ReglaRenovacion> reglasDefault() {
+        List<ReglaRenovacion> reglas = new ArrayList<>();
+        
         // Académicos: máximo 3 renovaciones de 10 días cada una
-        agregarRegla(new ReglaRenovacion(CategoriaRecurso.ACADEMICO, 3, 10, false));
+        reglas.add(new ReglaRenovacion(CategoriaRecurso.ACADEMICO, 3, 10, false));
         
         // Literatura: máximo 2 renovaciones de 7 días cada una
-        agregarRegla(new ReglaRenovacion(CategoriaRecurso.LITERATURA, 2, 7, false));
+        reglas.add(new ReglaRenovacion(CategoriaRecurso.LITERATURA, 2, 7, false));
         
         // Histórico: máximo 1 renovación de 5 días, requiere autorización
-        agregarRegla(new ReglaRenovacion(CategoriaRecurso.HISTORICO, 1, 5, true));
+        reglas.add(new ReglaRenovacion(CategoriaRecurso.HISTORICO, 1, 5, true));
         
         // Referencia: máximo 1 renovación de 3 días
-        agregarRegla(new ReglaRenovacion(CategoriaRecurso.REFERENCIA, 1, 3, false));
+        reglas.add(new ReglaRenovacion(CategoriaRecurso.REFERENCIA, 1, 3, false));
         
         // Default para otras categorías (multimedia, investigación, etc.)
-        agregarRegla(new ReglaRenovacion(CategoriaRecurso.MULTIMEDIA, 2, 5, false));
-        agregarRegla(new ReglaRenovacion(CategoriaRecurso.INVESTIGACION, 3, 14, true));
+        reglas.add(new ReglaRenovacion(CategoriaRecurso.MULTIMEDIA, 2, 5, false));
+        reglas.add(new ReglaRenovacion(CategoriaRecurso.INVESTIGACION, 3, 14, true));
+        
+        return reglas;
+    }
+    
+    /**
+     * Construye una tabla con una regla por categoría; las categorías sin regla
+     * reciben la regla por defecto
+     */
+    private static ReglaRenovacion[] construirTabla(Collection<ReglaRenovacion> reglasNuevas) {
+        Map<CategoriaRecurso, ReglaRenovacion> reglas = new EnumMap<>(CategoriaRecurso.class);
+        for (ReglaRenovacion regla : reglasNuevas) {
+            if (regla != null && regla.getCategoriaRecurso() != null) {
+                reglas.put(regla.getCategoriaRecurso(), regla);
+            }
+        }
+        
+        CategoriaRecurso[] categorias = CategoriaRecurso.values();
+        ReglaRenovacion[] tabla = new ReglaRenovacion[categorias.length];
+        for (CategoriaRecurso categoria : categorias) {
+            ReglaRenovacion regla = reglas.get(categoria);
+            tabla[categoria.ordinal()] = regla != null ? regla : new ReglaRenovacion(
+                categoria, 
+                MAXIMO_RENOVACIONES_DEFAULT, 
+                DIAS_POR_RENOVACION_DEFAULT,
+                false
+            );
+        }
+        return tabla;
     }
     
     /**
@@ -52,10 +99,59 @@ public class GestorReglaRenovacion {
      * 
      * @param regla La regla de renovación a agregar
      */
-    public void agregarRegla(ReglaRenovacion regla) {
-        if (regla != null) {
-            reglasRenovacion.put(regla.getCategoriaRecurso(), regla);
+    public synchronized void agregarRegla(ReglaRenovacion regla) {
+        if (regla == null || regla.getCategoriaRecurso() == null) {
+            return;
+        }
+        
+        ReglaRenovacion[] nuevaTabla = reglasPorCategoria.clone();
+        nuevaTabla[regla.getCategoriaRecurso().ordinal()] = regla;
+        reglasPorCategoria = nuevaTabla;
+    }
+    
+    /**
+     * Reemplaza todas las reglas de una vez. Las categorías que no aparecen
+     * en la colección vuelven a la regla por defecto.
+     * 
+     * @param reglas Las nuevas reglas de renovación
+     */
+    public synchronized void reemplazarReglas(Collection<ReglaRenovacion> reglas) {
+        if (reglas == null) {
+            throw new IllegalArgumentException("Las reglas no pueden ser nulas");
         }
+        
+        reglasPorCategoria = construirTabla(reglas);
+    }
+    
+    /**
+     * Compila y publica una nueva política de renovación de la biblioteca, que se suma
+     * a las reglas por categoría. Si el texto no compila, la política anterior sigue vigente.
+     * 
+     * @param texto Reglas de la política (ver {@link PoliticaRenovacion})
+     * @return La versión asignada a la nueva política
+     * @throws IllegalArgumentException si alguna regla no es válida
+     */
+    public synchronized long cargarPolitica(String texto) {
+        PoliticaRenovacion nueva = PoliticaRenovacion.compilar(texto, ultimaVersionPolitica + 1);
+        ultimaVersionPolitica = nueva.getVersion();
+        politica = nueva;
+        return nueva.getVersion();
+    }
+    
+    /**
+     * Quita la política de renovación; quedan solo las reglas por categoría
+     */
+    public void quitarPolitica() {
+        politica = null;
+    }
+    
+    /**
+     * Obtiene la política de renovación vigente
+     * 
+     * @return La política compilada, o null si no hay ninguna
+     */
+    public PoliticaRenovacion getPolitica() {
+        return politica;
     }
     
     /**
@@ -65,20 +161,46 @@ public class GestorReglaRenovacion {
      * @return La regla de renovación correspondiente o una regla por defecto
      */
     public ReglaRenovacion obtenerRegla(CategoriaRecurso categoria) {
-        ReglaRenovacion regla = reglasRenovacion.get(categoria);
+        if (categoria == null) {
+            return REGLA_SIN_CATEGORIA;
+        }
         
-        if (regla == null) {
-            // Si no hay regla definida para esta categoría, crear una por defecto
-            regla = new ReglaRenovacion(
-                categoria, 
-                MAXIMO_RENOVACIONES_DEFAULT, 
-                DIAS_POR_RENOVACION_DEFAULT,
-                false
-            );
-            agregarRegla(regla);
+        return reglasPorCategoria[categoria.ordinal()];
+    }
+    
+    /**
+     * Evalúa de una sola vez todas las reglas que se aplican a la renovación de un recurso,
+     * sin crear objetos: la decisión combina {@link #PUEDE_RENOVARSE} y
+     * {@link #REQUIERE_AUTORIZACION} con los días por renovación, que se leen con {@link #diasDe(long)}.
+     * 
+     * @param recurso El recurso a renovar
+     * @param cantidadRenovacionesActual Número actual de renovaciones del préstamo
+     * @return Las decisiones de la regla de la categoría del recurso
+     */
+    public long evaluar(RecursoBase recurso, int cantidadRenovacionesActual) {
+        if (recurso == null) {
+            return (long) DIAS_POR_RENOVACION_DEFAULT << 32;
         }
         
-        return regla;
+        ReglaRenovacion regla = obtenerRegla(recurso.getCategoria());
+        long decision = (long) regla.getDiasPorRenovacion() << 32;
+        if (cantidadRenovacionesActual < regla.getMaximoRenovaciones()) {
+            decision |= PUEDE_RENOVARSE;
+        }
+        if (regla.requiereAutorizacion()) {
+            decision |= REQUIERE_AUTORIZACION;
+        }
+        return decision;
+    }
+    
+    /**
+     * Obtiene los días por renovación de una decisión
+     * 
+     * @param decision Decisión devuelta por {@link #evaluar}
+     * @return Los días por renovación de la regla
+     */
+    public static int diasDe(long decision) {
+        return (int) (decision >> 32);
     }
     
     /**
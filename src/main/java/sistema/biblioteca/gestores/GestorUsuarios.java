@@ -2,16 +2,20 @@ package sistema.biblioteca.gestores;
 
 import sistema.biblioteca.excepciones.UsuarioNoEncontradoException;
 import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.repositorios.RepositorioUsuarios;
+import sistema.biblioteca.repositorios.RepositorioUsuariosMemoria;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class GestorUsuarios {
-    private Map<String, Usuario> usuarios;
+    private final RepositorioUsuariosMemoria usuarios;
     
     public GestorUsuarios() {
-        this.usuarios = new HashMap<>();
+        this.usuarios = new RepositorioUsuariosMemoria();
     }
     
     public void registrarUsuario(Usuario usuario) {
@@ -19,39 +23,47 @@ public class GestorUsuarios {
             return;
         }
         
-        usuarios.put(usuario.getId(), usuario);
+        usuarios.guardar(usuario);
     }
     
     public Usuario buscarUsuarioPorId(String id) throws UsuarioNoEncontradoException {
-        if (!usuarios.containsKey(id)) {
+        Usuario usuario = usuarios.buscarPorId(id);
+        if (usuario == null) {
             throw new UsuarioNoEncontradoException("No se encontró usuario con ID: " + id);
         }
         
-        return usuarios.get(id);
+        return usuario;
     }
     
     public List<Usuario> listarUsuarios() {
-        return new ArrayList<>(usuarios.values());
+        return usuarios.obtenerTodos();
+    }
+    
+    /**
+     * Obtiene el repositorio de usuarios, para recorrerlos por páginas o como stream
+     * sin copiar la lista completa
+     * 
+     * @return Repositorio de usuarios del gestor
+     */
+    public RepositorioUsuarios getRepositorio() {
+        return usuarios;
     }
     
     public List<Usuario> buscarUsuariosPorNombre(String nombre) {
-        List<Usuario> resultado = new ArrayList<>();
-        
         if (nombre == null || nombre.isEmpty()) {
-            return resultado;
+            return new ArrayList<>();
         }
         
-        for (Usuario usuario : usuarios.values()) {
-            if (usuario.getNombre().toLowerCase().contains(nombre.toLowerCase())) {
-                resultado.add(usuario);
-            }
+        String nombreBuscado = nombre.toLowerCase();
+        try (Stream<Usuario> todos = usuarios.stream()) {
+            return todos
+                    .filter(usuario -> usuario.getNombre().toLowerCase().contains(nombreBuscado))
+                    .collect(Collectors.toCollection(ArrayList::new));
         }
-        
-        return resultado;
     }
     
     public boolean existeUsuario(String id) {
-        return usuarios.containsKey(id);
+        return usuarios.existe(id);
     }
     
     public void eliminarUsuario(String id) throws UsuarioNoEncontradoException {
@@ -59,21 +71,34 @@ public class GestorUsuarios {
             throw new UsuarioNoEncontradoException("No se puede eliminar. Usuario no encontrado: " + id);
         }
         
-        usuarios.remove(id);
+        usuarios.eliminar(id);
     }
     
     public int getCantidadUsuarios() {
-        return usuarios.size();
+        return usuarios.contar();
     }
     
     // Método para obtener usuarios con más prestamos (para reportes)
     public List<Usuario> getUsuariosMasActivos(int limite) {
-        List<Usuario> todos = new ArrayList<>(usuarios.values());
+        if (limite <= 0) {
+            return new ArrayList<>();
+        }
         
-        // Ordena por cantidad de préstamos (descendente)
-        todos.sort((u1, u2) -> Integer.compare(u2.getCantidadPrestamos(), u1.getCantidadPrestamos()));
+        // Conserva solo los "limite" usuarios más activos; el menos activo queda en la cabeza
+        Comparator<Usuario> porPrestamos = Comparator.comparingInt(Usuario::getCantidadPrestamos);
+        PriorityQueue<Usuario> masActivos = new PriorityQueue<>(porPrestamos);
+        try (Stream<Usuario> todos = usuarios.stream()) {
+            todos.forEach(usuario -> {
+                masActivos.offer(usuario);
+                if (masActivos.size() > limite) {
+                    masActivos.poll();
+                }
+            });
+        }
         
-        // Devuelve solo los primeros "limite" usuarios
-        return todos.subList(0, Math.min(limite, todos.size()));
+        // Ordena por cantidad de préstamos (descendente)
+        List<Usuario> resultado = new ArrayList<>(masActivos);
+        resultado.sort(porPrestamos.reversed());
+        return resultado;
     }
 } 
\ No newline at end of file
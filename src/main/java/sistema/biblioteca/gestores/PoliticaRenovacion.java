@@ -0,0 +1,344 @@
+package sistema.biblioteca.gestores;
+
+import sistema.biblioteca.modelos.CategoriaRecurso;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Política de renovación definida por la biblioteca, compilada a una tabla de decisión.
+ *
+ * La política se escribe con una regla por línea; las líneas vacías y las que empiezan
+ * con # se ignoran. Cada regla tiene la forma
+ * <pre>
+ * si &lt;condición&gt; [y &lt;condición&gt;...] entonces &lt;acción&gt;
+ * siempre entonces &lt;acción&gt;
+ * </pre>
+ * Las condiciones pueden usar {@code categoria = A, B, ...} o comparar con un número
+ * ({@code =, <, <=, >, >=}) los atributos {@code renovaciones} (renovaciones del préstamo),
+ * {@code prestamosUsuario} (préstamos activos del usuario), {@code reservas} (reservas
+ * pendientes del recurso) y {@code diasVencido}. Las acciones son {@code RENOVAR [días]},
+ * {@code AUTORIZAR [días]} y {@code RECHAZAR}. Se aplica la primera regla que se cumple.
+ *
+ * Cada regla se compila a una fila de rangos enteros y una máscara de categorías, así que
+ * evaluar la política son solo comparaciones de primitivos sobre arreglos planos.
+ */
+public class PoliticaRenovacion {
+    
+    /**
+     * Acción que decide una regla de la política
+     */
+    public enum AccionRenovacion {
+        RENOVAR,
+        AUTORIZAR,
+        RECHAZAR
+    }
+    
+    /** Decisión que se devuelve cuando ninguna regla se cumple */
+    public static final int SIN_DECISION = 0;
+    
+    /** Máximo de días que puede indicar una acción */
+    public static final int DIAS_MAXIMOS = 365;
+    
+    /** Cantidad de reservas que indica que todavía no se contaron */
+    public static final int RESERVAS_SIN_CONTAR = -1;
+    
+    /** Decisión que se devuelve cuando hace falta contar las reservas para decidir */
+    public static final int FALTAN_RESERVAS = -1;
+    
+    private static final AccionRenovacion[] ACCIONES = AccionRenovacion.values();
+    private static final String[] ATRIBUTOS = {"renovaciones", "prestamosUsuario", "reservas", "diasVencido"};
+    private static final int COLUMNAS = ATRIBUTOS.length * 2;
+    private static final long TODAS_LAS_CATEGORIAS = -1L;
+    private static final long BIT_SIN_CATEGORIA = Long.MIN_VALUE;
+    
+    static {
+        if (CategoriaRecurso.values().length > 63) {
+            throw new IllegalStateException("La máscara de categorías admite hasta 63 categorías");
+        }
+    }
+    
+    private final long version;
+    private final String texto;
+    private final int cantidadReglas;
+    private final long[] categorias;
+    private final int[] limites;
+    private final int[] decisiones;
+    
+    private PoliticaRenovacion(long version, String texto, List<Long> filasCategorias,
+                               List<int[]> filasLimites, List<Integer> filasDecisiones) {
+        this.version = version;
+        this.texto = texto;
+        this.cantidadReglas = filasDecisiones.size();
+        this.categorias = new long[cantidadReglas];
+        this.limites = new int[cantidadReglas * COLUMNAS];
+        this.decisiones = new int[cantidadReglas];
+        
+        for (int fila = 0; fila < cantidadReglas; fila++) {
+            categorias[fila] = filasCategorias.get(fila);
+            int[] limitesFila = filasLimites.get(fila);
+            System.arraycopy(limitesFila, 0, limites, fila * COLUMNAS, COLUMNAS);
+            decisiones[fila] = filasDecisiones.get(fila);
+        }
+    }
+    
+    /**
+     * Compila el texto de una política
+     *
+     * @param texto Reglas de la política, una por línea
+     * @param version Versión que se asigna a la política compilada
+     * @return La política compilada
+     * @throws IllegalArgumentException si alguna regla no es válida
+     */
+    public static PoliticaRenovacion compilar(String texto, long version) {
+        if (texto == null) {
+            throw new IllegalArgumentException("El texto de la política no puede ser nulo");
+        }
+        
+        List<Long> filasCategorias = new ArrayList<>();
+        List<int[]> filasLimites = new ArrayList<>();
+        List<Integer> filasDecisiones = new ArrayList<>();
+        
+        String[] lineas = texto.split("\\R");
+        for (int i = 0; i < lineas.length; i++) {
+            String linea = lineas[i].trim();
+            if (linea.isEmpty() || linea.startsWith("#")) {
+                continue;
+            }
+            
+            try {
+                int[] limitesFila = new int[COLUMNAS];
+                for (int atributo = 0; atributo < ATRIBUTOS.length; atributo++) {
+                    limitesFila[atributo * 2] = Integer.MIN_VALUE;
+                    limitesFila[atributo * 2 + 1] = Integer.MAX_VALUE;
+                }
+                
+                int separador = linea.indexOf(" entonces ");
+                if (separador < 0) {
+                    throw new IllegalArgumentException("falta 'entonces'");
+                }
+                long categoriasFila = compilarCondiciones(linea.substring(0, separador).trim(), limitesFila);
+                
+                filasCategorias.add(categoriasFila);
+                filasLimites.add(limitesFila);
+                filasDecisiones.add(compilarAccion(linea.substring(separador + " entonces ".length()).trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "Regla inválida en la línea " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        
+        return new PoliticaRenovacion(version, texto, filasCategorias, filasLimites, filasDecisiones);
+    }
+    
+    /**
+     * Compila las condiciones de una regla en sus rangos
+     *
+     * @return Máscara con las categorías que admite la regla
+     */
+    private static long compilarCondiciones(String condiciones, int[] limitesFila) {
+        long categoriasFila = TODAS_LAS_CATEGORIAS;
+        if (condiciones.equals("siempre")) {
+            return categoriasFila;
+        }
+        if (!condiciones.startsWith("si ")) {
+            throw new IllegalArgumentException("la regla debe empezar con 'si' o 'siempre'");
+        }
+        
+        for (String condicion : condiciones.substring(3).split(" y ")) {
+            condicion = condicion.trim();
+            if (condicion.startsWith("categoria")) {
+                categoriasFila &= compilarCategorias(condicion.substring("categoria".length()).trim());
+                if (categoriasFila == 0) {
+                    throw new IllegalArgumentException("las condiciones sobre 'categoria' nunca se cumplen a la vez");
+                }
+            } else {
+                compilarComparacion(condicion, limitesFila);
+            }
+        }
+        return categoriasFila;
+    }
+    
+    private static long compilarCategorias(String condicion) {
+        if (!condicion.startsWith("=")) {
+            throw new IllegalArgumentException("la categoría solo admite '='");
+        }
+        
+        long mascara = 0;
+        for (String nombre : condicion.substring(1).split(",")) {
+            try {
+                mascara |= 1L << CategoriaRecurso.valueOf(nombre.trim()).ordinal();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("categoría desconocida '" + nombre.trim() + "'");
+            }
+        }
+        return mascara;
+    }
+    
+    private static void compilarComparacion(String condicion, int[] limitesFila) {
+        int inicioOperador = 0;
+        while (inicioOperador < condicion.length() && "<>=".indexOf(condicion.charAt(inicioOperador)) < 0) {
+            inicioOperador++;
+        }
+        int finOperador = inicioOperador;
+        while (finOperador < condicion.length() && "<>=".indexOf(condicion.charAt(finOperador)) >= 0) {
+            finOperador++;
+        }
+        if (inicioOperador == condicion.length()) {
+            throw new IllegalArgumentException("condición inválida '" + condicion + "'");
+        }
+        
+        int atributo = indiceAtributo(condicion.substring(0, inicioOperador).trim());
+        String operador = condicion.substring(inicioOperador, finOperador);
+        int valor;
+        try {
+            valor = Integer.parseInt(condicion.substring(finOperador).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("se esperaba un número en '" + condicion + "'");
+        }
+        
+        int minimo = Integer.MIN_VALUE;
+        int maximo = Integer.MAX_VALUE;
+        switch (operador) {
+            case "=":
+                minimo = valor;
+                maximo = valor;
+                break;
+            case "<":
+                if (valor == Integer.MIN_VALUE) {
+                    throw new IllegalArgumentException("la condición '" + condicion + "' nunca se cumple");
+                }
+                maximo = valor - 1;
+                break;
+            case "<=":
+                maximo = valor;
+                break;
+            case ">":
+                if (valor == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("la condición '" + condicion + "' nunca se cumple");
+                }
+                minimo = valor + 1;
+                break;
+            case ">=":
+                minimo = valor;
+                break;
+            default:
+                throw new IllegalArgumentException("operador desconocido '" + operador + "'");
+        }
+        
+        // Varias condiciones sobre el mismo atributo se combinan en un solo rango
+        limitesFila[atributo * 2] = Math.max(limitesFila[atributo * 2], minimo);
+        limitesFila[atributo * 2 + 1] = Math.min(limitesFila[atributo * 2 + 1], maximo);
+        if (limitesFila[atributo * 2] > limitesFila[atributo * 2 + 1]) {
+            throw new IllegalArgumentException("las condiciones sobre '" + ATRIBUTOS[atributo] + "' nunca se cumplen a la vez");
+        }
+    }
+    
+    private static int indiceAtributo(String nombre) {
+        for (int i = 0; i < ATRIBUTOS.length; i++) {
+            if (ATRIBUTOS[i].equals(nombre)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("atributo desconocido '" + nombre + "'");
+    }
+    
+    private static int compilarAccion(String texto) {
+        String[] partes = texto.split("\\s+");
+        AccionRenovacion accion;
+        try {
+            accion = AccionRenovacion.valueOf(partes[0]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("acción desconocida '" + partes[0] + "'");
+        }
+        
+        int dias = 0;
+        if (partes.length > 2 || (partes.length == 2 && accion == AccionRenovacion.RECHAZAR)) {
+            throw new IllegalArgumentException("acción inválida '" + texto + "'");
+        }
+        if (partes.length == 2) {
+            try {
+                dias = Integer.parseInt(partes[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("se esperaba la cantidad de días en '" + texto + "'");
+            }
+            if (dias <= 0 || dias > DIAS_MAXIMOS) {
+                throw new IllegalArgumentException(
+                    "los días deben estar entre 1 y " + DIAS_MAXIMOS + " en '" + texto + "'");
+            }
+        }
+        return (dias << 8) | (accion.ordinal() + 1);
+    }
+    
+    /**
+     * Evalúa la política para una renovación. Si todavía no se contaron las reservas se
+     * puede pasar {@link #RESERVAS_SIN_CONTAR}: en ese caso, si la primera regla que cumple
+     * el resto de sus condiciones consulta las reservas, devuelve {@link #FALTAN_RESERVAS}
+     * y hay que volver a evaluar con la cantidad de reservas. Así las reservas se cuentan
+     * solo cuando hace falta, sin crear objetos.
+     *
+     * @param categoria Categoría del recurso (puede ser null)
+     * @param renovaciones Renovaciones que ya tiene el préstamo
+     * @param prestamosUsuario Préstamos activos del usuario
+     * @param reservas Reservas pendientes del recurso, o {@link #RESERVAS_SIN_CONTAR}
+     * @param diasVencido Días de atraso del préstamo (0 si no está vencido)
+     * @return La decisión de la primera regla que se cumple, {@link #SIN_DECISION} o
+     *         {@link #FALTAN_RESERVAS}; se interpreta con {@link #accionDe(int)} y {@link #diasDe(int)}
+     */
+    public int evaluar(CategoriaRecurso categoria, int renovaciones, int prestamosUsuario,
+                       int reservas, int diasVencido) {
+        long bitCategoria = categoria != null ? 1L << categoria.ordinal() : BIT_SIN_CATEGORIA;
+        
+        for (int fila = 0, base = 0; fila < cantidadReglas; fila++, base += COLUMNAS) {
+            if ((categorias[fila] & bitCategoria) == 0
+                    || renovaciones < limites[base] || renovaciones > limites[base + 1]
+                    || prestamosUsuario < limites[base + 2] || prestamosUsuario > limites[base + 3]
+                    || diasVencido < limites[base + 6] || diasVencido > limites[base + 7]) {
+                continue;
+            }
+            if (limites[base + 4] != Integer.MIN_VALUE || limites[base + 5] != Integer.MAX_VALUE) {
+                if (reservas == RESERVAS_SIN_CONTAR) {
+                    return FALTAN_RESERVAS;
+                }
+                if (reservas < limites[base + 4] || reservas > limites[base + 5]) {
+                    continue;
+                }
+            }
+            return decisiones[fila];
+        }
+        return SIN_DECISION;
+    }
+    
+    /**
+     * Obtiene la acción de una decisión
+     *
+     * @param decision Decisión devuelta por {@link #evaluar}
+     * @return La acción, o null si no hubo decisión
+     */
+    public static AccionRenovacion accionDe(int decision) {
+        int codigo = decision & 0xFF;
+        return codigo == 0 || decision == FALTAN_RESERVAS ? null : ACCIONES[codigo - 1];
+    }
+    
+    /**
+     * Obtiene los días de renovación de una decisión
+     *
+     * @param decision Decisión devuelta por {@link #evaluar}
+     * @return Los días indicados por la regla, o 0 si la regla no los indica
+     */
+    public static int diasDe(int decision) {
+        return decision >>> 8;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public String getTexto() {
+        return texto;
+    }
+    
+    public int getCantidadReglas() {
+        return cantidadReglas;
+    }
+}
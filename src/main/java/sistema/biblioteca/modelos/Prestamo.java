@@ -59,7 +59,7 @@ public class Prestamo {
         return activo;
     }
     
-    public void registrarDevolucion() {
+    public synchronized void registrarDevolucion() {
         this.fechaDevolucionReal = LocalDateTime.now();
         this.activo = false;
     }
@@ -98,7 +98,7 @@ public class Prestamo {
         return new ArrayList<>(historialRenovaciones);
     }
     
-    public void renovar(int diasExtension, String motivo) {
+    public synchronized void renovar(int diasExtension, String motivo) {
         if (!isActivo()) {
             throw new IllegalStateException("No se puede renovar un préstamo que ya fue devuelto");
         }
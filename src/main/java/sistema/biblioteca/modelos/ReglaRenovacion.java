@@ -5,10 +5,10 @@ package sistema.biblioteca.modelos;
  * Permite establecer límites específicos por categoría de recurso.
  */
 public class ReglaRenovacion {
-    private CategoriaRecurso categoriaRecurso;
-    private int maximoRenovaciones;
-    private int diasPorRenovacion;
-    private boolean requiereAutorizacion;
+    private final CategoriaRecurso categoriaRecurso;
+    private final int maximoRenovaciones;
+    private final int diasPorRenovacion;
+    private final boolean requiereAutorizacion;
     
     public ReglaRenovacion(CategoriaRecurso categoriaRecurso, int maximoRenovaciones, 
                          int diasPorRenovacion, boolean requiereAutorizacion) {
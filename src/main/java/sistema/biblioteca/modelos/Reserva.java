@@ -8,7 +8,7 @@ public class Reserva {
     private Usuario usuario;
     private LocalDateTime fechaReserva;
     private LocalDateTime fechaExpiracion;
-    private EstadoReserva estado;
+    private volatile EstadoReserva estado;
     
     public enum EstadoReserva {
         PENDIENTE,
@@ -58,18 +58,25 @@ public class Reserva {
         return estado;
     }
     
-    public void completar() {
+    public synchronized void completar() {
         this.estado = EstadoReserva.COMPLETADA;
     }
     
-    public void cancelar() {
+    public synchronized void cancelar() {
         this.estado = EstadoReserva.CANCELADA;
     }
     
-    public void expirar() {
-        if (this.estado == EstadoReserva.PENDIENTE) {
-            this.estado = EstadoReserva.EXPIRADA;
+    /**
+     * Marca la reserva como expirada si sigue pendiente
+     * 
+     * @return true si esta llamada la expiró, false si ya no estaba pendiente
+     */
+    public synchronized boolean expirar() {
+        if (this.estado != EstadoReserva.PENDIENTE) {
+            return false;
         }
+        this.estado = EstadoReserva.EXPIRADA;
+        return true;
     }
     
     public boolean estaPendiente() {
@@ -96,7 +103,7 @@ public class Reserva {
         return LocalDateTime.now().isAfter(fechaExpiracion);
     }
     
-    public void extenderExpiracion(int dias) {
+    public synchronized void extenderExpiracion(int dias) {
         if (dias > 0 && this.estado == EstadoReserva.PENDIENTE) {
             this.fechaExpiracion = this.fechaExpiracion.plusDays(dias);
         }
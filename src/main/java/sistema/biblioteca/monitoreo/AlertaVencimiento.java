@@ -2,10 +2,18 @@ package sistema.biblioteca.monitoreo;
 
 import sistema.biblioteca.modelos.Prestamo;
 import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.servicios.LoteNotificaciones;
+import sistema.biblioteca.servicios.PlantillaMensaje;
 import sistema.biblioteca.servicios.ProcesadorNotificaciones;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Clase para gestionar alertas específicas de vencimiento de préstamos
@@ -13,6 +21,10 @@ import java.time.temporal.ChronoUnit;
 public class AlertaVencimiento {
     
     private final ProcesadorNotificaciones procesadorNotificaciones;
+    private final RegistroAlertasEnviadas registroAlertas;
+    private final PlantillaMensaje plantillaProximoVencimiento;
+    private final PlantillaMensaje plantillaPrestamoVencido;
+    private final PlantillaMensaje plantillaPrestamoVencidoSms;
     
     // Configuración de días para las alertas
     private int diasAlertaPreventiva1 = 3; // Primera alerta preventiva (3 días antes)
@@ -20,7 +32,32 @@ public class AlertaVencimiento {
     private int diasRecordatorioVencido = 1; // Recordatorio después de vencido (cada día)
     
     public AlertaVencimiento(ProcesadorNotificaciones procesadorNotificaciones) {
+        this(procesadorNotificaciones, new RegistroAlertasEnviadas());
+    }
+    
+    /**
+     * Constructor con un registro de alertas compartido
+     * 
+     * @param procesadorNotificaciones Procesador de notificaciones
+     * @param registroAlertas Registro de alertas ya enviadas, para no repetirlas en el mismo día
+     */
+    public AlertaVencimiento(ProcesadorNotificaciones procesadorNotificaciones,
+                             RegistroAlertasEnviadas registroAlertas) {
         this.procesadorNotificaciones = procesadorNotificaciones;
+        this.registroAlertas = registroAlertas;
+        
+        // {0} es el prefijo del nivel de alerta
+        this.plantillaProximoVencimiento = procesadorNotificaciones.getPlantillas().registrar(
+                "alerta.prestamo.proximo",
+                "{0}Tu préstamo del recurso '{1}' vence en {2} {3}. " +
+                "Puedes devolverlo o solicitar una renovación antes de la fecha límite.");
+        this.plantillaPrestamoVencido = procesadorNotificaciones.getPlantillas().registrar(
+                "alerta.prestamo.vencido",
+                "{0}Tu préstamo del recurso '{1}' está vencido por {2} {3}. " +
+                "Por favor, devuelve el material lo antes posible para evitar sanciones adicionales.");
+        this.plantillaPrestamoVencidoSms = procesadorNotificaciones.getPlantillas().registrar(
+                "alerta.prestamo.vencido.sms",
+                "Biblioteca: Préstamo vencido por {0} días. Devuelve '{1}' urgentemente.");
     }
     
     /**
@@ -54,6 +91,102 @@ public class AlertaVencimiento {
         return false; // No se enviaron alertas
     }
     
+    /**
+     * Verifica un conjunto de préstamos con las mismas reglas que
+     * {@link #verificarYAlertarSiNecesario(Prestamo)}, pero tomando un único instante de
+     * referencia y encolando las alertas agrupadas por canal y nivel, un lote por grupo.
+     * Las alertas que la cola del canal no admite se quitan del registro para que
+     * la próxima verificación vuelva a intentarlas.
+     * 
+     * @param prestamos Los préstamos a verificar
+     * @return Cantidad de préstamos alertados por nivel
+     */
+    public Map<NivelAlerta, Integer> verificarLote(Collection<Prestamo> prestamos) {
+        Map<NivelAlerta, Integer> alertados = new EnumMap<>(NivelAlerta.class);
+        if (prestamos == null || prestamos.isEmpty()) {
+            return alertados;
+        }
+        
+        LocalDate hoy = LocalDate.now();
+        long diaHoy = hoy.toEpochDay();
+        Map<NivelAlerta, List<Prestamo>> porNivel = new EnumMap<>(NivelAlerta.class);
+        
+        for (Prestamo prestamo : prestamos) {
+            if (prestamo == null || prestamo.getFechaDevolucionReal() != null) {
+                continue; // Ya devuelto, no requiere alertas
+            }
+            
+            long diasHastaVencimiento = diasHastaVencimiento(prestamo, diaHoy);
+            NivelAlerta nivel;
+            if (diasHastaVencimiento < 0) {
+                if (-diasHastaVencimiento % diasRecordatorioVencido != 0) {
+                    continue; // No toca enviar recordatorio hoy
+                }
+                nivel = determinarNivelAlertaVencido(-diasHastaVencimiento);
+            } else if (diasHastaVencimiento == diasAlertaPreventiva2) {
+                nivel = NivelAlerta.MEDIA;
+            } else if (diasHastaVencimiento == diasAlertaPreventiva1) {
+                nivel = NivelAlerta.BAJA;
+            } else {
+                continue;
+            }
+            
+            if (!registroAlertas.registrarSiEsNueva(TipoAlerta.ALERTA_VENCIMIENTO, prestamo.getId(), nivel, hoy)) {
+                continue; // Ya se envió esta alerta hoy
+            }
+            porNivel.computeIfAbsent(nivel, n -> new ArrayList<>()).add(prestamo);
+        }
+        
+        for (Map.Entry<NivelAlerta, List<Prestamo>> grupo : porNivel.entrySet()) {
+            NivelAlerta nivel = grupo.getKey();
+            List<Prestamo> candidatos = grupo.getValue();
+            LoteNotificaciones loteEmail = new LoteNotificaciones("email", nivel.getPrioridadNotificacion());
+            for (Prestamo prestamo : candidatos) {
+                String titulo = prestamo.getRecurso().getTitulo();
+                long diasHastaVencimiento = diasHastaVencimiento(prestamo, diaHoy);
+                if (diasHastaVencimiento < 0) {
+                    long diasVencido = -diasHastaVencimiento;
+                    loteEmail.agregar(prestamo.getUsuario(), plantillaPrestamoVencido.con(
+                            nivel.getPrefijo(), titulo, diasVencido, diasVencido == 1 ? "día" : "días"));
+                } else {
+                    loteEmail.agregar(prestamo.getUsuario(), plantillaProximoVencimiento.con(
+                            nivel.getPrefijo(), titulo, diasHastaVencimiento, diasHastaVencimiento == 1 ? "día" : "días"));
+                }
+            }
+            
+            // La cola admite un prefijo del lote; el resto se anula para reintentarlo
+            int admitidas = procesadorNotificaciones.encolarLote(loteEmail);
+            for (Prestamo rechazado : candidatos.subList(admitidas, candidatos.size())) {
+                registroAlertas.anular(TipoAlerta.ALERTA_VENCIMIENTO, rechazado.getId(), nivel, hoy);
+            }
+            if (admitidas == 0) {
+                continue;
+            }
+            alertados.put(nivel, admitidas);
+            
+            // Si el vencimiento es grave, enviar también por SMS si hay teléfono
+            if (nivel == NivelAlerta.ALTA || nivel == NivelAlerta.CRITICA) {
+                LoteNotificaciones loteSms = new LoteNotificaciones("sms", nivel.getPrioridadNotificacion());
+                for (Prestamo prestamo : candidatos.subList(0, admitidas)) {
+                    Usuario usuario = prestamo.getUsuario();
+                    long diasHastaVencimiento = diasHastaVencimiento(prestamo, diaHoy);
+                    if (diasHastaVencimiento < 0 && usuario.getTelefono() != null && !usuario.getTelefono().isEmpty()) {
+                        loteSms.agregar(usuario, plantillaPrestamoVencidoSms.con(
+                                -diasHastaVencimiento, prestamo.getRecurso().getTitulo()));
+                    }
+                }
+                if (!loteSms.estaVacio()) {
+                    procesadorNotificaciones.encolarLote(loteSms);
+                }
+            }
+        }
+        return alertados;
+    }
+    
+    private static long diasHastaVencimiento(Prestamo prestamo, long diaHoy) {
+        return prestamo.getFechaDevolucionEstimada().toLocalDate().toEpochDay() - diaHoy;
+    }
+    
     /**
      * Envía una alerta preventiva para un préstamo próximo a vencer
      * 
@@ -63,23 +196,28 @@ public class AlertaVencimiento {
      * @return true si se envió la alerta correctamente
      */
     private boolean alertarProximoVencimiento(Prestamo prestamo, int diasRestantes, NivelAlerta nivel) {
+        LocalDate hoy = LocalDate.now();
+        if (!registroAlertas.registrarSiEsNueva(TipoAlerta.ALERTA_VENCIMIENTO, prestamo.getId(), nivel, hoy)) {
+            return false; // Ya se envió esta alerta hoy
+        }
+        
         Usuario usuario = prestamo.getUsuario();
         
         String pluralDias = diasRestantes == 1 ? "día" : "días";
-        String mensaje = "Tu préstamo del recurso '" + prestamo.getRecurso().getTitulo() + 
-                "' vence en " + diasRestantes + " " + pluralDias + ". " +
-                "Puedes devolverlo o solicitar una renovación antes de la fecha límite.";
-        
-        mensaje = nivel.formatearMensaje(mensaje);
         
         // Enviar alerta por email
-        procesadorNotificaciones.encolarNotificacion(
+        boolean encolada = procesadorNotificaciones.encolarNotificacion(
                 usuario, 
-                mensaje,
+                plantillaProximoVencimiento.con(nivel.getPrefijo(), prestamo.getRecurso().getTitulo(),
+                        diasRestantes, pluralDias),
                 "email", 
                 nivel.getPrioridadNotificacion());
         
-        return true;
+        if (!encolada) {
+            // Se reintentará en la próxima verificación del día
+            registroAlertas.anular(TipoAlerta.ALERTA_VENCIMIENTO, prestamo.getId(), nivel, hoy);
+        }
+        return encolada;
     }
     
     /**
@@ -95,32 +233,35 @@ public class AlertaVencimiento {
             return false; // No toca enviar recordatorio hoy
         }
         
-        Usuario usuario = prestamo.getUsuario();
         NivelAlerta nivel = determinarNivelAlertaVencido(diasVencido);
+        LocalDate hoy = LocalDate.now();
+        if (!registroAlertas.registrarSiEsNueva(TipoAlerta.ALERTA_VENCIMIENTO, prestamo.getId(), nivel, hoy)) {
+            return false; // Ya se envió esta alerta hoy
+        }
         
-        String pluralDias = diasVencido == 1 ? "día" : "días";
-        String mensaje = "Tu préstamo del recurso '" + prestamo.getRecurso().getTitulo() + 
-                "' está vencido por " + diasVencido + " " + pluralDias + ". " +
-                "Por favor, devuelve el material lo antes posible para evitar sanciones adicionales.";
+        Usuario usuario = prestamo.getUsuario();
         
-        mensaje = nivel.formatearMensaje(mensaje);
+        String pluralDias = diasVencido == 1 ? "día" : "días";
         
         // Enviar por email
-        procesadorNotificaciones.encolarNotificacion(
+        boolean encolada = procesadorNotificaciones.encolarNotificacion(
                 usuario, 
-                mensaje,
+                plantillaPrestamoVencido.con(nivel.getPrefijo(), prestamo.getRecurso().getTitulo(),
+                        diasVencido, pluralDias),
                 "email", 
                 nivel.getPrioridadNotificacion());
+        if (!encolada) {
+            // Se reintentará en la próxima verificación del día
+            registroAlertas.anular(TipoAlerta.ALERTA_VENCIMIENTO, prestamo.getId(), nivel, hoy);
+            return false;
+        }
         
         // Si el vencimiento es grave, enviar también por SMS si hay teléfono
         if (nivel == NivelAlerta.ALTA || nivel == NivelAlerta.CRITICA) {
             if (usuario.getTelefono() != null && !usuario.getTelefono().isEmpty()) {
-                String mensajeCorto = "Biblioteca: Préstamo vencido por " + diasVencido + 
-                        " días. Devuelve '" + prestamo.getRecurso().getTitulo() + "' urgentemente.";
-                
                 procesadorNotificaciones.encolarNotificacion(
                         usuario, 
-                        mensajeCorto,
+                        plantillaPrestamoVencidoSms.con(diasVencido, prestamo.getRecurso().getTitulo()),
                         "sms", 
                         nivel.getPrioridadNotificacion());
             }
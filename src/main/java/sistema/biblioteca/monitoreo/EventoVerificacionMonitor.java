@@ -0,0 +1,51 @@
+package sistema.biblioteca.monitoreo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder para las verificaciones completas del monitor
+ * y para cada evento de su agenda
+ */
+@Name("sistema.biblioteca.VerificacionMonitor")
+@Label("Verificación del monitor")
+@Category({"Biblioteca", "Monitor"})
+@Description("Verificación completa o evento de la agenda del MonitorSistema")
+@StackTrace(false)
+class EventoVerificacionMonitor extends Event {
+    
+    static final String VERIFICACION_COMPLETA = "verificacion";
+    
+    @Label("Origen")
+    @Description("'verificacion' para una verificación completa o la clave del evento de la agenda")
+    String origen;
+    
+    @Label("Préstamos activos")
+    int prestamosActivos;
+    
+    @Label("Reservas activas")
+    int reservasActivas;
+    
+    @Label("Préstamos vencidos")
+    int prestamosVencidos;
+    
+    @Label("Próximos vencimientos")
+    int proximosVencimientos;
+    
+    @Label("Reservas expiradas")
+    int reservasExpiradas;
+    
+    /**
+     * Termina la medición del evento
+     * 
+     * @return true si el evento debe registrarse
+     */
+    boolean terminar() {
+        end();
+        return shouldCommit();
+    }
+}
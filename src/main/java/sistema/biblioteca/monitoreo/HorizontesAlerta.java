@@ -0,0 +1,116 @@
+package sistema.biblioteca.monitoreo;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Tabla inmutable con los horizontes de alerta preventiva: cuántos días antes del
+ * vencimiento se avisa y con qué nivel. Se indexa por días restantes, así que una sola
+ * consulta por préstamo alcanza para saber si le toca alguna de las alertas.
+ */
+public class HorizontesAlerta {
+    
+    /** Anticipación máxima admitida para una alerta */
+    public static final int DIAS_MAXIMOS = 365;
+    
+    private final NivelAlerta[] nivelPorDias;
+    private final NavigableMap<Integer, NivelAlerta> horizontes;
+    
+    /**
+     * Constructor
+     *
+     * @param horizontes Días de anticipación de cada alerta y su nivel
+     * @throws IllegalArgumentException si no hay horizontes, algún día está fuera de rango o falta un nivel
+     */
+    public HorizontesAlerta(Map<Integer, NivelAlerta> horizontes) {
+        if (horizontes == null || horizontes.isEmpty()) {
+            throw new IllegalArgumentException("Debe indicarse al menos un horizonte de alerta");
+        }
+        
+        TreeMap<Integer, NivelAlerta> copia = new TreeMap<>(Collections.reverseOrder());
+        for (Map.Entry<Integer, NivelAlerta> horizonte : horizontes.entrySet()) {
+            Integer dias = horizonte.getKey();
+            if (dias == null || dias < 0 || dias > DIAS_MAXIMOS) {
+                throw new IllegalArgumentException(
+                        "Los días de alerta previa deben estar entre 0 y " + DIAS_MAXIMOS);
+            }
+            if (horizonte.getValue() == null) {
+                throw new IllegalArgumentException("Falta el nivel de la alerta de " + dias + " días");
+            }
+            copia.put(dias, horizonte.getValue());
+        }
+        
+        this.nivelPorDias = new NivelAlerta[copia.firstKey() + 1];
+        for (Map.Entry<Integer, NivelAlerta> horizonte : copia.entrySet()) {
+            nivelPorDias[horizonte.getKey()] = horizonte.getValue();
+        }
+        this.horizontes = Collections.unmodifiableNavigableMap(copia);
+    }
+    
+    /**
+     * Crea una tabla con un único horizonte
+     *
+     * @param dias Días de anticipación
+     * @param nivel Nivel de la alerta
+     * @return La tabla de horizontes
+     */
+    public static HorizontesAlerta unico(int dias, NivelAlerta nivel) {
+        return new HorizontesAlerta(Map.of(dias, nivel));
+    }
+    
+    /**
+     * Obtiene el nivel de la alerta que corresponde a un préstamo
+     *
+     * @param diasRestantes Días que faltan para el vencimiento
+     * @return El nivel de la alerta, o null si ningún horizonte coincide
+     */
+    public NivelAlerta nivelPara(long diasRestantes) {
+        if (diasRestantes < 0 || diasRestantes >= nivelPorDias.length) {
+            return null;
+        }
+        return nivelPorDias[(int) diasRestantes];
+    }
+    
+    /**
+     * Busca el primer día, a partir de una fecha, en que corresponde alguna alerta preventiva
+     *
+     * @param vencimiento Fecha de vencimiento del préstamo
+     * @param desde Primer día a considerar
+     * @return El día de la próxima alerta, o null si ya no queda ninguna
+     */
+    public LocalDate proximoDiaAlerta(LocalDate vencimiento, LocalDate desde) {
+        long diasRestantes = vencimiento.toEpochDay() - desde.toEpochDay();
+        for (int dias = (int) Math.min(diasRestantes, nivelPorDias.length - 1); dias >= 0; dias--) {
+            if (nivelPorDias[dias] != null) {
+                return vencimiento.minusDays(dias);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Obtiene la anticipación de la alerta más temprana
+     *
+     * @return Días de anticipación máximos
+     */
+    public int getDiasMaximos() {
+        return nivelPorDias.length - 1;
+    }
+    
+    /**
+     * Obtiene los horizontes ordenados del más lejano al más cercano al vencimiento
+     *
+     * @return Mapa no modificable de días de anticipación a nivel de alerta
+     */
+    public NavigableMap<Integer, NivelAlerta> getHorizontes() {
+        return horizontes;
+    }
+    
+    @Override
+    public String toString() {
+        return "HorizontesAlerta" + horizontes;
+    }
+}
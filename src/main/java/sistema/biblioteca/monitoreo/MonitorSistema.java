@@ -1,35 +1,71 @@
 package sistema.biblioteca.monitoreo;
 
+import sistema.biblioteca.gestores.EscuchaPrestamos;
 import sistema.biblioteca.gestores.GestorPrestamos;
 import sistema.biblioteca.gestores.GestorReservas;
 import sistema.biblioteca.modelos.Prestamo;
 import sistema.biblioteca.modelos.Reserva;
 import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.servicios.HistogramaLatencia;
+import sistema.biblioteca.servicios.MensajePlantilla;
+import sistema.biblioteca.servicios.PlantillaMensaje;
 import sistema.biblioteca.servicios.ProcesadorNotificaciones;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * Clase que implementa un monitor del sistema para detectar préstamos vencidos,
  * reservas expiradas y próximos vencimientos, enviando alertas cuando sea necesario.
+ *
+ * En lugar de recorrer todos los préstamos y reservas cada cierto tiempo, el monitor
+ * mantiene una agenda con el próximo evento de cada préstamo y reserva (recordatorio,
+ * vencimiento o expiración) y solo se despierta cuando alguno corresponde. La agenda
+ * se actualiza con los cambios que avisa el GestorPrestamos.
+ *
+ * Como el gestor de reservas no avisa sus cambios, las reservas se revisan
+ * periódicamente con un intervalo adaptativo: se acorta mientras las revisiones
+ * encuentran cambios o expiraciones cercanas y se alarga cuando no hay actividad.
  */
 public class MonitorSistema implements Runnable {
     
     private final GestorPrestamos gestorPrestamos;
     private final GestorReservas gestorReservas;
     private final ProcesadorNotificaciones procesadorNotificaciones;
-    private final ScheduledExecutorService scheduler;
+    private final RegistroAlertasEnviadas registroAlertas;
+    private final Map<String, EventoProgramado> eventosProgramados;
+    private final EscuchaPrestamos escuchaPrestamos;
     private final AtomicBoolean ejecutando;
+    private final HistogramaLatencia duracionVerificaciones;
+    private final HistogramaLatencia duracionEventos;
+    private volatile ScheduledThreadPoolExecutor scheduler;
+    private volatile HorizontesAlerta horizontesAlerta;
+    private final Object bloqueoRevision;
+    private ScheduledFuture<?> revisionReservas;
+    private volatile long intervaloBaseSegundos;
+    private volatile long intervaloRevisionSegundos;
+    private final PlantillaMensaje plantillaPrestamoVencido;
+    private final PlantillaMensaje plantillaProximoVencimiento;
+    private final PlantillaMensaje plantillaReservaExpirada;
     
     private final int INTERVALO_VERIFICACION_MINUTOS = 60; // Verificar cada hora por defecto
     private final int DIAS_ALERTA_PREVIA = 1; // Alertar 1 día antes por defecto
+    static final int UMBRAL_VERIFICACION_PARALELA = 2048; // Por debajo no compensa repartir el trabajo
+    private static final int FACTOR_INTERVALO = 4; // El intervalo adaptativo varía entre base/4 y base*4
+    private static final long INTERVALO_MINIMO_SEGUNDOS = 15;
+    private static final int REINTENTO_ALERTA_MINUTOS = 5; // Si la alerta no se pudo encolar
     
     /**
      * Constructor del MonitorSistema
@@ -42,60 +78,117 @@ public class MonitorSistema implements Runnable {
             GestorPrestamos gestorPrestamos, 
             GestorReservas gestorReservas, 
             ProcesadorNotificaciones procesadorNotificaciones) {
+        this(gestorPrestamos, gestorReservas, procesadorNotificaciones, new RegistroAlertasEnviadas());
+    }
+    
+    /**
+     * Constructor del MonitorSistema con un registro de alertas compartido
+     * 
+     * @param gestorPrestamos Gestor de préstamos
+     * @param gestorReservas Gestor de reservas
+     * @param procesadorNotificaciones Procesador de notificaciones
+     * @param registroAlertas Registro de alertas ya enviadas, para no repetirlas en el mismo día
+     */
+    public MonitorSistema(
+            GestorPrestamos gestorPrestamos, 
+            GestorReservas gestorReservas, 
+            ProcesadorNotificaciones procesadorNotificaciones,
+            RegistroAlertasEnviadas registroAlertas) {
         this.gestorPrestamos = gestorPrestamos;
         this.gestorReservas = gestorReservas;
         this.procesadorNotificaciones = procesadorNotificaciones;
-        this.scheduler = Executors.newScheduledThreadPool(1);
+        this.registroAlertas = registroAlertas;
+        this.eventosProgramados = new ConcurrentHashMap<>();
+        this.escuchaPrestamos = this::programarPrestamo;
         this.ejecutando = new AtomicBoolean(false);
+        this.duracionVerificaciones = new HistogramaLatencia();
+        this.duracionEventos = new HistogramaLatencia();
+        this.horizontesAlerta = HorizontesAlerta.unico(DIAS_ALERTA_PREVIA, NivelAlerta.MEDIA);
+        this.bloqueoRevision = new Object();
+        this.intervaloBaseSegundos = TimeUnit.MINUTES.toSeconds(INTERVALO_VERIFICACION_MINUTOS);
+        this.intervaloRevisionSegundos = intervaloBaseSegundos;
+        
+        // Las plantillas se compilan una vez y los mensajes se renderizan al enviarse
+        this.plantillaPrestamoVencido = procesadorNotificaciones.getPlantillas().registrar(
+                "monitor.prestamo.vencido",
+                "IMPORTANTE: Tu préstamo del recurso '{0}' está vencido por {1} días. " +
+                "Por favor, devuelve el material lo antes posible.");
+        this.plantillaProximoVencimiento = procesadorNotificaciones.getPlantillas().registrar(
+                "monitor.prestamo.proximo",
+                "RECORDATORIO: Tu préstamo del recurso '{0}' vence {1}. " +
+                "Puedes devolverlo o renovarlo antes de la fecha límite.");
+        this.plantillaReservaExpirada = procesadorNotificaciones.getPlantillas().registrar(
+                "monitor.reserva.expirada",
+                "Tu reserva para el recurso '{0}' ha expirado debido a que no fue reclamada a tiempo.");
     }
     
     /**
-     * Inicia el monitor del sistema con la configuración predeterminada
+     * Inicia el monitor del sistema con el intervalo base configurado
+     * (INTERVALO_VERIFICACION_MINUTOS si no se cambió)
      */
-    public void iniciar() {
-        iniciar(INTERVALO_VERIFICACION_MINUTOS);
+    public synchronized void iniciar() {
+        iniciar((int) TimeUnit.SECONDS.toMinutes(intervaloBaseSegundos));
     }
     
     /**
-     * Inicia el monitor del sistema con un intervalo específico
-     * 
-     * @param intervaloMinutos Intervalo en minutos entre verificaciones
+     * Inicia el monitor del sistema. Arma la agenda con los préstamos y reservas
+     * activos y se suscribe a los cambios de préstamos; a partir de ahí solo trabaja
+     * cuando vence algún evento de la agenda.
+     *
+     * @param intervaloMinutos Intervalo base en minutos para volver a revisar las reservas activas
      */
-    public void iniciar(int intervaloMinutos) {
+    public synchronized void iniciar(int intervaloMinutos) {
+        if (intervaloMinutos <= 0) {
+            throw new IllegalArgumentException("El intervalo debe ser mayor que cero");
+        }
         if (ejecutando.get()) {
             return; // Ya está en ejecución
         }
         
+        ScheduledThreadPoolExecutor ejecutor = new ScheduledThreadPoolExecutor(1);
+        ejecutor.setRemoveOnCancelPolicy(true);
+        ejecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        ejecutor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        scheduler = ejecutor;
+        intervaloBaseSegundos = TimeUnit.MINUTES.toSeconds(intervaloMinutos);
+        intervaloRevisionSegundos = intervaloBaseSegundos;
         ejecutando.set(true);
         
-        // Ejecutar inmediatamente y luego programar ejecuciones periódicas
-        ejecutarVerificaciones();
-        
-        scheduler.scheduleAtFixedRate(
-            this::ejecutarVerificaciones,
-            intervaloMinutos,
-            intervaloMinutos,
-            TimeUnit.MINUTES
-        );
+        // Los eventos ya vencidos se programan sin demora, lo que equivale a la verificación inicial
+        gestorPrestamos.agregarEscucha(escuchaPrestamos);
+        for (Prestamo prestamo : gestorPrestamos.listarPrestamosActivos()) {
+            programarPrestamo(prestamo);
+        }
+        sincronizarReservas();
+        programarRevision();
         
-        System.out.println("Monitor del sistema iniciado. Verificando cada " + 
-                intervaloMinutos + " minutos.");
+        System.out.println("Monitor del sistema iniciado con " + eventosProgramados.size() +
+                " eventos programados. Revisando reservas cada " + intervaloMinutos + " minutos.");
     }
     
     /**
      * Detiene el monitor del sistema
      */
-    public void detener() {
+    public synchronized void detener() {
         ejecutando.set(false);
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
+        gestorPrestamos.quitarEscucha(escuchaPrestamos);
+        synchronized (bloqueoRevision) {
+            revisionReservas = null;
+        }
+        
+        ScheduledThreadPoolExecutor ejecutor = scheduler;
+        if (ejecutor != null) {
+            ejecutor.shutdown();
+            try {
+                if (!ejecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    ejecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                ejecutor.shutdownNow();
+                Thread.currentThread().interrupt();
             }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
         }
+        eventosProgramados.clear();
         System.out.println("Monitor del sistema detenido.");
     }
     
@@ -114,178 +207,512 @@ public class MonitorSistema implements Runnable {
     }
     
     /**
-     * Ejecuta todas las verificaciones del sistema
+     * Actualiza la agenda de un préstamo. Se invoca cada vez que el gestor
+     * crea, renueva o devuelve un préstamo.
+     *
+     * @param prestamo Préstamo a programar
+     */
+    private void programarPrestamo(Prestamo prestamo) {
+        String claveProximo = "proximo|" + prestamo.getId();
+        String claveVencido = "vencido|" + prestamo.getId();
+        
+        if (!prestamo.isActivo()) {
+            cancelar(claveProximo);
+            cancelar(claveVencido);
+            return;
+        }
+        
+        LocalDateTime fechaDevolucion = prestamo.getFechaDevolucionEstimada();
+        programarRecordatorio(prestamo, fechaDevolucion, LocalDate.now());
+        programar(claveVencido, fechaDevolucion, () -> alertarSiSigueVencido(prestamo, fechaDevolucion));
+    }
+    
+    /**
+     * Programa la próxima alerta preventiva de un préstamo a partir de un día. Al
+     * ejecutarse envía la alerta del horizonte que corresponde y programa la siguiente.
+     */
+    private void programarRecordatorio(Prestamo prestamo, LocalDateTime fechaDevolucion, LocalDate desde) {
+        String clave = "proximo|" + prestamo.getId();
+        LocalDate diaAlerta = horizontesAlerta.proximoDiaAlerta(fechaDevolucion.toLocalDate(), desde);
+        if (diaAlerta == null) {
+            cancelar(clave);
+            return;
+        }
+        
+        programar(clave, diaAlerta.atStartOfDay(), () -> recordarVencimiento(prestamo, fechaDevolucion));
+    }
+    
+    /**
+     * Envía la alerta preventiva del día y programa la siguiente; si no se pudo encolar,
+     * la vuelve a intentar en unos minutos
+     */
+    private void recordarVencimiento(Prestamo prestamo, LocalDateTime fechaDevolucion) {
+        if (!prestamo.isActivo() || !fechaDevolucion.equals(prestamo.getFechaDevolucionEstimada())) {
+            return;
+        }
+        LocalDate hoy = LocalDate.now();
+        if (alertarProximoVencimiento(prestamo, hoy, horizontesAlerta)) {
+            programarRecordatorio(prestamo, fechaDevolucion, hoy.plusDays(1));
+        } else {
+            programar("proximo|" + prestamo.getId(), LocalDateTime.now().plusMinutes(REINTENTO_ALERTA_MINUTOS),
+                    () -> recordarVencimiento(prestamo, fechaDevolucion));
+        }
+    }
+    
+    /**
+     * Envía la alerta de un préstamo vencido y la vuelve a programar para el día
+     * siguiente mientras el préstamo no se devuelva
+     */
+    private void alertarSiSigueVencido(Prestamo prestamo, LocalDateTime fechaDevolucion) {
+        if (!prestamo.isActivo() || !fechaDevolucion.equals(prestamo.getFechaDevolucionEstimada())) {
+            return;
+        }
+        
+        if (prestamo.estaVencido()) {
+            LocalDateTime siguiente = alertarPrestamoVencido(prestamo, LocalDate.now())
+                    ? LocalDate.now().plusDays(1).atStartOfDay()
+                    : LocalDateTime.now().plusMinutes(REINTENTO_ALERTA_MINUTOS);
+            programar("vencido|" + prestamo.getId(), siguiente,
+                    () -> alertarSiSigueVencido(prestamo, fechaDevolucion));
+        } else {
+            // El reloj se despertó antes de tiempo: volver a esperar al vencimiento
+            programar("vencido|" + prestamo.getId(), fechaDevolucion,
+                    () -> alertarSiSigueVencido(prestamo, fechaDevolucion));
+        }
+    }
+    
+    /**
+     * Agrega o actualiza en la agenda la expiración de una reserva. Debe invocarse
+     * al crear o extender una reserva para que el monitor la expire a tiempo sin
+     * esperar a la siguiente revisión de reservas.
+     *
+     * @param reserva Reserva a programar
+     * @return true si la agenda cambió, false si la reserva ya estaba programada así
+     */
+    public boolean programarReserva(Reserva reserva) {
+        String clave = "reserva|" + reserva.getId();
+        if (!reserva.estaPendiente()) {
+            return cancelar(clave);
+        }
+        
+        LocalDateTime fechaExpiracion = reserva.getFechaExpiracion();
+        EventoProgramado actual = eventosProgramados.get(clave);
+        if (actual != null && actual.instante.equals(fechaExpiracion)) {
+            return false; // Ya está programada para esa fecha
+        }
+        
+        programar(clave, fechaExpiracion, () -> {
+            if (reserva.haExpirado()) {
+                expirarReserva(reserva);
+            } else if (reserva.estaPendiente()) {
+                // La reserva se extendió o el reloj se despertó antes de tiempo
+                programarReserva(reserva);
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * Sincroniza la agenda con las reservas activas y programa la siguiente revisión.
+     * Si la revisión encontró cambios que el gestor no avisó, o reservas que expiran
+     * antes de la próxima revisión, el intervalo se reduce a la mitad; si no, se duplica.
+     */
+    private void revisarReservas() {
+        if (!ejecutando.get()) {
+            return;
+        }
+        
+        boolean hayActividad = sincronizarReservas();
+        intervaloRevisionSegundos = siguienteIntervalo(intervaloRevisionSegundos, intervaloBaseSegundos, hayActividad);
+        programarRevision();
+    }
+    
+    /**
+     * Programa en la agenda las reservas activas
+     *
+     * @return true si alguna reserva cambió en la agenda o expira antes de la próxima revisión
+     */
+    private boolean sincronizarReservas() {
+        boolean hayActividad = false;
+        try {
+            LocalDateTime limite = LocalDateTime.now().plusSeconds(intervaloRevisionSegundos);
+            for (Reserva reserva : gestorReservas.listarReservasActivas()) {
+                boolean cambio = programarReserva(reserva);
+                hayActividad |= cambio || (reserva.estaPendiente() && reserva.getFechaExpiracion().isBefore(limite));
+            }
+        } catch (Exception e) {
+            System.out.println("Error al programar las reservas activas: " + e.getMessage());
+        }
+        return hayActividad;
+    }
+    
+    /**
+     * Calcula el intervalo de la siguiente revisión de reservas
+     *
+     * @param actual Intervalo actual en segundos
+     * @param base Intervalo base en segundos
+     * @param hayActividad Si la última revisión encontró cambios o expiraciones cercanas
+     * @return El nuevo intervalo, entre base/FACTOR_INTERVALO y base*FACTOR_INTERVALO
+     */
+    static long siguienteIntervalo(long actual, long base, boolean hayActividad) {
+        long minimo = Math.max(INTERVALO_MINIMO_SEGUNDOS, base / FACTOR_INTERVALO);
+        long maximo = Math.max(minimo, base * FACTOR_INTERVALO);
+        long nuevo = hayActividad ? actual / 2 : actual * 2;
+        return Math.min(maximo, Math.max(minimo, nuevo));
+    }
+    
+    /**
+     * Programa la siguiente revisión de reservas en el scheduler actual, reemplazando
+     * la que estuviera pendiente
+     */
+    private void programarRevision() {
+        synchronized (bloqueoRevision) {
+            ScheduledThreadPoolExecutor ejecutor = scheduler;
+            if (ejecutor == null || !ejecutando.get()) {
+                return;
+            }
+            if (revisionReservas != null) {
+                revisionReservas.cancel(false);
+            }
+            try {
+                revisionReservas = ejecutor.schedule(this::revisarReservas, intervaloRevisionSegundos, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                revisionReservas = null;
+            }
+        }
+    }
+    
+    /**
+     * Programa un evento en la agenda, reemplazando el que tuviera la misma clave
+     */
+    private void programar(String clave, LocalDateTime instante, Runnable accion) {
+        ScheduledThreadPoolExecutor ejecutor = scheduler;
+        if (ejecutor == null || !ejecutando.get()) {
+            return;
+        }
+        
+        EventoProgramado evento = new EventoProgramado(clave, instante, accion);
+        EventoProgramado anterior = eventosProgramados.put(clave, evento);
+        if (anterior != null) {
+            anterior.cancelar();
+        }
+        
+        // Un milisegundo de margen porque los vencimientos se comparan con isAfter
+        long demoraMs = Math.max(0, Duration.between(LocalDateTime.now(), instante).toMillis() + 1);
+        try {
+            evento.futuro = ejecutor.schedule(evento, demoraMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            eventosProgramados.remove(clave, evento);
+        }
+    }
+    
+    private boolean cancelar(String clave) {
+        EventoProgramado evento = eventosProgramados.remove(clave);
+        if (evento != null) {
+            evento.cancelar();
+        }
+        return evento != null;
+    }
+    
+    /**
+     * Evento de la agenda: al ejecutarse se quita de la agenda y corre su acción
+     */
+    private class EventoProgramado implements Runnable {
+        private final String clave;
+        private final LocalDateTime instante;
+        private final Runnable accion;
+        private volatile ScheduledFuture<?> futuro;
+        private volatile boolean cancelado;
+        
+        EventoProgramado(String clave, LocalDateTime instante, Runnable accion) {
+            this.clave = clave;
+            this.instante = instante;
+            this.accion = accion;
+        }
+        
+        void cancelar() {
+            cancelado = true;
+            ScheduledFuture<?> f = futuro;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+        
+        @Override
+        public void run() {
+            if (cancelado || !ejecutando.get()) {
+                return;
+            }
+            eventosProgramados.remove(clave, this);
+            EventoVerificacionMonitor evento = new EventoVerificacionMonitor();
+            evento.begin();
+            long inicio = System.nanoTime();
+            try {
+                accion.run();
+            } catch (Exception e) {
+                System.out.println("Error en el evento " + clave + " del monitor: " + e.getMessage());
+            } finally {
+                duracionEventos.registrar(System.nanoTime() - inicio);
+                if (evento.terminar()) {
+                    evento.origen = clave;
+                    evento.commit();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Ejecuta todas las verificaciones del sistema recorriendo los préstamos y reservas.
+     * Todas las comparaciones usan el mismo instante, tomado una vez por verificación.
      */
     private void ejecutarVerificaciones() {
+        EventoVerificacionMonitor evento = new EventoVerificacionMonitor();
+        evento.begin();
+        long inicio = System.nanoTime();
+        List<Prestamo> prestamosActivos = List.of();
+        List<Reserva> reservasActivas = List.of();
+        LoteAlertas lote = null;
         try {
-            verificarPrestamosVencidos();
-            verificarProximosVencimientos();
-            verificarReservasExpiradas();
+            LocalDateTime ahora = LocalDateTime.now();
+            HorizontesAlerta horizontes = horizontesAlerta;
+            prestamosActivos = gestorPrestamos.listarPrestamosActivos();
+            reservasActivas = gestorReservas.listarReservasActivas();
+            lote = clasificar(prestamosActivos, reservasActivas, ahora, horizontes, UMBRAL_VERIFICACION_PARALELA);
+            
+            LocalDate hoy = ahora.toLocalDate();
+            verificarPrestamosVencidos(lote.prestamosVencidos, hoy);
+            verificarProximosVencimientos(lote.proximosVencimientos, hoy, horizontes);
+            verificarReservasExpiradas(lote.reservasExpiradas);
         } catch (Exception e) {
             System.out.println("Error al ejecutar verificaciones: " + e.getMessage());
+        } finally {
+            duracionVerificaciones.registrar(System.nanoTime() - inicio);
+            if (evento.terminar()) {
+                evento.origen = EventoVerificacionMonitor.VERIFICACION_COMPLETA;
+                evento.prestamosActivos = prestamosActivos.size();
+                evento.reservasActivas = reservasActivas.size();
+                if (lote != null) {
+                    evento.prestamosVencidos = lote.prestamosVencidos.size();
+                    evento.proximosVencimientos = lote.proximosVencimientos.size();
+                    evento.reservasExpiradas = lote.reservasExpiradas.size();
+                }
+                evento.commit();
+            }
         }
     }
     
     /**
      * Verifica préstamos vencidos y envía notificaciones
      */
-    private void verificarPrestamosVencidos() {
-        List<Prestamo> prestamosVencidos = obtenerPrestamosVencidos();
-        
+    private void verificarPrestamosVencidos(List<Prestamo> prestamosVencidos, LocalDate hoy) {
         if (!prestamosVencidos.isEmpty()) {
-            System.out.println("Se encontraron " + prestamosVencidos.size() + 
+            System.out.println("Se encontraron " + prestamosVencidos.size() +
                     " préstamos vencidos.");
             
             for (Prestamo prestamo : prestamosVencidos) {
-                Usuario usuario = prestamo.getUsuario();
-                long diasVencido = ChronoUnit.DAYS.between(
-                        prestamo.getFechaDevolucionEstimada().toLocalDate(), 
-                        LocalDateTime.now().toLocalDate());
-                
-                String mensaje = "IMPORTANTE: Tu préstamo del recurso '" + 
-                        prestamo.getRecurso().getTitulo() + 
-                        "' está vencido por " + diasVencido + " días. " +
-                        "Por favor, devuelve el material lo antes posible.";
-                
-                // Enviar notificación con alta prioridad
-                procesadorNotificaciones.encolarNotificacion(
-                        usuario, mensaje, "email", 1);
-                
-                // También enviar por SMS si es posible
-                if (usuario.getTelefono() != null && !usuario.getTelefono().isEmpty()) {
-                    procesadorNotificaciones.encolarNotificacion(
-                            usuario, mensaje, "sms", 1);
-                }
+                alertarPrestamoVencido(prestamo, hoy);
             }
         }
     }
     
     /**
-     * Verifica préstamos próximos a vencer y envía alertas preventivas
+     * Envía la alerta de préstamo vencido, salvo que ya se haya enviado ese día
+     *
+     * @return false si la alerta correspondía pero no se pudo encolar
      */
-    private void verificarProximosVencimientos() {
-        List<Prestamo> proximosVencimientos = obtenerProximosVencimientos();
+    private boolean alertarPrestamoVencido(Prestamo prestamo, LocalDate hoy) {
+        // No repetir la alerta si ya se envió hoy en una verificación anterior
+        if (!registroAlertas.registrarSiEsNueva(TipoAlerta.VENCIDO, prestamo.getId(), NivelAlerta.ALTA, hoy)) {
+            return true;
+        }
+        
+        Usuario usuario = prestamo.getUsuario();
+        long diasVencido = ChronoUnit.DAYS.between(
+                prestamo.getFechaDevolucionEstimada().toLocalDate(), hoy);
+        
+        // El mismo mensaje se comparte entre email y SMS y se renderiza una sola vez
+        MensajePlantilla mensaje = plantillaPrestamoVencido.con(
+                prestamo.getRecurso().getTitulo(), diasVencido);
         
+        // Enviar notificación con alta prioridad; si no entra, la alerta queda sin registrar
+        if (!procesadorNotificaciones.encolarNotificacion(usuario, mensaje, "email", 1)) {
+            registroAlertas.anular(TipoAlerta.VENCIDO, prestamo.getId(), NivelAlerta.ALTA, hoy);
+            return false;
+        }
+        
+        // También enviar por SMS si es posible
+        if (usuario.getTelefono() != null && !usuario.getTelefono().isEmpty()) {
+            procesadorNotificaciones.encolarNotificacion(
+                    usuario, mensaje, "sms", 1);
+        }
+        return true;
+    }
+    
+    /**
+     * Verifica préstamos próximos a vencer y envía las alertas preventivas de cada horizonte
+     */
+    private void verificarProximosVencimientos(List<Prestamo> proximosVencimientos, LocalDate hoy,
+                                               HorizontesAlerta horizontes) {
         if (!proximosVencimientos.isEmpty()) {
-            System.out.println("Se encontraron " + proximosVencimientos.size() + 
+            System.out.println("Se encontraron " + proximosVencimientos.size() +
                     " préstamos próximos a vencer.");
             
             for (Prestamo prestamo : proximosVencimientos) {
-                Usuario usuario = prestamo.getUsuario();
-                
-                String mensaje = "RECORDATORIO: Tu préstamo del recurso '" + 
-                        prestamo.getRecurso().getTitulo() + 
-                        "' vence mañana. Puedes devolverlo o renovarlo antes de la fecha límite.";
-                
-                // Enviar notificación con prioridad media
-                procesadorNotificaciones.encolarNotificacion(
-                        usuario, mensaje, "email", 3);
+                alertarProximoVencimiento(prestamo, hoy, horizontes);
             }
         }
     }
     
     /**
-     * Verifica reservas expiradas y las procesa
+     * Envía el recordatorio del horizonte que corresponde a los días restantes del préstamo,
+     * salvo que ya se haya enviado ese día
+     *
+     * @return false si la alerta correspondía pero no se pudo encolar
      */
-    private void verificarReservasExpiradas() {
-        List<Reserva> reservasExpiradas = obtenerReservasExpiradas();
+    private boolean alertarProximoVencimiento(Prestamo prestamo, LocalDate hoy, HorizontesAlerta horizontes) {
+        long diasRestantes = ChronoUnit.DAYS.between(hoy, prestamo.getFechaDevolucionEstimada().toLocalDate());
+        NivelAlerta nivel = horizontes.nivelPara(diasRestantes);
+        if (nivel == null || !registroAlertas.registrarSiEsNueva(TipoAlerta.RECORDATORIO, prestamo.getId(), nivel, hoy)) {
+            return true;
+        }
+        
+        String plazo = diasRestantes == 0 ? "hoy" : diasRestantes == 1 ? "mañana" : "en " + diasRestantes + " días";
+        MensajePlantilla mensaje = plantillaProximoVencimiento.con(prestamo.getRecurso().getTitulo(), plazo);
         
+        // La prioridad depende del nivel asignado al horizonte
+        if (!procesadorNotificaciones.encolarNotificacion(
+                prestamo.getUsuario(), mensaje, "email", nivel.getPrioridadNotificacion())) {
+            registroAlertas.anular(TipoAlerta.RECORDATORIO, prestamo.getId(), nivel, hoy);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Verifica reservas expiradas y las procesa
+     */
+    private void verificarReservasExpiradas(List<Reserva> reservasExpiradas) {
         if (!reservasExpiradas.isEmpty()) {
-            System.out.println("Se encontraron " + reservasExpiradas.size() + 
+            System.out.println("Se encontraron " + reservasExpiradas.size() +
                     " reservas expiradas.");
             
             for (Reserva reserva : reservasExpiradas) {
-                Usuario usuario = reserva.getUsuario();
-                
-                String mensaje = "Tu reserva para el recurso '" + 
-                        reserva.getRecurso().getTitulo() + 
-                        "' ha expirado debido a que no fue reclamada a tiempo.";
-                
-                // Notificar al usuario
-                procesadorNotificaciones.encolarNotificacion(
-                        usuario, mensaje, "email", 5);
-                
-                try {
-                    // Marcar la reserva como expirada
-                    if (reserva.estaPendiente()) {
-                        reserva.expirar();
-                    }
-                } catch (Exception e) {
-                    System.out.println("Error al marcar reserva como expirada: " + e.getMessage());
-                }
+                expirarReserva(reserva);
             }
         }
     }
     
     /**
-     * Obtiene la lista de préstamos vencidos
-     * 
-     * @return Lista de préstamos vencidos
+     * Marca la reserva como expirada y notifica al usuario. La agenda y una verificación
+     * manual pueden expirar la misma reserva a la vez: solo avisa la que hace la transición.
      */
-    private List<Prestamo> obtenerPrestamosVencidos() {
-        return gestorPrestamos.listarPrestamosVencidos();
+    private void expirarReserva(Reserva reserva) {
+        if (reserva.expirar()) {
+            avisarReservaExpirada(reserva);
+        }
     }
     
     /**
-     * Obtiene la lista de préstamos próximos a vencer (según DIAS_ALERTA_PREVIA)
+     * Notifica al usuario que su reserva expiró; si el aviso no se pudo encolar,
+     * se reintenta desde la agenda
+     */
+    private void avisarReservaExpirada(Reserva reserva) {
+        MensajePlantilla mensaje = plantillaReservaExpirada.con(reserva.getRecurso().getTitulo());
+        if (!procesadorNotificaciones.encolarNotificacion(reserva.getUsuario(), mensaje, "email", 5)) {
+            System.out.println("No se pudo encolar el aviso de la reserva expirada " + reserva.getId());
+            programar("expirada|" + reserva.getId(), LocalDateTime.now().plusMinutes(REINTENTO_ALERTA_MINUTOS),
+                    () -> avisarReservaExpirada(reserva));
+        }
+    }
+    
+    /**
+     * Separa los préstamos y reservas activos en las alertas que corresponden. Con muchos
+     * elementos se reparten en particiones que se evalúan en paralelo y cuyos lotes
+     * de alertas se combinan al final.
      * 
-     * @return Lista de préstamos próximos a vencer
+     * @param prestamosActivos Préstamos activos
+     * @param reservasActivas Reservas activas
+     * @param ahora Instante de referencia de la verificación
+     * @param horizontes Horizontes de alerta preventiva vigentes
+     * @param umbralParalelo Cantidad de elementos a partir de la cual se evalúan en paralelo
+     * @return Lote con los préstamos vencidos, los próximos a vencer y las reservas expiradas,
+     *         en el mismo orden que en las listas recibidas
      */
-    private List<Prestamo> obtenerProximosVencimientos() {
-        List<Prestamo> proximosVencimientos = new ArrayList<>();
-        List<Prestamo> prestamosActivos = gestorPrestamos.listarPrestamosActivos();
-        
-        LocalDateTime fechaReferencia = LocalDateTime.now().plusDays(DIAS_ALERTA_PREVIA);
+    static LoteAlertas clasificar(List<Prestamo> prestamosActivos, List<Reserva> reservasActivas,
+                                  LocalDateTime ahora, HorizontesAlerta horizontes, int umbralParalelo) {
+        long hoy = ahora.toLocalDate().toEpochDay();
         
-        for (Prestamo prestamo : prestamosActivos) {
-            LocalDateTime fechaDevolucion = prestamo.getFechaDevolucionEstimada();
-            
-            // Verificar si vence exactamente en DIAS_ALERTA_PREVIA
-            if (fechaDevolucion.toLocalDate().isEqual(fechaReferencia.toLocalDate())) {
-                proximosVencimientos.add(prestamo);
-            }
-        }
+        LoteAlertas lote = flujo(prestamosActivos, umbralParalelo).collect(
+                LoteAlertas::new,
+                (l, prestamo) -> l.agregarPrestamo(prestamo, ahora, hoy, horizontes),
+                LoteAlertas::combinar);
+        LoteAlertas loteReservas = flujo(reservasActivas, umbralParalelo).collect(
+                LoteAlertas::new,
+                (l, reserva) -> l.agregarReserva(reserva, ahora),
+                LoteAlertas::combinar);
         
-        return proximosVencimientos;
+        lote.combinar(loteReservas);
+        return lote;
+    }
+    
+    private static <T> Stream<T> flujo(List<T> elementos, int umbralParalelo) {
+        return elementos.size() >= umbralParalelo ? elementos.parallelStream() : elementos.stream();
     }
     
     /**
-     * Obtiene la lista de reservas expiradas
-     * 
-     * @return Lista de reservas expiradas
+     * Alertas encontradas en una partición de la verificación
      */
-    private List<Reserva> obtenerReservasExpiradas() {
-        List<Reserva> reservasExpiradas = new ArrayList<>();
+    static class LoteAlertas {
+        final List<Prestamo> prestamosVencidos = new ArrayList<>();
+        final List<Prestamo> proximosVencimientos = new ArrayList<>();
+        final List<Reserva> reservasExpiradas = new ArrayList<>();
         
-        // Obtener todas las reservas activas
-        List<Reserva> reservasActivas = gestorReservas.listarReservasActivas();
+        void agregarPrestamo(Prestamo prestamo, LocalDateTime ahora, long hoy, HorizontesAlerta horizontes) {
+            if (!prestamo.isActivo()) {
+                return;
+            }
+            
+            LocalDateTime fechaDevolucion = prestamo.getFechaDevolucionEstimada();
+            if (ahora.isAfter(fechaDevolucion)) {
+                prestamosVencidos.add(prestamo);
+            } else if (horizontes.nivelPara(fechaDevolucion.toLocalDate().toEpochDay() - hoy) != null) {
+                // Una sola consulta cubre todos los horizontes de alerta
+                proximosVencimientos.add(prestamo);
+            }
+        }
         
-        // Filtrar las que han expirado
-        for (Reserva reserva : reservasActivas) {
-            if (reserva.haExpirado()) {
+        void agregarReserva(Reserva reserva, LocalDateTime ahora) {
+            if (reserva.estaPendiente() && ahora.isAfter(reserva.getFechaExpiracion())) {
                 reservasExpiradas.add(reserva);
             }
         }
         
-        return reservasExpiradas;
+        void combinar(LoteAlertas otro) {
+            prestamosVencidos.addAll(otro.prestamosVencidos);
+            proximosVencimientos.addAll(otro.proximosVencimientos);
+            reservasExpiradas.addAll(otro.reservasExpiradas);
+        }
     }
     
     /**
-     * Cambia el intervalo de verificación
+     * Cambia el intervalo base de revisión de reservas. Si el monitor está en ejecución,
+     * la siguiente revisión se reprograma con el nuevo intervalo sin detener la agenda;
+     * si no, el intervalo se usa en el próximo {@link #iniciar()}.
      * 
      * @param intervaloMinutos Nuevo intervalo en minutos
      */
-    public void cambiarIntervaloVerificacion(int intervaloMinutos) {
+    public synchronized void cambiarIntervaloVerificacion(int intervaloMinutos) {
         if (intervaloMinutos <= 0) {
             throw new IllegalArgumentException("El intervalo debe ser mayor que cero");
         }
         
-        detener();
-        iniciar(intervaloMinutos);
+        intervaloBaseSegundos = TimeUnit.MINUTES.toSeconds(intervaloMinutos);
+        intervaloRevisionSegundos = intervaloBaseSegundos;
+        programarRevision();
     }
     
     /**
-     * Cambia el número de días de alerta previa
+     * Cambia el número de días de alerta previa, dejando una única alerta de nivel MEDIA
      * 
      * @param dias Días de anticipación para alertar
      */
@@ -293,10 +720,84 @@ public class MonitorSistema implements Runnable {
         if (dias < 0) {
             throw new IllegalArgumentException("Los días de alerta previa no pueden ser negativos");
         }
+        configurarHorizontesAlerta(HorizontesAlerta.unico(dias, NivelAlerta.MEDIA));
+    }
+    
+    /**
+     * Configura las alertas preventivas: cuántos días antes del vencimiento se avisa
+     * y con qué nivel. Si el monitor está en ejecución, se reprograman los préstamos activos.
+     * 
+     * @param horizontes Horizontes de alerta
+     */
+    public synchronized void configurarHorizontesAlerta(HorizontesAlerta horizontes) {
+        if (horizontes == null) {
+            throw new IllegalArgumentException("Los horizontes de alerta no pueden ser nulos");
+        }
+        
+        this.horizontesAlerta = horizontes;
+        if (ejecutando.get()) {
+            for (Prestamo prestamo : gestorPrestamos.listarPrestamosActivos()) {
+                programarPrestamo(prestamo);
+            }
+        }
+    }
+    
+    /**
+     * Obtiene los horizontes de alerta preventiva vigentes
+     * 
+     * @return Horizontes de alerta
+     */
+    public HorizontesAlerta getHorizontesAlerta() {
+        return horizontesAlerta;
+    }
+    
+    /**
+     * Obtiene el registro de alertas enviadas por el monitor
+     * 
+     * @return Registro de alertas enviadas
+     */
+    public RegistroAlertasEnviadas getRegistroAlertas() {
+        return registroAlertas;
+    }
+    
+    /**
+     * Obtiene la cantidad de eventos pendientes en la agenda del monitor
+     * 
+     * @return Número de recordatorios, vencimientos y expiraciones programados
+     */
+    public int getCantidadEventosProgramados() {
+        return eventosProgramados.size();
+    }
+    
+    /**
+     * Obtiene el intervalo con el que está programada la próxima revisión de reservas
+     * 
+     * @return Intervalo adaptativo en segundos
+     */
+    public long getIntervaloRevisionSegundos() {
+        return intervaloRevisionSegundos;
+    }
+    
+    /**
+     * Obtiene el histograma de duración de las verificaciones completas
+     * 
+     * @return Histograma de duración de las verificaciones
+     */
+    public HistogramaLatencia getDuracionVerificaciones() {
+        return duracionVerificaciones;
+    }
+    
+    /**
+     * Obtiene el histograma de duración de los eventos de la agenda
+     * 
+     * @return Histograma de duración de los eventos
+     */
+    public HistogramaLatencia getDuracionEventos() {
+        return duracionEventos;
     }
     
     /**
-     * Ejecuta una verificación manual fuera del ciclo programado
+     * Ejecuta una verificación manual completa fuera de la agenda
      */
     public void ejecutarVerificacionManual() {
         System.out.println("Ejecutando verificación manual del sistema...");
@@ -32,11 +32,13 @@ public enum NivelAlerta {
     private final int prioridadNotificacion;
     private final String etiqueta;
     private final String descripcion;
+    private final String prefijo;
     
     private NivelAlerta(int prioridadNotificacion, String etiqueta, String descripcion) {
         this.prioridadNotificacion = prioridadNotificacion;
         this.etiqueta = etiqueta;
         this.descripcion = descripcion;
+        this.prefijo = "[" + etiqueta.toUpperCase() + "] ";
     }
     
     /**
@@ -67,6 +69,15 @@ public enum NivelAlerta {
         return descripcion;
     }
     
+    /**
+     * Obtiene el prefijo que identifica el nivel en los mensajes, por ejemplo "[URGENTE] "
+     * 
+     * @return Prefijo del nivel de alerta
+     */
+    public String getPrefijo() {
+        return prefijo;
+    }
+    
     /**
      * Formatea un mensaje agregando la etiqueta del nivel de alerta
      * 
@@ -74,6 +85,6 @@ public enum NivelAlerta {
      * @return Mensaje formateado con la etiqueta
      */
     public String formatearMensaje(String mensaje) {
-        return "[" + etiqueta.toUpperCase() + "] " + mensaje;
+        return prefijo + mensaje;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,119 @@
+package sistema.biblioteca.monitoreo;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registro de las alertas ya enviadas, para no repetir la misma alerta
+ * (mismo tipo, mismo préstamo o reserva, mismo nivel) más de una vez por día.
+ * La alerta se registra antes de encolarla, para que dos verificaciones simultáneas
+ * no la envíen las dos, y se anula si el encolado falla.
+ * Las alertas se guardan agrupadas por día y los días que quedan fuera
+ * del período de retención se descartan completos, por lo que la memoria
+ * usada se limita a las alertas de los últimos días.
+ */
+public class RegistroAlertasEnviadas {
+    
+    private static final int DIAS_RETENCION_DEFAULT = 1;
+    
+    private final ConcurrentSkipListMap<Long, Set<String>> alertasPorDia;
+    private final int diasRetencion;
+    
+    public RegistroAlertasEnviadas() {
+        this(DIAS_RETENCION_DEFAULT);
+    }
+    
+    /**
+     * Constructor
+     * @param diasRetencion cantidad de días (incluido el actual) que se conservan en el registro
+     */
+    public RegistroAlertasEnviadas(int diasRetencion) {
+        if (diasRetencion <= 0) {
+            throw new IllegalArgumentException("Los días de retención deben ser positivos");
+        }
+        
+        this.alertasPorDia = new ConcurrentSkipListMap<>();
+        this.diasRetencion = diasRetencion;
+    }
+    
+    /**
+     * Registra una alerta si todavía no se había enviado ese día
+     *
+     * @param tipo Tipo de la alerta
+     * @param idReferencia Identificador del préstamo o reserva
+     * @param nivel Nivel de la alerta
+     * @param dia Día de la alerta
+     * @return true si la alerta es nueva y debe enviarse, false si ya se había enviado
+     */
+    public boolean registrarSiEsNueva(TipoAlerta tipo, String idReferencia, NivelAlerta nivel, LocalDate dia) {
+        long diaEpoch = dia.toEpochDay();
+        purgarAnterioresA(diaEpoch - diasRetencion + 1);
+        
+        Set<String> alertasDelDia = alertasPorDia.computeIfAbsent(
+                diaEpoch, k -> ConcurrentHashMap.newKeySet());
+        return alertasDelDia.add(clave(tipo, idReferencia, nivel));
+    }
+    
+    /**
+     * Quita una alerta del registro, por ejemplo porque no se pudo encolar después
+     * de registrarla, para que una verificación posterior del mismo día la reintente
+     *
+     * @param tipo Tipo de la alerta
+     * @param idReferencia Identificador del préstamo o reserva
+     * @param nivel Nivel de la alerta
+     * @param dia Día de la alerta
+     */
+    public void anular(TipoAlerta tipo, String idReferencia, NivelAlerta nivel, LocalDate dia) {
+        Set<String> alertasDelDia = alertasPorDia.get(dia.toEpochDay());
+        if (alertasDelDia != null) {
+            alertasDelDia.remove(clave(tipo, idReferencia, nivel));
+        }
+    }
+    
+    /**
+     * Verifica si una alerta ya fue enviada en un día
+     *
+     * @param tipo Tipo de la alerta
+     * @param idReferencia Identificador del préstamo o reserva
+     * @param nivel Nivel de la alerta
+     * @param dia Día de la alerta
+     * @return true si la alerta ya se había registrado
+     */
+    public boolean fueEnviada(TipoAlerta tipo, String idReferencia, NivelAlerta nivel, LocalDate dia) {
+        Set<String> alertasDelDia = alertasPorDia.get(dia.toEpochDay());
+        return alertasDelDia != null && alertasDelDia.contains(clave(tipo, idReferencia, nivel));
+    }
+    
+    private static String clave(TipoAlerta tipo, String idReferencia, NivelAlerta nivel) {
+        return tipo.name() + "|" + idReferencia + "|" + nivel.name();
+    }
+    
+    private void purgarAnterioresA(long diaEpoch) {
+        ConcurrentNavigableMap<Long, Set<String>> vencidos = alertasPorDia.headMap(diaEpoch);
+        if (!vencidos.isEmpty()) {
+            vencidos.clear();
+        }
+    }
+    
+    /**
+     * Obtiene la cantidad de alertas registradas en el período de retención
+     * @return el número de alertas registradas
+     */
+    public int getCantidadRegistradas() {
+        int total = 0;
+        for (Set<String> alertasDelDia : alertasPorDia.values()) {
+            total += alertasDelDia.size();
+        }
+        return total;
+    }
+    
+    /**
+     * Elimina todas las alertas registradas
+     */
+    public void limpiar() {
+        alertasPorDia.clear();
+    }
+}
@@ -0,0 +1,343 @@
+package sistema.biblioteca.monitoreo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import sistema.biblioteca.colas.ProcesadorReservas;
+import sistema.biblioteca.gestores.GestorPrestamos;
+import sistema.biblioteca.servicios.HistogramaLatencia;
+import sistema.biblioteca.servicios.MetricasCanal;
+import sistema.biblioteca.servicios.ProcesadorNotificaciones;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Servidor HTTP opcional que publica las métricas del sistema en el formato de texto
+ * de Prometheus, en la ruta /metrics. Cada pedido se atiende en un hilo virtual.
+ *
+ * Las métricas se leen de contadores que los componentes ya mantienen (tamaños de cola,
+ * contadores e histogramas), así que atender un pedido nunca recorre los préstamos
+ * ni las reservas.
+ */
+public class ServidorMetricas {
+    
+    public static final String RUTA = "/metrics";
+    private static final String TIPO_CONTENIDO = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] CUANTILES = {0.5, 0.99, 0.999};
+    
+    private final List<FamiliaMetricas> familias;
+    private HttpServer servidor;
+    private ExecutorService ejecutor;
+    
+    public ServidorMetricas() {
+        this.familias = new CopyOnWriteArrayList<>();
+    }
+    
+    /**
+     * Registra una métrica sin etiquetas
+     *
+     * @param nombre Nombre de la métrica
+     * @param tipo Tipo de Prometheus (gauge, counter)
+     * @param ayuda Descripción de la métrica
+     * @param valor Función que lee el valor actual
+     */
+    public void registrar(String nombre, String tipo, String ayuda, LongSupplier valor) {
+        registrarConEtiquetas(nombre, tipo, ayuda, () -> Map.of("", valor.getAsLong()));
+    }
+    
+    /**
+     * Registra una métrica con varias series. Las claves del mapa son las etiquetas
+     * de cada serie ya formateadas, por ejemplo {@code canal="email"} (ver {@link #etiqueta}).
+     *
+     * @param nombre Nombre de la métrica
+     * @param tipo Tipo de Prometheus (gauge, counter)
+     * @param ayuda Descripción de la métrica
+     * @param series Función que lee los valores actuales de cada serie
+     */
+    public void registrarConEtiquetas(String nombre, String tipo, String ayuda,
+                                      Supplier<Map<String, ? extends Number>> series) {
+        validarNombre(nombre);
+        familias.add(new FamiliaMetricas(nombre, tipo, ayuda, series, null));
+    }
+    
+    /**
+     * Registra una métrica de tipo summary a partir de histogramas de latencia: por cada
+     * serie se publican sus cuantiles y las series {@code _sum} y {@code _count}, en segundos
+     *
+     * @param nombre Nombre de la métrica
+     * @param ayuda Descripción de la métrica
+     * @param histogramas Función que obtiene el histograma de cada serie, por etiquetas
+     */
+    public void registrarResumen(String nombre, String ayuda, Supplier<Map<String, HistogramaLatencia>> histogramas) {
+        validarNombre(nombre);
+        familias.add(new FamiliaMetricas(nombre, "summary", ayuda, null, histogramas));
+    }
+    
+    private static void validarNombre(String nombre) {
+        if (nombre == null || !nombre.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("Nombre de métrica inválido: " + nombre);
+        }
+    }
+    
+    /**
+     * Registra la cantidad de préstamos activos y totales
+     *
+     * @param gestorPrestamos Gestor de préstamos
+     */
+    public void registrarGestorPrestamos(GestorPrestamos gestorPrestamos) {
+        registrar("biblioteca_prestamos_activos", "gauge", "Préstamos activos",
+                gestorPrestamos::getCantidadPrestamosActivos);
+        registrar("biblioteca_prestamos_total", "counter", "Préstamos registrados desde el inicio",
+                gestorPrestamos::getCantidadPrestamosTotales);
+    }
+    
+    /**
+     * Registra las solicitudes de reserva en espera de ser procesadas
+     *
+     * @param procesadorReservas Procesador de reservas
+     */
+    public void registrarProcesadorReservas(ProcesadorReservas procesadorReservas) {
+        registrar("biblioteca_reservas_solicitudes_pendientes", "gauge",
+                "Solicitudes de reserva en la cola del procesador",
+                procesadorReservas::getTamanoColaSolicitudes);
+    }
+    
+    /**
+     * Registra las colas, contadores y latencias de entrega de cada canal de notificaciones
+     *
+     * @param procesador Procesador de notificaciones
+     */
+    public void registrarProcesadorNotificaciones(ProcesadorNotificaciones procesador) {
+        registrarConEtiquetas("biblioteca_notificaciones_pendientes", "gauge",
+                "Notificaciones en la cola de cada canal", () -> {
+                    Map<String, Integer> series = new LinkedHashMap<>();
+                    for (String tipo : procesador.getTiposCanal()) {
+                        series.put(etiqueta("canal", tipo), procesador.getNotificacionesPendientes(tipo));
+                    }
+                    return series;
+                });
+        registrarPorCanal(procesador, "biblioteca_notificaciones_enviadas_total",
+                "Notificaciones enviadas por canal", MetricasCanal::getEnviadas);
+        registrarPorCanal(procesador, "biblioteca_notificaciones_fallidas_total",
+                "Notificaciones descartadas por fallo por canal", MetricasCanal::getFallidas);
+        registrarPorCanal(procesador, "biblioteca_notificaciones_rechazadas_total",
+                "Notificaciones rechazadas por cola llena por canal", MetricasCanal::getRechazadas);
+        registrarResumen("biblioteca_notificaciones_latencia_entrega_segundos",
+                "Tiempo desde que se encola una notificación hasta que se entrega", () -> {
+                    Map<String, HistogramaLatencia> series = new LinkedHashMap<>();
+                    for (String tipo : procesador.getTiposCanal()) {
+                        MetricasCanal metricas = procesador.getMetricas(tipo);
+                        if (metricas != null) {
+                            series.put(etiqueta("canal", tipo), metricas.getLatenciaEntrega());
+                        }
+                    }
+                    return series;
+                });
+    }
+    
+    /**
+     * Registra la agenda del monitor y la duración de sus verificaciones y eventos
+     *
+     * @param monitor Monitor del sistema
+     */
+    public void registrarMonitor(MonitorSistema monitor) {
+        registrar("biblioteca_monitor_eventos_programados", "gauge",
+                "Recordatorios, vencimientos y expiraciones en la agenda del monitor",
+                monitor::getCantidadEventosProgramados);
+        registrar("biblioteca_monitor_intervalo_revision_segundos", "gauge",
+                "Intervalo adaptativo de la próxima revisión de reservas",
+                monitor::getIntervaloRevisionSegundos);
+        registrarResumen("biblioteca_monitor_verificacion_segundos",
+                "Duración de las verificaciones completas del monitor",
+                () -> Map.of("", monitor.getDuracionVerificaciones()));
+        registrarResumen("biblioteca_monitor_evento_segundos",
+                "Duración de los eventos de la agenda del monitor",
+                () -> Map.of("", monitor.getDuracionEventos()));
+    }
+    
+    private void registrarPorCanal(ProcesadorNotificaciones procesador, String nombre, String ayuda,
+                                   ToLongFunction<MetricasCanal> valor) {
+        registrarConEtiquetas(nombre, "counter", ayuda, () -> {
+            Map<String, Long> series = new LinkedHashMap<>();
+            for (String tipo : procesador.getTiposCanal()) {
+                MetricasCanal metricas = procesador.getMetricas(tipo);
+                series.put(etiqueta("canal", tipo), metricas != null ? valor.applyAsLong(metricas) : 0L);
+            }
+            return series;
+        });
+    }
+    
+    /**
+     * Formatea una etiqueta de Prometheus escapando su valor
+     *
+     * @param nombre Nombre de la etiqueta
+     * @param valor Valor de la etiqueta
+     * @return La etiqueta formateada, por ejemplo {@code canal="email"}
+     */
+    public static String etiqueta(String nombre, String valor) {
+        String escapado = valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return nombre + "=\"" + escapado + "\"";
+    }
+    
+    /**
+     * Genera el texto con todas las métricas registradas
+     *
+     * @return Métricas en formato de texto de Prometheus
+     */
+    public String exportar() {
+        StringBuilder texto = new StringBuilder(256 * familias.size());
+        for (FamiliaMetricas familia : familias) {
+            Map<String, ? extends Number> series;
+            Map<String, HistogramaLatencia> histogramas;
+            try {
+                series = familia.series != null ? familia.series.get() : Map.of();
+                histogramas = familia.histogramas != null ? familia.histogramas.get() : Map.of();
+            } catch (RuntimeException e) {
+                System.out.println("Error al leer la métrica " + familia.nombre + ": " + e.getMessage());
+                continue;
+            }
+            
+            texto.append("# HELP ").append(familia.nombre).append(' ')
+                    .append(familia.ayuda.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            texto.append("# TYPE ").append(familia.nombre).append(' ').append(familia.tipo).append('\n');
+            for (Map.Entry<String, ? extends Number> serie : series.entrySet()) {
+                agregarSerie(texto, familia.nombre, serie.getKey(), serie.getValue());
+            }
+            for (Map.Entry<String, HistogramaLatencia> serie : histogramas.entrySet()) {
+                String etiquetas = serie.getKey();
+                HistogramaLatencia histograma = serie.getValue();
+                String prefijoCuantil = etiquetas.isEmpty() ? "" : etiquetas + ",";
+                for (double cuantil : CUANTILES) {
+                    agregarSerie(texto, familia.nombre, prefijoCuantil + etiqueta("quantile", String.valueOf(cuantil)),
+                            histograma.getPercentilNanos(cuantil * 100) / 1e9);
+                }
+                agregarSerie(texto, familia.nombre + "_sum", etiquetas, histograma.getSumaNanos() / 1e9);
+                agregarSerie(texto, familia.nombre + "_count", etiquetas, histograma.getCantidad());
+            }
+        }
+        return texto.toString();
+    }
+    
+    private static void agregarSerie(StringBuilder texto, String nombre, String etiquetas, Number valor) {
+        texto.append(nombre);
+        if (!etiquetas.isEmpty()) {
+            texto.append('{').append(etiquetas).append('}');
+        }
+        texto.append(' ').append(valor).append('\n');
+    }
+    
+    /**
+     * Inicia el servidor escuchando solo en la interfaz de loopback
+     *
+     * @param puerto Puerto en el que escuchar; 0 elige uno libre
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public void iniciar(int puerto) throws IOException {
+        iniciar(InetAddress.getLoopbackAddress(), puerto);
+    }
+    
+    /**
+     * Inicia el servidor
+     *
+     * @param direccion Dirección en la que escuchar; la dirección comodín expone
+     *        las métricas en todas las interfaces
+     * @param puerto Puerto en el que escuchar; 0 elige uno libre
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public synchronized void iniciar(InetAddress direccion, int puerto) throws IOException {
+        if (direccion == null) {
+            throw new IllegalArgumentException("La dirección no puede ser nula");
+        }
+        if (servidor != null) {
+            return; // Ya está en ejecución
+        }
+        
+        HttpServer nuevo = HttpServer.create(new InetSocketAddress(direccion, puerto), 0);
+        nuevo.createContext(RUTA, this::atender);
+        ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+        nuevo.setExecutor(ejecutor);
+        nuevo.start();
+        servidor = nuevo;
+        System.out.println("Servidor de métricas escuchando en " + direccion.getHostAddress() + ":" + getPuerto());
+    }
+    
+    /**
+     * Detiene el servidor
+     */
+    public synchronized void detener() {
+        if (servidor == null) {
+            return;
+        }
+        servidor.stop(0);
+        ejecutor.shutdown();
+        servidor = null;
+        ejecutor = null;
+    }
+    
+    /**
+     * Obtiene el puerto en el que escucha el servidor
+     *
+     * @return El puerto, o -1 si el servidor no está en ejecución
+     */
+    public synchronized int getPuerto() {
+        return servidor != null ? servidor.getAddress().getPort() : -1;
+    }
+    
+    /**
+     * Obtiene la dirección en la que escucha el servidor
+     *
+     * @return La dirección, o null si el servidor no está en ejecución
+     */
+    public synchronized InetAddress getDireccion() {
+        return servidor != null ? servidor.getAddress().getAddress() : null;
+    }
+    
+    private void atender(HttpExchange intercambio) throws IOException {
+        try (intercambio) {
+            if (!"GET".equals(intercambio.getRequestMethod())) {
+                intercambio.getResponseHeaders().set("Allow", "GET");
+                intercambio.sendResponseHeaders(405, -1);
+                return;
+            }
+            
+            byte[] cuerpo = exportar().getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", TIPO_CONTENIDO);
+            intercambio.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        }
+    }
+    
+    /**
+     * Métrica registrada, con la función que lee sus series
+     */
+    private static class FamiliaMetricas {
+        private final String nombre;
+        private final String tipo;
+        private final String ayuda;
+        private final Supplier<Map<String, ? extends Number>> series;
+        private final Supplier<Map<String, HistogramaLatencia>> histogramas;
+        
+        FamiliaMetricas(String nombre, String tipo, String ayuda, Supplier<Map<String, ? extends Number>> series,
+                        Supplier<Map<String, HistogramaLatencia>> histogramas) {
+            this.nombre = nombre;
+            this.tipo = tipo;
+            this.ayuda = ayuda;
+            this.series = series;
+            this.histogramas = histogramas;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package sistema.biblioteca.monitoreo;
+
+/**
+ * Enumeración que define de qué tipo es una alerta registrada, para que las alertas
+ * de distinto origen o propósito no se confundan en el registro de alertas enviadas
+ * aunque compartan préstamo y nivel
+ */
+public enum TipoAlerta {
+    
+    /**
+     * Recordatorios que envía el monitor del sistema antes del vencimiento de un préstamo,
+     * con el nivel del horizonte que corresponde
+     */
+    RECORDATORIO,
+    
+    /**
+     * Avisos que envía el monitor del sistema cuando un préstamo ya está vencido
+     */
+    VENCIDO,
+    
+    /**
+     * Alertas escalonadas de vencimiento que envía AlertaVencimiento
+     */
+    ALERTA_VENCIMIENTO
+}
@@ -0,0 +1,192 @@
+package sistema.biblioteca.reportes;
+
+import sistema.biblioteca.gestores.EscuchaPrestamos;
+import sistema.biblioteca.gestores.GestorPrestamos;
+import sistema.biblioteca.modelos.Prestamo;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Estadísticas de préstamos materializadas: contadores, sumas acumuladas y cantidades
+ * por mes que se actualizan con los cambios que avisa el GestorPrestamos. El historial
+ * se recorre una sola vez al crearlas; a partir de ahí las consultas no dependen de
+ * cuántos préstamos se hayan registrado, y solo se guardan los préstamos activos.
+ *
+ * Los préstamos atrasados se cuentan con los vencimientos de los préstamos activos
+ * ordenados por fecha: cada consulta solo mueve los que vencieron desde la anterior.
+ * Las transiciones se deducen del estado del préstamo al recibir el aviso, así que
+ * un aviso repetido no altera los contadores.
+ */
+public class EstadisticasPrestamos implements EscuchaPrestamos {
+    
+    private static final Comparator<Vencimiento> ORDEN_VENCIMIENTO =
+            Comparator.comparing((Vencimiento v) -> v.fecha).thenComparing(v -> v.idPrestamo);
+    
+    private final Map<String, Vencimiento> vencimientosActivos;
+    private final TreeSet<Vencimiento> pendientesDeVencer;
+    private final Set<String> prestamosAtrasados;
+    private final NavigableMap<YearMonth, Integer> prestamosPorMes;
+    private int totalPrestamos;
+    private int prestamosDevueltos;
+    private long sumaDiasPrestamo;
+    
+    private EstadisticasPrestamos() {
+        this.vencimientosActivos = new HashMap<>();
+        this.pendientesDeVencer = new TreeSet<>(ORDEN_VENCIMIENTO);
+        this.prestamosAtrasados = new HashSet<>();
+        this.prestamosPorMes = new TreeMap<>();
+    }
+    
+    /**
+     * Crea las estadísticas a partir del historial actual y las suscribe a los cambios
+     * del gestor
+     *
+     * @param gestorPrestamos Gestor de préstamos
+     * @return Las estadísticas suscritas
+     */
+    public static EstadisticasPrestamos suscribir(GestorPrestamos gestorPrestamos) {
+        EstadisticasPrestamos estadisticas = new EstadisticasPrestamos();
+        
+        // Suscribirse antes de leer el historial para no perder cambios; los avisos
+        // esperan a que termine la carga y los ya contados no se repiten
+        synchronized (estadisticas) {
+            gestorPrestamos.agregarEscucha(estadisticas);
+            for (Prestamo prestamo : gestorPrestamos.listarTodosLosPrestamos()) {
+                estadisticas.cargar(prestamo);
+            }
+        }
+        return estadisticas;
+    }
+    
+    /**
+     * Cuenta un préstamo del historial, activo o ya devuelto
+     */
+    private void cargar(Prestamo prestamo) {
+        registrarAlta(prestamo);
+        if (prestamo.isActivo()) {
+            agregarVencimiento(prestamo);
+        } else {
+            registrarDevolucion(prestamo);
+        }
+    }
+    
+    @Override
+    public synchronized void prestamoModificado(Prestamo prestamo) {
+        Vencimiento actual = vencimientosActivos.get(prestamo.getId());
+        if (!prestamo.isActivo()) {
+            // Solo se cuenta la devolución de un préstamo activo; un aviso repetido ya no lo encuentra
+            if (actual != null) {
+                quitarVencimiento(actual);
+                registrarDevolucion(prestamo);
+            }
+            return;
+        }
+        
+        if (actual == null) {
+            registrarAlta(prestamo); // Nuevo
+        } else if (actual.fecha.equals(prestamo.getFechaDevolucionEstimada())) {
+            return; // Sin cambios
+        } else {
+            quitarVencimiento(actual); // Renovado
+        }
+        agregarVencimiento(prestamo);
+    }
+    
+    private void registrarAlta(Prestamo prestamo) {
+        totalPrestamos++;
+        prestamosPorMes.merge(YearMonth.from(prestamo.getFechaPrestamo()), 1, Integer::sum);
+    }
+    
+    private void agregarVencimiento(Prestamo prestamo) {
+        Vencimiento vencimiento = new Vencimiento(prestamo.getId(), prestamo.getFechaDevolucionEstimada());
+        vencimientosActivos.put(vencimiento.idPrestamo, vencimiento);
+        pendientesDeVencer.add(vencimiento);
+    }
+    
+    private void quitarVencimiento(Vencimiento vencimiento) {
+        vencimientosActivos.remove(vencimiento.idPrestamo);
+        if (!pendientesDeVencer.remove(vencimiento)) {
+            prestamosAtrasados.remove(vencimiento.idPrestamo);
+        }
+    }
+    
+    private void registrarDevolucion(Prestamo prestamo) {
+        prestamosDevueltos++;
+        sumaDiasPrestamo += Duration.between(prestamo.getFechaPrestamo(), prestamo.getFechaDevolucionReal()).toDays();
+    }
+    
+    /**
+     * Mueve a atrasados los préstamos activos que vencieron hasta un instante
+     */
+    private void actualizarAtrasados(LocalDateTime ahora) {
+        while (!pendientesDeVencer.isEmpty() && pendientesDeVencer.first().fecha.isBefore(ahora)) {
+            prestamosAtrasados.add(pendientesDeVencer.pollFirst().idPrestamo);
+        }
+    }
+    
+    public synchronized int getTotalPrestamos() {
+        return totalPrestamos;
+    }
+    
+    public synchronized int getPrestamosActivos() {
+        return vencimientosActivos.size();
+    }
+    
+    public synchronized int getPrestamosDevueltos() {
+        return prestamosDevueltos;
+    }
+    
+    /**
+     * Obtiene la cantidad de préstamos activos cuya fecha de devolución ya pasó
+     *
+     * @param ahora Instante de referencia
+     * @return Número de préstamos atrasados
+     */
+    public synchronized int getPrestamosAtrasados(LocalDateTime ahora) {
+        actualizarAtrasados(ahora);
+        return prestamosAtrasados.size();
+    }
+    
+    /**
+     * Obtiene la duración promedio de los préstamos devueltos
+     *
+     * @return Promedio en días, o 0 si no hay préstamos devueltos
+     */
+    public synchronized double getPromedioDiasPrestamo() {
+        return prestamosDevueltos == 0 ? 0 : (double) sumaDiasPrestamo / prestamosDevueltos;
+    }
+    
+    /**
+     * Obtiene la cantidad de préstamos iniciados en cada mes de un período
+     *
+     * @param desde Primer mes del período
+     * @param hasta Último mes del período
+     * @return Mapa ordenado de mes a cantidad de préstamos; los meses sin préstamos no aparecen
+     */
+    public synchronized NavigableMap<YearMonth, Integer> getPrestamosPorMes(YearMonth desde, YearMonth hasta) {
+        return new TreeMap<>(prestamosPorMes.subMap(desde, true, hasta, true));
+    }
+    
+    /**
+     * Vencimiento de un préstamo activo
+     */
+    private static class Vencimiento {
+        private final String idPrestamo;
+        private final LocalDateTime fecha;
+        
+        Vencimiento(String idPrestamo, LocalDateTime fecha) {
+            this.idPrestamo = idPrestamo;
+            this.fecha = fecha;
+        }
+    }
+}
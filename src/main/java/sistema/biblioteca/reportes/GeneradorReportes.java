@@ -9,6 +9,7 @@ import sistema.biblioteca.modelos.RecursoBase;
 import sistema.biblioteca.modelos.Usuario;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -26,47 +27,42 @@ public class GeneradorReportes {
     private final GestorPrestamos gestorPrestamos;
     private final GestorRecursos gestorRecursos;
     private final GestorUsuarios gestorUsuarios;
+    private final EstadisticasPrestamos estadisticasPrestamos;
     
-    public GeneradorReportes(GestorPrestamos gestorPrestamos, GestorRecursos gestorRecursos, GestorUsuarios gestorUsuarios) {
+    /**
+     * Constructor
+     * @param gestorPrestamos Gestor de préstamos
+     * @param gestorRecursos Gestor de recursos
+     * @param gestorUsuarios Gestor de usuarios
+     * @param estadisticasPrestamos Estadísticas suscritas al gestor de préstamos, obtenidas con
+     *        {@link EstadisticasPrestamos#suscribir(GestorPrestamos)}; se comparten entre todos
+     *        los generadores para no recorrer el historial ni sumar una suscripción por cada uno
+     */
+    public GeneradorReportes(GestorPrestamos gestorPrestamos, GestorRecursos gestorRecursos, GestorUsuarios gestorUsuarios,
+                             EstadisticasPrestamos estadisticasPrestamos) {
+        if (estadisticasPrestamos == null) {
+            throw new IllegalArgumentException("Las estadísticas de préstamos no pueden ser nulas");
+        }
+        
         this.gestorPrestamos = gestorPrestamos;
         this.gestorRecursos = gestorRecursos;
         this.gestorUsuarios = gestorUsuarios;
+        this.estadisticasPrestamos = estadisticasPrestamos;
     }
     
     /**
-     * Genera un informe con las estadísticas generales de préstamos
+     * Genera un informe con las estadísticas generales de préstamos.
+     * Los valores se leen de las estadísticas materializadas, sin recorrer el historial.
      * @return Mapa con las estadísticas
      */
     public Map<String, Object> generarEstadisticasPrestamos() {
         Map<String, Object> estadisticas = new HashMap<>();
         
-        List<Prestamo> todosLosPrestamos = gestorPrestamos.listarTodosLosPrestamos();
-        List<Prestamo> prestamosActivos = gestorPrestamos.listarPrestamosActivos();
-        
-        // Contar préstamos por estado
-        int totalPrestamos = todosLosPrestamos.size();
-        int prestamosDevueltos = (int) todosLosPrestamos.stream()
-                .filter(p -> p.getFechaDevolucionReal() != null)
-                .count();
-        int prestamosAtrasados = (int) prestamosActivos.stream()
-                .filter(p -> p.getFechaDevolucionEstimada().isBefore(LocalDateTime.now()))
-                .count();
-        
-        // Calcular tiempos promedio
-        double promedioDiasPrestamo = todosLosPrestamos.stream()
-                .filter(p -> p.getFechaDevolucionReal() != null)
-                .mapToLong(p -> java.time.Duration.between(
-                        p.getFechaPrestamo(), 
-                        p.getFechaDevolucionReal()).toDays())
-                .average()
-                .orElse(0);
-        
-        // Guardar estadísticas
-        estadisticas.put("totalPrestamos", totalPrestamos);
-        estadisticas.put("prestamosActivos", prestamosActivos.size());
-        estadisticas.put("prestamosDevueltos", prestamosDevueltos);
-        estadisticas.put("prestamosAtrasados", prestamosAtrasados);
-        estadisticas.put("promedioDiasPrestamo", promedioDiasPrestamo);
+        estadisticas.put("totalPrestamos", estadisticasPrestamos.getTotalPrestamos());
+        estadisticas.put("prestamosActivos", estadisticasPrestamos.getPrestamosActivos());
+        estadisticas.put("prestamosDevueltos", estadisticasPrestamos.getPrestamosDevueltos());
+        estadisticas.put("prestamosAtrasados", estadisticasPrestamos.getPrestamosAtrasados(LocalDateTime.now()));
+        estadisticas.put("promedioDiasPrestamo", estadisticasPrestamos.getPromedioDiasPrestamo());
         
         return estadisticas;
     }
@@ -222,26 +218,30 @@ public class GeneradorReportes {
         return estadisticas;
     }
     
+    /**
+     * Obtiene las estadísticas materializadas de préstamos
+     * @return Estadísticas de préstamos
+     */
+    public EstadisticasPrestamos getEstadisticasPrestamos() {
+        return estadisticasPrestamos;
+    }
+    
     /**
      * Genera un informe de rendimiento del sistema de préstamos
      * @return Mapa con estadísticas de rendimiento
      */
     public Map<String, Object> generarEstadisticasRendimiento() {
         Map<String, Object> estadisticas = new HashMap<>();
-        List<Prestamo> prestamos = gestorPrestamos.listarTodosLosPrestamos();
         
         // Total de préstamos
-        estadisticas.put("totalPrestamos", prestamos.size());
+        estadisticas.put("totalPrestamos", estadisticasPrestamos.getTotalPrestamos());
         
-        // Préstamos por mes (últimos 6 meses)
+        // Préstamos por mes (últimos 6 meses, contando completo el mes en que empieza el período)
         Map<String, Integer> prestamosPorMes = new HashMap<>();
-        LocalDateTime seisAtras = LocalDateTime.now().minusMonths(6);
-        
-        for (Prestamo p : prestamos) {
-            if (p.getFechaPrestamo().isAfter(seisAtras)) {
-                String mesAño = p.getFechaPrestamo().getMonth() + " " + p.getFechaPrestamo().getYear();
-                prestamosPorMes.put(mesAño, prestamosPorMes.getOrDefault(mesAño, 0) + 1);
-            }
+        YearMonth mesActual = YearMonth.now();
+        for (Map.Entry<YearMonth, Integer> mes
+                : estadisticasPrestamos.getPrestamosPorMes(mesActual.minusMonths(6), mesActual).entrySet()) {
+            prestamosPorMes.put(mes.getKey().getMonth() + " " + mes.getKey().getYear(), mes.getValue());
         }
         estadisticas.put("prestamosPorMes", prestamosPorMes);
         
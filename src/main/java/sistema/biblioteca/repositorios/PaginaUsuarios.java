@@ -0,0 +1,36 @@
+package sistema.biblioteca.repositorios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Página de usuarios obtenida de un RepositorioUsuarios.
+ * El cursor de la página se usa para pedir la siguiente; es null cuando no hay más usuarios.
+ */
+public class PaginaUsuarios {
+    private final List<Usuario> usuarios;
+    private final String siguienteCursor;
+    
+    public PaginaUsuarios(List<Usuario> usuarios, String siguienteCursor) {
+        this.usuarios = Collections.unmodifiableList(usuarios);
+        this.siguienteCursor = siguienteCursor;
+    }
+    
+    public List<Usuario> getUsuarios() {
+        return usuarios;
+    }
+    
+    /**
+     * Obtiene el cursor para pedir la página siguiente
+     * @return el cursor, o null si esta es la última página
+     */
+    public String getSiguienteCursor() {
+        return siguienteCursor;
+    }
+    
+    public boolean hayMasPaginas() {
+        return siguienteCursor != null;
+    }
+}
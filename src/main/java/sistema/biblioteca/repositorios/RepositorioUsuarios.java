@@ -0,0 +1,44 @@
+package sistema.biblioteca.repositorios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Acceso a los usuarios registrados en el sistema.
+ * Para procesos masivos conviene usar {@link #stream()} u {@link #obtenerPagina(String, int)},
+ * que recorren los usuarios sin copiar la población completa.
+ */
+public interface RepositorioUsuarios {
+    /**
+     * Obtiene todos los usuarios registrados
+     * 
+     * @return Lista con todos los usuarios
+     */
+    List<Usuario> obtenerTodos();
+    
+    /**
+     * Recorre los usuarios registrados sin copiarlos todos a una lista.
+     * El stream debe cerrarse al terminar de usarlo.
+     * 
+     * @return Stream secuencial de usuarios
+     */
+    Stream<Usuario> stream();
+    
+    /**
+     * Obtiene una página de usuarios ordenados por id
+     * 
+     * @param cursor Cursor devuelto por la página anterior, o null para la primera página
+     * @param tamano Cantidad máxima de usuarios en la página
+     * @return Página con los usuarios siguientes al cursor
+     */
+    PaginaUsuarios obtenerPagina(String cursor, int tamano);
+    
+    /**
+     * Obtiene la cantidad de usuarios registrados
+     * 
+     * @return Número de usuarios
+     */
+    int contar();
+}
@@ -0,0 +1,106 @@
+package sistema.biblioteca.repositorios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio de usuarios en memoria.
+ * Los usuarios se guardan ordenados por id, de modo que el id del último usuario de
+ * una página sirve como cursor para la siguiente y los recorridos avanzan sobre el
+ * propio mapa, sin copias. Los recorridos son concurrentes: reflejan altas y bajas
+ * hechas mientras se recorre, pero nunca fallan por ellas.
+ */
+public class RepositorioUsuariosMemoria implements RepositorioUsuarios {
+    
+    private final ConcurrentSkipListMap<String, Usuario> usuarios;
+    // El tamaño del mapa se calcula recorriéndolo, así que se lleva la cuenta aparte
+    private final AtomicInteger cantidad;
+    
+    public RepositorioUsuariosMemoria() {
+        this.usuarios = new ConcurrentSkipListMap<>();
+        this.cantidad = new AtomicInteger(0);
+    }
+    
+    /**
+     * Guarda un usuario, reemplazando al que tuviera el mismo id
+     * 
+     * @param usuario Usuario a guardar
+     */
+    public void guardar(Usuario usuario) {
+        if (usuario == null || usuario.getId() == null) {
+            throw new IllegalArgumentException("El usuario y su id no pueden ser nulos");
+        }
+        if (usuarios.put(usuario.getId(), usuario) == null) {
+            cantidad.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Busca un usuario por su id
+     * 
+     * @param id Id del usuario
+     * @return El usuario, o null si no existe
+     */
+    public Usuario buscarPorId(String id) {
+        return id != null ? usuarios.get(id) : null;
+    }
+    
+    public boolean existe(String id) {
+        return id != null && usuarios.containsKey(id);
+    }
+    
+    /**
+     * Elimina un usuario
+     * 
+     * @param id Id del usuario
+     * @return El usuario eliminado, o null si no existía
+     */
+    public Usuario eliminar(String id) {
+        Usuario eliminado = id != null ? usuarios.remove(id) : null;
+        if (eliminado != null) {
+            cantidad.decrementAndGet();
+        }
+        return eliminado;
+    }
+    
+    @Override
+    public List<Usuario> obtenerTodos() {
+        return new ArrayList<>(usuarios.values());
+    }
+    
+    @Override
+    public Stream<Usuario> stream() {
+        return usuarios.values().stream();
+    }
+    
+    @Override
+    public PaginaUsuarios obtenerPagina(String cursor, int tamano) {
+        if (tamano <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser mayor que cero");
+        }
+        
+        ConcurrentNavigableMap<String, Usuario> restantes =
+                cursor == null ? usuarios : usuarios.tailMap(cursor, false);
+        
+        List<Usuario> pagina = new ArrayList<>(Math.min(tamano, 1024));
+        Iterator<Usuario> iterador = restantes.values().iterator();
+        while (pagina.size() < tamano && iterador.hasNext()) {
+            pagina.add(iterador.next());
+        }
+        
+        String siguienteCursor = iterador.hasNext() ? pagina.get(pagina.size() - 1).getId() : null;
+        return new PaginaUsuarios(pagina, siguienteCursor);
+    }
+    
+    @Override
+    public int contar() {
+        return cantidad.get();
+    }
+}
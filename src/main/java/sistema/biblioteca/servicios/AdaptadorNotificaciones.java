@@ -3,8 +3,16 @@ package sistema.biblioteca.servicios;
 import sistema.biblioteca.modelos.Usuario;
 import sistema.biblioteca.repositorios.RepositorioUsuarios;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 
 /**
  * Clase adaptadora que integra el ProcesadorNotificaciones con el sistema de notificaciones existente.
@@ -12,10 +20,16 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class AdaptadorNotificaciones implements ServicioNotificaciones {
     
+    private static final int TAMANO_BLOQUE_DIFUSION = 1000;
+    private static final int HILOS_DIFUSION_DEFAULT = Math.min(4, Runtime.getRuntime().availableProcessors());
+    // El texto del envío global es el único parámetro, así que se entrega sin interpretar sus llaves
+    private static final PlantillaMensaje PLANTILLA_GLOBAL = PlantillaMensaje.compilar("{0}");
+    
     private final ProcesadorNotificaciones procesador;
     private final String tipoNotificacion;
     private final RepositorioUsuarios repositorioUsuarios;
     private final ConcurrentHashMap<String, Boolean> pendientes;
+    private final int hilosDifusion;
     
     /**
      * Constructor para el adaptador
@@ -27,10 +41,30 @@ public class AdaptadorNotificaciones implements ServicioNotificaciones {
     public AdaptadorNotificaciones(ProcesadorNotificaciones procesador, 
                                   String tipoNotificacion,
                                   RepositorioUsuarios repositorioUsuarios) {
+        this(procesador, tipoNotificacion, repositorioUsuarios, HILOS_DIFUSION_DEFAULT);
+    }
+    
+    /**
+     * Constructor para el adaptador
+     * 
+     * @param procesador El procesador de notificaciones concurrente
+     * @param tipoNotificacion El tipo de notificación que este adaptador utiliza
+     * @param repositorioUsuarios Repositorio para acceder a los usuarios del sistema
+     * @param hilosDifusion Máximo de bloques de usuarios que se encolan en paralelo en un envío global
+     */
+    public AdaptadorNotificaciones(ProcesadorNotificaciones procesador, 
+                                  String tipoNotificacion,
+                                  RepositorioUsuarios repositorioUsuarios,
+                                  int hilosDifusion) {
+        if (hilosDifusion <= 0) {
+            throw new IllegalArgumentException("El número de hilos de difusión debe ser mayor que cero");
+        }
+        
         this.procesador = procesador;
         this.tipoNotificacion = tipoNotificacion;
         this.repositorioUsuarios = repositorioUsuarios;
         this.pendientes = new ConcurrentHashMap<>();
+        this.hilosDifusion = hilosDifusion;
     }
     
     @Override
@@ -48,29 +82,109 @@ public class AdaptadorNotificaciones implements ServicioNotificaciones {
         return true;
     }
     
+    /**
+     * Envía una notificación a todos los usuarios del sistema. Si el hilo se interrumpe,
+     * deja de encolar, conserva la marca de interrupción y devuelve lo encolado hasta ese momento.
+     * 
+     * @param mensaje El contenido de la notificación
+     * @return Número de notificaciones encoladas correctamente
+     */
     @Override
     public int enviarNotificacionGlobal(String mensaje) {
-        if (mensaje == null || mensaje.isEmpty() || repositorioUsuarios == null) {
-            return 0;
+        AtomicInteger encoladas = new AtomicInteger(0);
+        try {
+            return enviarNotificacionGlobal(mensaje, total -> encoladas.accumulateAndGet(total, Math::max));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Envío global interrumpido después de encolar " + encoladas.get() + " notificaciones");
+            return encoladas.get();
         }
-        
-        var usuarios = repositorioUsuarios.obtenerTodos();
-        if (usuarios.isEmpty()) {
+    }
+    
+    /**
+     * Envía una notificación a todos los usuarios del sistema.
+     * Los usuarios se recorren en bloques sin cargarlos todos en memoria y cada bloque
+     * se encola como un lote en un hilo virtual, con un máximo de bloques en curso, de modo
+     * que la cola del canal se bloquea una vez por bloque y no una vez por usuario. El recorrido
+     * no guarda estado por usuario y todos los envíos comparten el mismo mensaje, pero cada
+     * notificación ocupa la cola del canal hasta enviarse (con una cola acotada, las que
+     * no entran se rechazan), y los servicios que guardan pendientes por usuario, como
+     * {@link ServicioNotificacionesEmail}, los retienen hasta procesarlos.
+     * 
+     * @param mensaje El contenido de la notificación
+     * @param alAvanzar Recibe la cantidad acumulada de notificaciones encoladas cada vez
+     *        que se completa un bloque (puede invocarse desde distintos hilos)
+     * @return Número de notificaciones encoladas correctamente
+     * @throws InterruptedException si el hilo se interrumpe; los bloques en curso se cancelan
+     */
+    public int enviarNotificacionGlobal(String mensaje, IntConsumer alAvanzar) throws InterruptedException {
+        if (mensaje == null || mensaje.isEmpty() || repositorioUsuarios == null) {
             return 0;
         }
         
+        MensajePlantilla mensajeGlobal = PLANTILLA_GLOBAL.con(mensaje);
         AtomicInteger contador = new AtomicInteger(0);
+        Semaphore bloquesEnCurso = new Semaphore(hilosDifusion);
         
-        for (Usuario usuario : usuarios) {
-            boolean enviado = enviarNotificacion(usuario, mensaje);
-            if (enviado) {
-                contador.incrementAndGet();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+             Stream<Usuario> usuarios = repositorioUsuarios.stream()) {
+            Iterator<Usuario> iterador = usuarios.iterator();
+            List<Usuario> bloque = new ArrayList<>(TAMANO_BLOQUE_DIFUSION);
+            
+            while (iterador.hasNext()) {
+                bloque.add(iterador.next());
+                if (bloque.size() < TAMANO_BLOQUE_DIFUSION && iterador.hasNext()) {
+                    continue;
+                }
+                
+                // Esperar a que termine algún bloque antes de leer más usuarios
+                try {
+                    bloquesEnCurso.acquire();
+                } catch (InterruptedException e) {
+                    hilos.shutdownNow();
+                    throw e;
+                }
+                List<Usuario> bloqueActual = bloque;
+                hilos.submit(() -> {
+                    try {
+                        alAvanzar.accept(contador.addAndGet(encolarBloque(bloqueActual, mensajeGlobal)));
+                    } catch (Exception e) {
+                        System.out.println("Error en el envío global de notificaciones: " + e.getMessage());
+                    } finally {
+                        bloquesEnCurso.release();
+                    }
+                });
+                bloque = new ArrayList<>(TAMANO_BLOQUE_DIFUSION);
             }
         }
         
         return contador.get();
     }
     
+    /**
+     * Encola el mensaje para un bloque de usuarios en un solo lote; no encola nada
+     * si se canceló el envío global
+     */
+    private int encolarBloque(List<Usuario> bloque, MensajePlantilla mensaje) {
+        LoteNotificaciones lote = new LoteNotificaciones(tipoNotificacion, ProcesadorNotificaciones.PRIORIDAD_DEFAULT);
+        for (Usuario usuario : bloque) {
+            if (usuario != null) {
+                lote.agregar(usuario, mensaje);
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return 0;
+        }
+        return procesador.encolarLote(lote);
+    }
+    
+    /**
+     * Verifica si un usuario tiene notificaciones individuales pendientes. Los envíos
+     * globales no se registran por usuario.
+     * 
+     * @param usuario El usuario para el cual verificar notificaciones pendientes
+     * @return true si hay notificaciones pendientes, false en caso contrario
+     */
     @Override
     public boolean notificacionesPendientes(Usuario usuario) {
         if (usuario == null) {
@@ -0,0 +1,215 @@
+package sistema.biblioteca.servicios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agrupa las notificaciones de un mismo usuario y canal dentro de una ventana de tiempo,
+ * para enviar un único resumen en lugar de un mensaje por cada notificación.
+ * Solo se agrupan los canales que tienen una ventana configurada.
+ */
+public class AgrupadorResumenes {
+    
+    private final Map<String, Long> ventanasPorTipo;
+    private final Map<String, ResumenPendiente> resumenes;
+    private final AtomicLong mensajesAgrupados;
+    private final AtomicLong resumenesEmitidos;
+    
+    public AgrupadorResumenes() {
+        this.ventanasPorTipo = new ConcurrentHashMap<>();
+        this.resumenes = new ConcurrentHashMap<>();
+        this.mensajesAgrupados = new AtomicLong(0);
+        this.resumenesEmitidos = new AtomicLong(0);
+    }
+    
+    /**
+     * Configura la ventana de agrupación para un tipo de canal
+     *
+     * @param tipo Tipo de canal ("email", "sms", ...)
+     * @param ventanaMs Duración de la ventana en milisegundos (0 desactiva la agrupación)
+     */
+    public void configurarVentana(String tipo, long ventanaMs) {
+        if (tipo == null) {
+            throw new IllegalArgumentException("El tipo no puede ser nulo");
+        }
+        if (ventanaMs < 0) {
+            throw new IllegalArgumentException("La ventana de agrupación no puede ser negativa");
+        }
+        
+        if (ventanaMs == 0) {
+            ventanasPorTipo.remove(tipo);
+        } else {
+            ventanasPorTipo.put(tipo, TimeUnit.MILLISECONDS.toNanos(ventanaMs));
+        }
+    }
+    
+    /**
+     * Indica si las notificaciones de un tipo de canal se agrupan
+     *
+     * @param tipo Tipo de canal
+     * @return true si el canal tiene una ventana de agrupación configurada
+     */
+    public boolean agrupaTipo(String tipo) {
+        return tipo != null && ventanasPorTipo.containsKey(tipo);
+    }
+    
+    public boolean estaActivo() {
+        return !ventanasPorTipo.isEmpty();
+    }
+    
+    /**
+     * Agrega un mensaje al resumen pendiente del usuario en el canal indicado.
+     * El resumen conserva la prioridad más urgente de los mensajes que contiene.
+     *
+     * @param usuario Destinatario
+     * @param mensaje Contenido del mensaje
+     * @param tipo Tipo de canal
+     * @param prioridad Prioridad del mensaje
+     */
+    public void agregar(Usuario usuario, String mensaje, String tipo, int prioridad) {
+        agregar(usuario, mensaje, tipo, prioridad, -1);
+    }
+    
+    /**
+     * Agrega un mensaje ya guardado en la bandeja de salida al resumen pendiente del usuario.
+     * El resumen conserva los ids de sus mensajes para confirmarlos cuando se entregue.
+     *
+     * @param usuario Destinatario
+     * @param mensaje Contenido del mensaje
+     * @param tipo Tipo de canal
+     * @param prioridad Prioridad del mensaje
+     * @param idBandeja Id del registro del mensaje en la bandeja de salida, o -1 si no está persistido
+     */
+    void agregar(Usuario usuario, String mensaje, String tipo, int prioridad, long idBandeja) {
+        String clave = usuario.getId() + "|" + tipo;
+        resumenes.compute(clave, (k, resumen) -> {
+            if (resumen == null) {
+                resumen = new ResumenPendiente(usuario, tipo, System.nanoTime());
+            }
+            resumen.agregar(mensaje, prioridad, idBandeja);
+            return resumen;
+        });
+        mensajesAgrupados.incrementAndGet();
+    }
+    
+    /**
+     * Retira los resúmenes cuya ventana ya venció
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return Lista de resúmenes listos para enviarse
+     */
+    public List<ResumenPendiente> extraerVencidos(long ahora) {
+        List<ResumenPendiente> vencidos = new ArrayList<>();
+        
+        for (String clave : resumenes.keySet()) {
+            resumenes.computeIfPresent(clave, (k, resumen) -> {
+                Long ventana = ventanasPorTipo.get(resumen.getTipo());
+                if (ventana == null || ahora - resumen.getInstanteInicio() >= ventana) {
+                    vencidos.add(resumen);
+                    return null;
+                }
+                return resumen;
+            });
+        }
+        
+        resumenesEmitidos.addAndGet(vencidos.size());
+        return vencidos;
+    }
+    
+    /**
+     * Obtiene la cantidad de resúmenes abiertos a la espera de que venza su ventana
+     * @return el número de resúmenes pendientes
+     */
+    public int getResumenesPendientes() {
+        return resumenes.size();
+    }
+    
+    public long getMensajesAgrupados() {
+        return mensajesAgrupados.get();
+    }
+    
+    public long getResumenesEmitidos() {
+        return resumenesEmitidos.get();
+    }
+    
+    /**
+     * Mensajes acumulados para un usuario en un canal durante una ventana
+     */
+    public static class ResumenPendiente {
+        private final Usuario usuario;
+        private final String tipo;
+        private final long instanteInicio;
+        private final List<String> mensajes;
+        private final List<Long> idsBandeja;
+        private int prioridad;
+        
+        ResumenPendiente(Usuario usuario, String tipo, long instanteInicio) {
+            this.usuario = usuario;
+            this.tipo = tipo;
+            this.instanteInicio = instanteInicio;
+            this.mensajes = new ArrayList<>();
+            this.idsBandeja = new ArrayList<>();
+            this.prioridad = Integer.MAX_VALUE;
+        }
+        
+        void agregar(String mensaje, int prioridadMensaje, long idBandeja) {
+            mensajes.add(mensaje);
+            prioridad = Math.min(prioridad, prioridadMensaje);
+            if (idBandeja >= 0) {
+                idsBandeja.add(idBandeja);
+            }
+        }
+        
+        /**
+         * Obtiene los ids en la bandeja de salida de los mensajes del resumen
+         * @return lista de ids de los mensajes persistidos
+         */
+        List<Long> getIdsBandeja() {
+            return idsBandeja;
+        }
+        
+        public Usuario getUsuario() {
+            return usuario;
+        }
+        
+        public String getTipo() {
+            return tipo;
+        }
+        
+        public long getInstanteInicio() {
+            return instanteInicio;
+        }
+        
+        public int getPrioridad() {
+            return prioridad;
+        }
+        
+        public int getCantidadMensajes() {
+            return mensajes.size();
+        }
+        
+        /**
+         * Construye el texto del resumen. Si hay un solo mensaje se envía tal cual.
+         *
+         * @return El mensaje a enviar
+         */
+        public String construirMensaje() {
+            if (mensajes.size() == 1) {
+                return mensajes.get(0);
+            }
+            
+            StringBuilder texto = new StringBuilder();
+            texto.append("Tienes ").append(mensajes.size()).append(" notificaciones:\n");
+            for (String mensaje : mensajes) {
+                texto.append("- ").append(mensaje).append("\n");
+            }
+            return texto.toString();
+        }
+    }
+}
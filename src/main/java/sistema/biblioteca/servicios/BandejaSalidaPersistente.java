@@ -0,0 +1,378 @@
+package sistema.biblioteca.servicios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Bandeja de salida en disco para las notificaciones del ProcesadorNotificaciones.
+ * Cada notificación se agrega a un registro de solo escritura al final, dividido en
+ * segmentos de tamaño fijo mapeados en memoria, por lo que escribir no requiere una
+ * llamada al sistema por mensaje; los segmentos se sincronizan con el disco de forma
+ * periódica mediante {@link #sincronizar()}.
+ * Las notificaciones entregadas se confirman y la bandeja guarda el mayor id hasta el
+ * cual todo está confirmado. Al reabrir la bandeja, {@link #recuperarPendientes()}
+ * devuelve las que quedaron sin confirmar. La entrega es "al menos una vez": una
+ * notificación confirmada fuera de orden puede volver a recuperarse tras una caída.
+ */
+public class BandejaSalidaPersistente implements Closeable {
+    
+    public static final int TAMANO_SEGMENTO_DEFAULT = 4 * 1024 * 1024;
+    private static final String EXTENSION_SEGMENTO = ".seg";
+    private static final String ARCHIVO_CONFIRMADO = "confirmado.idx";
+    // longitud del contenido + id del registro
+    private static final int TAMANO_CABECERA = Integer.BYTES + Long.BYTES;
+    
+    private final Path directorio;
+    private final int tamanoSegmento;
+    private final TreeMap<Long, Segmento> segmentos;
+    private final NavigableSet<Long> pendientes;
+    private final MappedByteBuffer indiceConfirmado;
+    private Segmento segmentoActivo;
+    private long siguienteId;
+    private long confirmadoHasta;
+    private boolean cerrada;
+    
+    /**
+     * Abre (o crea) una bandeja con el tamaño de segmento por defecto
+     *
+     * @param directorio Directorio donde se guardan los segmentos
+     * @throws IOException si no se puede crear o leer la bandeja
+     */
+    public BandejaSalidaPersistente(Path directorio) throws IOException {
+        this(directorio, TAMANO_SEGMENTO_DEFAULT);
+    }
+    
+    /**
+     * Abre (o crea) una bandeja
+     *
+     * @param directorio Directorio donde se guardan los segmentos
+     * @param tamanoSegmento Tamaño en bytes de cada segmento
+     * @throws IOException si no se puede crear o leer la bandeja
+     */
+    public BandejaSalidaPersistente(Path directorio, int tamanoSegmento) throws IOException {
+        if (directorio == null || tamanoSegmento <= TAMANO_CABECERA) {
+            throw new IllegalArgumentException("Directorio o tamaño de segmento inválido");
+        }
+        
+        this.directorio = directorio;
+        this.tamanoSegmento = tamanoSegmento;
+        this.segmentos = new TreeMap<>();
+        this.pendientes = new ConcurrentSkipListSet<>();
+        
+        Files.createDirectories(directorio);
+        this.indiceConfirmado = mapear(directorio.resolve(ARCHIVO_CONFIRMADO), Long.BYTES);
+        this.confirmadoHasta = indiceConfirmado.getLong(0);
+        this.siguienteId = confirmadoHasta + 1;
+        
+        cargarSegmentos();
+    }
+    
+    /**
+     * Mapea los segmentos existentes y calcula el próximo id a partir del último registro escrito
+     */
+    private void cargarSegmentos() throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*" + EXTENSION_SEGMENTO)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                long primerId = Long.parseLong(nombre.substring(0, nombre.length() - EXTENSION_SEGMENTO.length()));
+                segmentos.put(primerId, new Segmento(archivo, mapear(archivo, tamanoSegmento)));
+            }
+        }
+        
+        for (Segmento segmento : segmentos.values()) {
+            for (RegistroBandeja registro : segmento.leerRegistros()) {
+                siguienteId = Math.max(siguienteId, registro.getId() + 1);
+                if (registro.getId() > confirmadoHasta) {
+                    pendientes.add(registro.getId());
+                }
+            }
+        }
+        
+        if (!segmentos.isEmpty()) {
+            segmentoActivo = segmentos.lastEntry().getValue();
+        }
+    }
+    
+    private MappedByteBuffer mapear(Path archivo, int tamano) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return canal.map(FileChannel.MapMode.READ_WRITE, 0, tamano);
+        }
+    }
+    
+    /**
+     * Agrega una notificación al final de la bandeja
+     *
+     * @param notificacion La notificación a guardar
+     * @return Id asignado al registro, que debe usarse para confirmarlo
+     * @throws IOException si no se puede crear un nuevo segmento
+     */
+    public synchronized long registrar(NotificacionPendiente notificacion) throws IOException {
+        if (cerrada) {
+            throw new IllegalStateException("La bandeja de salida está cerrada");
+        }
+        
+        byte[] contenido = serializar(notificacion);
+        int tamanoRegistro = TAMANO_CABECERA + contenido.length;
+        // Se reserva espacio para una cabecera vacía que marca el final del segmento
+        if (tamanoRegistro + Integer.BYTES > tamanoSegmento) {
+            throw new IllegalArgumentException("La notificación no cabe en un segmento de la bandeja");
+        }
+        
+        if (segmentoActivo == null
+                || segmentoActivo.buffer.position() + tamanoRegistro + Integer.BYTES > tamanoSegmento) {
+            abrirSegmento();
+        }
+        
+        long id = siguienteId++;
+        MappedByteBuffer buffer = segmentoActivo.buffer;
+        int inicio = buffer.position();
+        // La longitud se escribe al final para que un registro a medio escribir no sea visible
+        buffer.position(inicio + Integer.BYTES);
+        buffer.putLong(id);
+        buffer.put(contenido);
+        buffer.putInt(inicio, contenido.length);
+        
+        pendientes.add(id);
+        return id;
+    }
+    
+    private void abrirSegmento() throws IOException {
+        if (segmentoActivo != null) {
+            segmentoActivo.buffer.force();
+        }
+        
+        Path archivo = directorio.resolve(String.format("%020d", siguienteId) + EXTENSION_SEGMENTO);
+        segmentoActivo = new Segmento(archivo, mapear(archivo, tamanoSegmento));
+        segmentos.put(siguienteId, segmentoActivo);
+    }
+    
+    /**
+     * Confirma que una notificación ya no necesita enviarse (se entregó o se descartó).
+     * Cuando todos los registros de un segmento quedan confirmados, el segmento se elimina.
+     *
+     * @param id Id del registro devuelto por {@link #registrar(NotificacionPendiente)}
+     */
+    public synchronized void confirmar(long id) {
+        if (!pendientes.remove(id) || cerrada) {
+            return;
+        }
+        
+        long nuevoConfirmado = pendientes.isEmpty() ? siguienteId - 1 : pendientes.first() - 1;
+        if (nuevoConfirmado > confirmadoHasta) {
+            confirmadoHasta = nuevoConfirmado;
+            indiceConfirmado.putLong(0, confirmadoHasta);
+            eliminarSegmentosConfirmados();
+        }
+    }
+    
+    private void eliminarSegmentosConfirmados() {
+        // Un segmento está completamente confirmado si el siguiente empieza antes del id confirmado
+        Map.Entry<Long, Segmento> primero = segmentos.firstEntry();
+        while (primero != null && primero.getValue() != segmentoActivo) {
+            Long siguiente = segmentos.higherKey(primero.getKey());
+            if (siguiente == null || siguiente - 1 > confirmadoHasta) {
+                return;
+            }
+            
+            segmentos.remove(primero.getKey());
+            try {
+                Files.deleteIfExists(primero.getValue().archivo);
+            } catch (IOException e) {
+                System.out.println("Error al eliminar segmento de la bandeja de salida: " + e.getMessage());
+            }
+            primero = segmentos.firstEntry();
+        }
+    }
+    
+    /**
+     * Lee las notificaciones que no fueron confirmadas, en el orden en que se registraron
+     *
+     * @return Lista de registros pendientes
+     */
+    public synchronized List<RegistroBandeja> recuperarPendientes() {
+        List<RegistroBandeja> recuperados = new ArrayList<>();
+        for (Segmento segmento : segmentos.values()) {
+            for (RegistroBandeja registro : segmento.leerRegistros()) {
+                if (pendientes.contains(registro.getId())) {
+                    recuperados.add(registro);
+                }
+            }
+        }
+        return recuperados;
+    }
+    
+    /**
+     * Fuerza la escritura en disco del segmento activo y del id confirmado
+     */
+    public synchronized void sincronizar() {
+        if (cerrada) {
+            return;
+        }
+        if (segmentoActivo != null) {
+            segmentoActivo.buffer.force();
+        }
+        indiceConfirmado.force();
+    }
+    
+    @Override
+    public synchronized void close() {
+        sincronizar();
+        cerrada = true;
+    }
+    
+    public int getCantidadPendientes() {
+        return pendientes.size();
+    }
+    
+    public synchronized int getCantidadSegmentos() {
+        return segmentos.size();
+    }
+    
+    public synchronized long getConfirmadoHasta() {
+        return confirmadoHasta;
+    }
+    
+    private static byte[] serializar(NotificacionPendiente notificacion) {
+        Usuario usuario = notificacion.getUsuario();
+        byte[][] campos = {
+                bytes(usuario.getId()), bytes(usuario.getNombre()), bytes(usuario.getEmail()),
+                bytes(usuario.getTelefono()), bytes(notificacion.getTipo()), bytes(notificacion.getMensaje())
+        };
+        
+        int tamano = Integer.BYTES;
+        for (byte[] campo : campos) {
+            tamano += Integer.BYTES + (campo != null ? campo.length : 0);
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate(tamano);
+        buffer.putInt(notificacion.getPrioridad());
+        for (byte[] campo : campos) {
+            // -1 indica un campo nulo
+            buffer.putInt(campo != null ? campo.length : -1);
+            if (campo != null) {
+                buffer.put(campo);
+            }
+        }
+        return buffer.array();
+    }
+    
+    private static byte[] bytes(String texto) {
+        return texto != null ? texto.getBytes(StandardCharsets.UTF_8) : null;
+    }
+    
+    private static String leerTexto(ByteBuffer buffer) {
+        int longitud = buffer.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] contenido = new byte[longitud];
+        buffer.get(contenido);
+        return new String(contenido, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Archivo de un segmento junto con su mapeo en memoria
+     */
+    private static class Segmento {
+        private final Path archivo;
+        private final MappedByteBuffer buffer;
+        
+        Segmento(Path archivo, MappedByteBuffer buffer) {
+            this.archivo = archivo;
+            this.buffer = buffer;
+        }
+        
+        /**
+         * Lee los registros completos del segmento y deja la posición de escritura tras el último
+         */
+        List<RegistroBandeja> leerRegistros() {
+            List<RegistroBandeja> registros = new ArrayList<>();
+            ByteBuffer lectura = buffer.duplicate();
+            lectura.position(0);
+            
+            while (lectura.remaining() >= TAMANO_CABECERA) {
+                int inicio = lectura.position();
+                int longitud = lectura.getInt();
+                if (longitud <= 0 || longitud > lectura.remaining() - Long.BYTES) {
+                    lectura.position(inicio);
+                    break; // Fin de los registros escritos
+                }
+                
+                long id = lectura.getLong();
+                ByteBuffer contenido = lectura.slice(lectura.position(), longitud);
+                lectura.position(lectura.position() + longitud);
+                try {
+                    int prioridad = contenido.getInt();
+                    Usuario usuario = new Usuario(leerTexto(contenido), leerTexto(contenido),
+                            leerTexto(contenido), leerTexto(contenido));
+                    String tipo = leerTexto(contenido);
+                    String mensaje = leerTexto(contenido);
+                    registros.add(new RegistroBandeja(id, usuario, mensaje, tipo, prioridad));
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    System.out.println("Registro dañado en la bandeja de salida: " + id);
+                }
+            }
+            
+            buffer.position(lectura.position());
+            return registros;
+        }
+    }
+    
+    /**
+     * Notificación leída de la bandeja de salida
+     */
+    public static class RegistroBandeja {
+        private final long id;
+        private final Usuario usuario;
+        private final String mensaje;
+        private final String tipo;
+        private final int prioridad;
+        
+        RegistroBandeja(long id, Usuario usuario, String mensaje, String tipo, int prioridad) {
+            this.id = id;
+            this.usuario = usuario;
+            this.mensaje = mensaje;
+            this.tipo = tipo;
+            this.prioridad = prioridad;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        public Usuario getUsuario() {
+            return usuario;
+        }
+        
+        public String getMensaje() {
+            return mensaje;
+        }
+        
+        public String getTipo() {
+            return tipo;
+        }
+        
+        public int getPrioridad() {
+            return prioridad;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package sistema.biblioteca.servicios;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interruptor de circuito para un canal de notificaciones.
+ * Tras varios fallos (o envíos demasiado lentos) consecutivos el circuito se abre y las
+ * notificaciones del canal quedan estacionadas sin ocupar hilos. Pasado el tiempo de apertura
+ * se deja pasar una única notificación de prueba: si se envía bien el circuito se cierra y se
+ * liberan las estacionadas; si falla, el circuito vuelve a abrirse.
+ * El circuito no limita las estacionadas: el ProcesadorNotificaciones las cuenta contra
+ * la capacidad de la cola del canal y rechaza las nuevas cuando no hay cupo.
+ */
+public class CircuitoServicio {
+    
+    public enum EstadoCircuito {
+        CERRADO,
+        ABIERTO,
+        SEMI_ABIERTO
+    }
+    
+    private static final int UMBRAL_FALLOS_DEFAULT = 5;
+    private static final long TIEMPO_APERTURA_MS_DEFAULT = 30000;
+    private static final long UMBRAL_LENTITUD_MS_DEFAULT = 5000;
+    
+    private final int umbralFallos;
+    private final long tiempoAperturaNanos;
+    private final long umbralLentitudNanos;
+    private final Deque<NotificacionPendiente> estacionadas;
+    private EstadoCircuito estado;
+    private int fallosConsecutivos;
+    private long instanteReapertura;
+    private NotificacionPendiente sonda;
+    
+    public CircuitoServicio() {
+        this(UMBRAL_FALLOS_DEFAULT, TIEMPO_APERTURA_MS_DEFAULT, UMBRAL_LENTITUD_MS_DEFAULT);
+    }
+    
+    /**
+     * Constructor
+     * @param umbralFallos fallos consecutivos que abren el circuito
+     * @param tiempoAperturaMs tiempo que el circuito permanece abierto antes de probar de nuevo
+     * @param umbralLentitudMs duración a partir de la cual un envío exitoso cuenta como fallo
+     */
+    public CircuitoServicio(int umbralFallos, long tiempoAperturaMs, long umbralLentitudMs) {
+        if (umbralFallos <= 0 || tiempoAperturaMs <= 0 || umbralLentitudMs <= 0) {
+            throw new IllegalArgumentException("Los parámetros del circuito deben ser mayores que cero");
+        }
+        
+        this.umbralFallos = umbralFallos;
+        this.tiempoAperturaNanos = TimeUnit.MILLISECONDS.toNanos(tiempoAperturaMs);
+        this.umbralLentitudNanos = TimeUnit.MILLISECONDS.toNanos(umbralLentitudMs);
+        this.estacionadas = new ArrayDeque<>();
+        this.estado = EstadoCircuito.CERRADO;
+    }
+    
+    /**
+     * Decide si una notificación puede enviarse ahora. Si el circuito no lo permite,
+     * la notificación queda estacionada en el circuito.
+     *
+     * @param notificacion La notificación a enviar
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return true si puede enviarse, false si quedó estacionada
+     */
+    public synchronized boolean admitir(NotificacionPendiente notificacion, long ahora) {
+        if (estado == EstadoCircuito.CERRADO || notificacion == sonda) {
+            return true;
+        }
+        
+        if (estado == EstadoCircuito.ABIERTO && ahora - instanteReapertura >= 0) {
+            // Esta notificación será la prueba del estado semi abierto
+            estado = EstadoCircuito.SEMI_ABIERTO;
+            sonda = notificacion;
+            return true;
+        }
+        
+        estacionadas.addLast(notificacion);
+        return false;
+    }
+    
+    /**
+     * Si el circuito está abierto, su tiempo de apertura venció y hay notificaciones
+     * estacionadas, pasa a semi abierto y entrega la primera como prueba
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return La notificación de prueba, o null si no corresponde probar
+     */
+    public synchronized NotificacionPendiente extraerSonda(long ahora) {
+        if (estado != EstadoCircuito.ABIERTO || ahora - instanteReapertura < 0 || estacionadas.isEmpty()) {
+            return null;
+        }
+        
+        estado = EstadoCircuito.SEMI_ABIERTO;
+        sonda = estacionadas.pollFirst();
+        return sonda;
+    }
+    
+    /**
+     * Registra un envío exitoso
+     *
+     * @param notificacion La notificación enviada
+     * @param duracionNanos Duración del envío
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return Notificaciones estacionadas que deben volver a la cola porque el circuito se cerró
+     */
+    public synchronized List<NotificacionPendiente> registrarExito(NotificacionPendiente notificacion,
+                                                                    long duracionNanos, long ahora) {
+        if (duracionNanos > umbralLentitudNanos && notificacion != sonda) {
+            // Un canal que responde muy lento también debe dejar de recibir tráfico
+            contarFallo(ahora);
+            return new ArrayList<>();
+        }
+        
+        fallosConsecutivos = 0;
+        if (estado == EstadoCircuito.CERRADO) {
+            return new ArrayList<>();
+        }
+        
+        estado = EstadoCircuito.CERRADO;
+        sonda = null;
+        List<NotificacionPendiente> liberadas = new ArrayList<>(estacionadas);
+        estacionadas.clear();
+        return liberadas;
+    }
+    
+    /**
+     * Registra un envío fallido
+     *
+     * @param notificacion La notificación que falló
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return true si la notificación quedó estacionada en el circuito y no debe reintentarse
+     */
+    public synchronized boolean registrarFallo(NotificacionPendiente notificacion, long ahora) {
+        if (notificacion == sonda) {
+            // Falló la prueba: vuelve a abrirse y la sonda espera al frente de las estacionadas
+            sonda = null;
+            abrir(ahora);
+            estacionadas.addFirst(notificacion);
+            return true;
+        }
+        
+        contarFallo(ahora);
+        return false;
+    }
+    
+    private void contarFallo(long ahora) {
+        fallosConsecutivos++;
+        if (estado == EstadoCircuito.CERRADO && fallosConsecutivos >= umbralFallos) {
+            abrir(ahora);
+            System.out.println("Circuito abierto tras " + fallosConsecutivos + " fallos consecutivos");
+        }
+    }
+    
+    private void abrir(long ahora) {
+        estado = EstadoCircuito.ABIERTO;
+        instanteReapertura = ahora + tiempoAperturaNanos;
+    }
+    
+    /**
+     * Retira todas las notificaciones estacionadas, por ejemplo al reemplazar el circuito
+     *
+     * @return Lista de notificaciones que estaban estacionadas
+     */
+    public synchronized List<NotificacionPendiente> liberarEstacionadas() {
+        List<NotificacionPendiente> liberadas = new ArrayList<>(estacionadas);
+        estacionadas.clear();
+        return liberadas;
+    }
+    
+    public synchronized EstadoCircuito getEstado() {
+        return estado;
+    }
+    
+    public synchronized int getFallosConsecutivos() {
+        return fallosConsecutivos;
+    }
+    
+    /**
+     * Obtiene la cantidad de notificaciones estacionadas mientras el circuito no está cerrado
+     * @return el número de notificaciones estacionadas
+     */
+    public synchronized int getCantidadEstacionadas() {
+        return estacionadas.size();
+    }
+}
@@ -0,0 +1,175 @@
+package sistema.biblioteca.servicios;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Colas de mensajes pendientes por usuario, seguras para varios productores.
+ * Cada usuario tiene una cola acotada; cuando se llena se aplica la política de
+ * desborde configurada. Las colas que quedan vacías al drenarlas se eliminan, así que
+ * la memoria depende de los mensajes pendientes y no de los usuarios notificados alguna vez.
+ * Los mensajes descartados por desborde solo se reflejan en {@link #getMensajesDescartados()};
+ * los servicios que usan estas colas los dan por atendidos.
+ */
+public class ColasPendientesPorUsuario {
+    
+    /**
+     * Qué hacer con un mensaje nuevo cuando la cola del usuario está llena
+     */
+    public enum PoliticaDesborde {
+        /** Se descarta el mensaje nuevo */
+        DESCARTAR_NUEVO,
+        /** Se descarta el mensaje más antiguo de la cola para hacer lugar al nuevo */
+        DESCARTAR_ANTIGUO
+    }
+    
+    public static final int CAPACIDAD_POR_USUARIO_DEFAULT = 100;
+    
+    private final Map<String, BlockingQueue<String>> colas;
+    private final int capacidadPorUsuario;
+    private final PoliticaDesborde politicaDesborde;
+    private final AtomicLong mensajesDescartados;
+    
+    public ColasPendientesPorUsuario() {
+        this(CAPACIDAD_POR_USUARIO_DEFAULT, PoliticaDesborde.DESCARTAR_ANTIGUO);
+    }
+    
+    /**
+     * Constructor
+     * @param capacidadPorUsuario cantidad máxima de mensajes pendientes por usuario
+     * @param politicaDesborde política a aplicar cuando la cola de un usuario está llena
+     */
+    public ColasPendientesPorUsuario(int capacidadPorUsuario, PoliticaDesborde politicaDesborde) {
+        if (capacidadPorUsuario <= 0 || politicaDesborde == null) {
+            throw new IllegalArgumentException("La capacidad debe ser mayor que cero y la política no puede ser nula");
+        }
+        
+        this.colas = new ConcurrentHashMap<>();
+        this.capacidadPorUsuario = capacidadPorUsuario;
+        this.politicaDesborde = politicaDesborde;
+        this.mensajesDescartados = new AtomicLong(0);
+    }
+    
+    /**
+     * Agrega un mensaje a la cola de un usuario
+     *
+     * @param usuarioId Id del usuario
+     * @param mensaje Mensaje pendiente
+     * @return true si el mensaje quedó en la cola, false si se descartó por desborde
+     */
+    public boolean agregar(String usuarioId, String mensaje) {
+        boolean[] agregado = new boolean[1];
+        // compute es atómico por clave, así que no puede cruzarse con la eliminación de la cola vacía
+        colas.compute(usuarioId, (clave, cola) -> {
+            if (cola == null) {
+                cola = new ArrayBlockingQueue<>(capacidadPorUsuario);
+            }
+            agregado[0] = ofrecer(cola, mensaje);
+            return cola;
+        });
+        return agregado[0];
+    }
+    
+    private boolean ofrecer(BlockingQueue<String> cola, String mensaje) {
+        if (cola.offer(mensaje)) {
+            return true;
+        }
+        
+        mensajesDescartados.incrementAndGet();
+        if (politicaDesborde == PoliticaDesborde.DESCARTAR_NUEVO) {
+            return false;
+        }
+        
+        // Un consumidor puede haber liberado lugar entre medio, en cuyo caso no se descarta nada
+        if (cola.poll() == null) {
+            mensajesDescartados.decrementAndGet();
+        }
+        return cola.offer(mensaje);
+    }
+    
+    /**
+     * Verifica si un usuario tiene mensajes pendientes
+     *
+     * @param usuarioId Id del usuario
+     * @return true si hay mensajes pendientes
+     */
+    public boolean tienePendientes(String usuarioId) {
+        BlockingQueue<String> cola = colas.get(usuarioId);
+        return cola != null && !cola.isEmpty();
+    }
+    
+    /**
+     * Retira los mensajes pendientes de todos los usuarios y los entrega por lotes.
+     * Los mensajes que lleguen mientras se drena pueden entregarse en este mismo
+     * drenado o en el siguiente.
+     *
+     * @param maximoPorUsuario Cantidad máxima de mensajes a retirar de cada usuario
+     * @param tamanoLote Cantidad máxima de mensajes de cada lote
+     * @param procesarLote Recibe el id del usuario y un lote de sus mensajes, en orden
+     * @return Cantidad total de mensajes retirados
+     */
+    public int drenar(int maximoPorUsuario, int tamanoLote, BiConsumer<String, List<String>> procesarLote) {
+        if (maximoPorUsuario <= 0 || tamanoLote <= 0) {
+            throw new IllegalArgumentException("El máximo por usuario y el tamaño de lote deben ser mayores que cero");
+        }
+        
+        int total = 0;
+        List<String> lote = new ArrayList<>(Math.min(tamanoLote, capacidadPorUsuario));
+        for (Map.Entry<String, BlockingQueue<String>> entry : colas.entrySet()) {
+            String usuarioId = entry.getKey();
+            BlockingQueue<String> cola = entry.getValue();
+            
+            int retirados = 0;
+            while (retirados < maximoPorUsuario) {
+                lote.clear();
+                int cantidad = cola.drainTo(lote, Math.min(tamanoLote, maximoPorUsuario - retirados));
+                if (cantidad == 0) {
+                    break;
+                }
+                procesarLote.accept(usuarioId, lote);
+                retirados += cantidad;
+            }
+            total += retirados;
+            
+            colas.computeIfPresent(usuarioId, (clave, actual) -> actual.isEmpty() ? null : actual);
+        }
+        return total;
+    }
+    
+    /**
+     * Obtiene la cantidad de mensajes pendientes de un usuario
+     *
+     * @param usuarioId Id del usuario
+     * @return Número de mensajes pendientes
+     */
+    public int getCantidadPendientes(String usuarioId) {
+        BlockingQueue<String> cola = colas.get(usuarioId);
+        return cola != null ? cola.size() : 0;
+    }
+    
+    /**
+     * Obtiene la cantidad de usuarios con una cola de pendientes
+     * @return el número de usuarios con mensajes pendientes
+     */
+    public int getCantidadUsuarios() {
+        return colas.size();
+    }
+    
+    public long getMensajesDescartados() {
+        return mensajesDescartados.get();
+    }
+    
+    public int getCapacidadPorUsuario() {
+        return capacidadPorUsuario;
+    }
+    
+    public PoliticaDesborde getPoliticaDesborde() {
+        return politicaDesborde;
+    }
+}
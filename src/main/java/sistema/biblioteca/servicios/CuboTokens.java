@@ -0,0 +1,82 @@
+package sistema.biblioteca.servicios;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cubo de tokens para limitar la tasa de envíos.
+ * El cubo se rellena a una tasa constante hasta su capacidad. Cada envío reserva un token;
+ * si no hay tokens disponibles la reserva queda en deuda y se informa cuánto hay que
+ * esperar para que ese token exista, de modo que el envío se difiere en lugar de descartarse.
+ */
+public class CuboTokens {
+    private final double capacidad;
+    private final double tokensPorNano;
+    private double tokens;
+    private long ultimoRelleno;
+    
+    /**
+     * Constructor
+     * @param capacidad cantidad máxima de envíos que se permiten en ráfaga
+     * @param enviosPorSegundo tasa sostenida de envíos permitida
+     */
+    public CuboTokens(int capacidad, double enviosPorSegundo) {
+        if (capacidad <= 0 || enviosPorSegundo <= 0) {
+            throw new IllegalArgumentException("La capacidad y la tasa deben ser mayores que cero");
+        }
+        
+        this.capacidad = capacidad;
+        this.tokensPorNano = enviosPorSegundo / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacidad;
+        this.ultimoRelleno = System.nanoTime();
+    }
+    
+    private void rellenar(long ahora) {
+        long transcurrido = ahora - ultimoRelleno;
+        if (transcurrido > 0) { // Comparar por diferencia: System.nanoTime puede desbordarse
+            tokens = Math.min(capacidad, tokens + transcurrido * tokensPorNano);
+            ultimoRelleno = ahora;
+        }
+    }
+    
+    /**
+     * Reserva un token para un envío
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return Nanosegundos que hay que esperar para enviar (0 si se puede enviar ya)
+     */
+    public synchronized long reservar(long ahora) {
+        rellenar(ahora);
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens / tokensPorNano);
+    }
+    
+    /**
+     * Obtiene la cantidad de tokens disponibles.
+     * Un valor negativo indica envíos ya reservados a la espera de tokens.
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return Nivel actual del cubo
+     */
+    public synchronized double getTokens(long ahora) {
+        rellenar(ahora);
+        return tokens;
+    }
+    
+    /**
+     * Indica si el cubo está lleno, es decir, si no registra actividad reciente
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return true si el cubo alcanzó su capacidad
+     */
+    public synchronized boolean estaLleno(long ahora) {
+        rellenar(ahora);
+        return tokens >= capacidad;
+    }
+    
+    public double getCapacidad() {
+        return capacidad;
+    }
+}
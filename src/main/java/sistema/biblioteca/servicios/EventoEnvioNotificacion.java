@@ -0,0 +1,63 @@
+package sistema.biblioteca.servicios;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento de Java Flight Recorder para cada intento de envío de una notificación.
+ * La duración del evento es la del envío por el servicio del canal.
+ */
+@Name("sistema.biblioteca.EnvioNotificacion")
+@Label("Envío de notificación")
+@Category({"Biblioteca", "Notificaciones"})
+@Description("Intento de envío de una notificación por el servicio de su canal")
+@StackTrace(false)
+class EventoEnvioNotificacion extends Event {
+    
+    @Label("Canal")
+    String canal;
+    
+    @Label("Id del usuario")
+    String idUsuario;
+    
+    @Label("Prioridad")
+    int prioridad;
+    
+    @Label("Intento")
+    int intento;
+    
+    @Label("Exitoso")
+    boolean exito;
+    
+    @Label("Espera desde que se encoló")
+    @Timespan(Timespan.NANOSECONDS)
+    long esperaEnCola;
+    
+    /**
+     * Termina la medición y registra el evento si la grabación lo requiere
+     * 
+     * @param notificacion La notificación enviada
+     * @param intento Número de intento
+     * @param exito Si el servicio aceptó la notificación
+     * @param inicioEnvio Instante (System.nanoTime) en que empezó el envío
+     */
+    void registrar(NotificacionPendiente notificacion, int intento, boolean exito, long inicioEnvio) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        
+        this.canal = notificacion.getTipo();
+        this.idUsuario = notificacion.getUsuario().getId();
+        this.prioridad = notificacion.getPrioridad();
+        this.intento = intento;
+        this.exito = exito;
+        this.esperaEnCola = inicioEnvio - notificacion.getInstanteEncolado();
+        commit();
+    }
+}
@@ -0,0 +1,130 @@
+package sistema.biblioteca.servicios;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias con cubetas logarítmicas subdivididas linealmente
+ * (al estilo HdrHistogram). Cada potencia de dos se divide en 32 cubetas, por lo que
+ * los percentiles tienen un error relativo menor al 3% en cualquier escala, con memoria
+ * fija y sin bloqueos al registrar.
+ */
+public class HistogramaLatencia {
+    
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int MITAD_SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int SUBCUBETAS = MITAD_SUBCUBETAS * 2;
+    private static final int CANTIDAD_CUBETAS = SUBCUBETAS + (63 - BITS_SUBCUBETA) * MITAD_SUBCUBETAS;
+    
+    private final AtomicLongArray cubetas;
+    private final AtomicLong cantidad;
+    private final AtomicLong suma;
+    private final AtomicLong maximo;
+    
+    public HistogramaLatencia() {
+        this.cubetas = new AtomicLongArray(CANTIDAD_CUBETAS);
+        this.cantidad = new AtomicLong(0);
+        this.suma = new AtomicLong(0);
+        this.maximo = new AtomicLong(0);
+    }
+    
+    /**
+     * Registra una latencia
+     *
+     * @param nanos Latencia en nanosegundos; los valores negativos cuentan como 0
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubetas.incrementAndGet(indiceDe(valor));
+        cantidad.incrementAndGet();
+        suma.addAndGet(valor);
+        
+        long actual = maximo.get();
+        while (valor > actual && !maximo.compareAndSet(actual, valor)) {
+            actual = maximo.get();
+        }
+    }
+    
+    /**
+     * Calcula un percentil de las latencias registradas
+     *
+     * @param percentil Percentil entre 0 y 100 (por ejemplo 99.9)
+     * @return Latencia en nanosegundos bajo la cual queda ese porcentaje de registros,
+     *         o 0 si no hay registros
+     */
+    public long getPercentilNanos(double percentil) {
+        if (percentil < 0 || percentil > 100) {
+            throw new IllegalArgumentException("El percentil debe estar entre 0 y 100");
+        }
+        
+        long total = cantidad.get();
+        if (total == 0) {
+            return 0;
+        }
+        
+        long objetivo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+            acumulado += cubetas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperiorDe(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+    
+    /**
+     * Calcula un percentil de las latencias registradas
+     *
+     * @param percentil Percentil entre 0 y 100
+     * @return Latencia en milisegundos
+     */
+    public double getPercentilMs(double percentil) {
+        return getPercentilNanos(percentil) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    /**
+     * Vacía el histograma. No es atómico frente a registros concurrentes, así que debe
+     * usarse sobre un histograma que ya no recibe registros.
+     */
+    public void reiniciar() {
+        for (int i = 0; i < CANTIDAD_CUBETAS; i++) {
+            cubetas.set(i, 0);
+        }
+        cantidad.set(0);
+        suma.set(0);
+        maximo.set(0);
+    }
+    
+    public long getCantidad() {
+        return cantidad.get();
+    }
+    
+    public long getSumaNanos() {
+        return suma.get();
+    }
+    
+    public long getMaximoNanos() {
+        return maximo.get();
+    }
+    
+    private static int indiceDe(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+        int subcubeta = (int) (valor >>> desplazamiento) - MITAD_SUBCUBETAS;
+        return SUBCUBETAS + (desplazamiento - 1) * MITAD_SUBCUBETAS + subcubeta;
+    }
+    
+    private static long limiteSuperiorDe(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int relativo = indice - SUBCUBETAS;
+        int desplazamiento = relativo / MITAD_SUBCUBETAS + 1;
+        long subcubeta = relativo % MITAD_SUBCUBETAS + MITAD_SUBCUBETAS;
+        return ((subcubeta + 1) << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,94 @@
+package sistema.biblioteca.servicios;
+
+/**
+ * Valores de las métricas de un canal de notificaciones en un momento dado
+ */
+public class InstantaneaMetricas {
+    
+    private final String tipo;
+    private final int pendientes;
+    private final long encoladas;
+    private final long enviadas;
+    private final long fallidas;
+    private final long reintentadas;
+    private final long rechazadas;
+    private final double enviosPorSegundo;
+    private final double latenciaP50Ms;
+    private final double latenciaP99Ms;
+    private final double latenciaP999Ms;
+    private final double latenciaMaximaMs;
+    
+    public InstantaneaMetricas(String tipo, int pendientes, long encoladas, long enviadas, long fallidas,
+                               long reintentadas, long rechazadas, double enviosPorSegundo,
+                               double latenciaP50Ms, double latenciaP99Ms, double latenciaP999Ms,
+                               double latenciaMaximaMs) {
+        this.tipo = tipo;
+        this.pendientes = pendientes;
+        this.encoladas = encoladas;
+        this.enviadas = enviadas;
+        this.fallidas = fallidas;
+        this.reintentadas = reintentadas;
+        this.rechazadas = rechazadas;
+        this.enviosPorSegundo = enviosPorSegundo;
+        this.latenciaP50Ms = latenciaP50Ms;
+        this.latenciaP99Ms = latenciaP99Ms;
+        this.latenciaP999Ms = latenciaP999Ms;
+        this.latenciaMaximaMs = latenciaMaximaMs;
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public int getPendientes() {
+        return pendientes;
+    }
+    
+    public long getEncoladas() {
+        return encoladas;
+    }
+    
+    public long getEnviadas() {
+        return enviadas;
+    }
+    
+    public long getFallidas() {
+        return fallidas;
+    }
+    
+    public long getReintentadas() {
+        return reintentadas;
+    }
+    
+    public long getRechazadas() {
+        return rechazadas;
+    }
+    
+    public double getEnviosPorSegundo() {
+        return enviosPorSegundo;
+    }
+    
+    public double getLatenciaP50Ms() {
+        return latenciaP50Ms;
+    }
+    
+    public double getLatenciaP99Ms() {
+        return latenciaP99Ms;
+    }
+    
+    public double getLatenciaP999Ms() {
+        return latenciaP999Ms;
+    }
+    
+    public double getLatenciaMaximaMs() {
+        return latenciaMaximaMs;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Canal %s: pendientes=%d, enviadas=%d, fallidas=%d, reintentadas=%d, " +
+                        "rechazadas=%d, envios/s=%.1f, latencia p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms",
+                tipo, pendientes, enviadas, fallidas, reintentadas, rechazadas, enviosPorSegundo,
+                latenciaP50Ms, latenciaP99Ms, latenciaP999Ms, latenciaMaximaMs);
+    }
+}
@@ -0,0 +1,143 @@
+package sistema.biblioteca.servicios;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limita la tasa de envíos por canal y por destinatario mediante cubos de tokens.
+ * Cada canal puede tener un límite global (por ejemplo, el máximo que acepta la pasarela SMS)
+ * y un límite por destinatario para no saturar a un mismo usuario.
+ */
+public class LimitadorTasa {
+    
+    private final Map<String, CuboTokens> cubosPorCanal;
+    private final Map<String, LimiteConfigurado> limitesPorDestinatario;
+    private final Map<String, CuboTokens> cubosPorDestinatario;
+    
+    public LimitadorTasa() {
+        this.cubosPorCanal = new ConcurrentHashMap<>();
+        this.limitesPorDestinatario = new ConcurrentHashMap<>();
+        this.cubosPorDestinatario = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Configura el límite global de un canal
+     *
+     * @param tipo Tipo de canal
+     * @param capacidad Envíos permitidos en ráfaga
+     * @param enviosPorSegundo Tasa sostenida permitida
+     */
+    public void configurarLimiteCanal(String tipo, int capacidad, double enviosPorSegundo) {
+        cubosPorCanal.put(tipo, new CuboTokens(capacidad, enviosPorSegundo));
+    }
+    
+    /**
+     * Configura el límite que se aplica a cada destinatario dentro de un canal
+     *
+     * @param tipo Tipo de canal
+     * @param capacidad Envíos permitidos en ráfaga por destinatario
+     * @param enviosPorSegundo Tasa sostenida permitida por destinatario
+     */
+    public void configurarLimiteDestinatario(String tipo, int capacidad, double enviosPorSegundo) {
+        if (capacidad <= 0 || enviosPorSegundo <= 0) {
+            throw new IllegalArgumentException("La capacidad y la tasa deben ser mayores que cero");
+        }
+        limitesPorDestinatario.put(tipo, new LimiteConfigurado(capacidad, enviosPorSegundo));
+        cubosPorDestinatario.keySet().removeIf(clave -> clave.endsWith("|" + tipo));
+    }
+    
+    public boolean estaActivo() {
+        return !cubosPorCanal.isEmpty() || !limitesPorDestinatario.isEmpty();
+    }
+    
+    /**
+     * Reserva los tokens necesarios para enviar una notificación
+     *
+     * @param notificacion La notificación a enviar
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     * @return Nanosegundos que hay que diferir el envío (0 si puede enviarse ya)
+     */
+    public long reservar(NotificacionPendiente notificacion, long ahora) {
+        String tipo = notificacion.getTipo();
+        long espera = 0;
+        
+        CuboTokens cuboCanal = cubosPorCanal.get(tipo);
+        if (cuboCanal != null) {
+            espera = cuboCanal.reservar(ahora);
+        }
+        
+        LimiteConfigurado limite = limitesPorDestinatario.get(tipo);
+        if (limite != null) {
+            // La reserva se hace dentro de compute para que la purga no pueda quitar
+            // el cubo entre que se obtiene y se reserva el token
+            long[] esperaDestinatario = new long[1];
+            cubosPorDestinatario.compute(notificacion.getUsuario().getId() + "|" + tipo, (clave, cubo) -> {
+                if (cubo == null) {
+                    cubo = new CuboTokens(limite.capacidad, limite.enviosPorSegundo);
+                }
+                esperaDestinatario[0] = cubo.reservar(ahora);
+                return cubo;
+            });
+            espera = Math.max(espera, esperaDestinatario[0]);
+        }
+        
+        return espera;
+    }
+    
+    /**
+     * Elimina los cubos de destinatarios que volvieron a llenarse,
+     * para que la memoria no crezca con cada usuario notificado alguna vez
+     *
+     * @param ahora Instante actual en nanosegundos (System.nanoTime)
+     */
+    public void purgarDestinatariosInactivos(long ahora) {
+        for (String clave : cubosPorDestinatario.keySet()) {
+            cubosPorDestinatario.computeIfPresent(clave, (k, cubo) -> cubo.estaLleno(ahora) ? null : cubo);
+        }
+    }
+    
+    /**
+     * Obtiene el nivel actual del cubo de cada canal limitado
+     *
+     * @return Mapa con los tokens disponibles por canal
+     */
+    public Map<String, Double> obtenerNivelesCanales() {
+        long ahora = System.nanoTime();
+        Map<String, Double> niveles = new HashMap<>();
+        for (Map.Entry<String, CuboTokens> entry : cubosPorCanal.entrySet()) {
+            niveles.put(entry.getKey(), entry.getValue().getTokens(ahora));
+        }
+        return niveles;
+    }
+    
+    /**
+     * Obtiene el nivel actual del cubo de un destinatario en un canal
+     *
+     * @param idUsuario Identificador del usuario
+     * @param tipo Tipo de canal
+     * @return Tokens disponibles, o la capacidad configurada si el destinatario no tiene actividad reciente
+     */
+    public double obtenerNivelDestinatario(String idUsuario, String tipo) {
+        CuboTokens cubo = cubosPorDestinatario.get(idUsuario + "|" + tipo);
+        if (cubo != null) {
+            return cubo.getTokens(System.nanoTime());
+        }
+        LimiteConfigurado limite = limitesPorDestinatario.get(tipo);
+        return limite != null ? limite.capacidad : Double.POSITIVE_INFINITY;
+    }
+    
+    public int getCantidadDestinatariosActivos() {
+        return cubosPorDestinatario.size();
+    }
+    
+    private static class LimiteConfigurado {
+        private final int capacidad;
+        private final double enviosPorSegundo;
+        
+        LimiteConfigurado(int capacidad, double enviosPorSegundo) {
+            this.capacidad = capacidad;
+            this.enviosPorSegundo = enviosPorSegundo;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package sistema.biblioteca.servicios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grupo de notificaciones para un mismo canal y con la misma prioridad, que el
+ * ProcesadorNotificaciones encola de una sola vez con {@link ProcesadorNotificaciones#encolarLote}.
+ */
+public class LoteNotificaciones {
+    
+    private final String tipo;
+    private final int prioridad;
+    private final List<Usuario> usuarios;
+    private final List<MensajePlantilla> mensajes;
+    
+    /**
+     * Constructor
+     *
+     * @param tipo Tipo de canal por el que se enviarán las notificaciones
+     * @param prioridad Prioridad de las notificaciones (1 es la máxima)
+     */
+    public LoteNotificaciones(String tipo, int prioridad) {
+        if (tipo == null) {
+            throw new IllegalArgumentException("El tipo de canal no puede ser nulo");
+        }
+        
+        this.tipo = tipo;
+        this.prioridad = prioridad;
+        this.usuarios = new ArrayList<>();
+        this.mensajes = new ArrayList<>();
+    }
+    
+    /**
+     * Agrega una notificación al lote
+     *
+     * @param usuario Destinatario de la notificación
+     * @param mensaje Plantilla con sus parámetros
+     */
+    public void agregar(Usuario usuario, MensajePlantilla mensaje) {
+        if (usuario == null || mensaje == null) {
+            throw new IllegalArgumentException("El usuario y el mensaje no pueden ser nulos");
+        }
+        usuarios.add(usuario);
+        mensajes.add(mensaje);
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public int getPrioridad() {
+        return prioridad;
+    }
+    
+    public int getCantidad() {
+        return usuarios.size();
+    }
+    
+    public boolean estaVacio() {
+        return usuarios.isEmpty();
+    }
+    
+    Usuario getUsuario(int indice) {
+        return usuarios.get(indice);
+    }
+    
+    MensajePlantilla getMensaje(int indice) {
+        return mensajes.get(indice);
+    }
+}
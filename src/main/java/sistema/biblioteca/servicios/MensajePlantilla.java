@@ -0,0 +1,45 @@
+package sistema.biblioteca.servicios;
+
+/**
+ * Mensaje formado por una plantilla y sus parámetros.
+ * El texto se renderiza la primera vez que se solicita, de modo que los mensajes que
+ * se descartan o esperan en una cola no consumen tiempo ni memoria en construirlo.
+ */
+public class MensajePlantilla {
+    private final PlantillaMensaje plantilla;
+    private final Object[] valores;
+    private volatile String texto;
+    
+    MensajePlantilla(PlantillaMensaje plantilla, Object[] valores) {
+        this.plantilla = plantilla;
+        this.valores = valores;
+    }
+    
+    /**
+     * Obtiene el texto del mensaje, renderizándolo si todavía no se hizo
+     *
+     * @return Texto del mensaje
+     */
+    public String renderizar() {
+        String resultado = texto;
+        if (resultado == null) {
+            // Si dos hilos renderizan a la vez obtienen el mismo texto, no hace falta bloquear
+            resultado = plantilla.renderizar(valores);
+            texto = resultado;
+        }
+        return resultado;
+    }
+    
+    public boolean estaRenderizado() {
+        return texto != null;
+    }
+    
+    public PlantillaMensaje getPlantilla() {
+        return plantilla;
+    }
+    
+    @Override
+    public String toString() {
+        return renderizar();
+    }
+}
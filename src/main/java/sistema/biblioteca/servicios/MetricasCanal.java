@@ -0,0 +1,152 @@
+package sistema.biblioteca.servicios;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores y latencias de entrega de un canal de notificaciones.
+ * Se actualizan desde los hilos trabajadores sin bloquear y pueden consultarse
+ * en cualquier momento o resumirse en una {@link InstantaneaMetricas}.
+ *
+ * La latencia de entrega se registra en dos histogramas: uno acumulado desde el inicio,
+ * que se exporta a Prometheus, y otro del intervalo, que se alterna con uno de repuesto
+ * en cada instantánea para que los percentiles de la instantánea sean solo del intervalo.
+ */
+public class MetricasCanal {
+    
+    private final String tipo;
+    private final LongAdder encoladas;
+    private final LongAdder enviadas;
+    private final LongAdder fallidas;
+    private final LongAdder reintentadas;
+    private final LongAdder rechazadas;
+    private final HistogramaLatencia latenciaEntrega;
+    private final HistogramaLatencia duracionEnvio;
+    private volatile HistogramaLatencia latenciaIntervalo;
+    private HistogramaLatencia latenciaIntervaloRepuesto;
+    private long enviadasUltimaInstantanea;
+    private long instanteUltimaInstantanea;
+    
+    public MetricasCanal(String tipo) {
+        this.tipo = tipo;
+        this.encoladas = new LongAdder();
+        this.enviadas = new LongAdder();
+        this.fallidas = new LongAdder();
+        this.reintentadas = new LongAdder();
+        this.rechazadas = new LongAdder();
+        this.latenciaEntrega = new HistogramaLatencia();
+        this.duracionEnvio = new HistogramaLatencia();
+        this.latenciaIntervalo = new HistogramaLatencia();
+        this.latenciaIntervaloRepuesto = new HistogramaLatencia();
+        this.instanteUltimaInstantanea = System.nanoTime();
+    }
+    
+    void registrarEncolada() {
+        encoladas.increment();
+    }
+    
+    void registrarEncoladas(int cantidad) {
+        encoladas.add(cantidad);
+    }
+    
+    /**
+     * Registra una entrega exitosa
+     *
+     * @param latenciaNanos Tiempo desde que se encoló la notificación hasta que se entregó
+     * @param duracionEnvioNanos Tiempo que tardó el servicio del canal en el envío
+     */
+    void registrarEnviada(long latenciaNanos, long duracionEnvioNanos) {
+        enviadas.increment();
+        latenciaEntrega.registrar(latenciaNanos);
+        latenciaIntervalo.registrar(latenciaNanos);
+        duracionEnvio.registrar(duracionEnvioNanos);
+    }
+    
+    void registrarFallida() {
+        fallidas.increment();
+    }
+    
+    void registrarFallidas(int cantidad) {
+        fallidas.add(cantidad);
+    }
+    
+    void registrarReintento() {
+        reintentadas.increment();
+    }
+    
+    void registrarRechazada() {
+        rechazadas.increment();
+    }
+    
+    void registrarRechazadas(int cantidad) {
+        rechazadas.add(cantidad);
+    }
+    
+    /**
+     * Resume el estado actual del canal. El caudal y los percentiles de latencia se
+     * calculan sobre el intervalo transcurrido desde la instantánea anterior.
+     *
+     * @param pendientes Notificaciones que esperan en la cola del canal
+     * @return Instantánea con los valores actuales
+     */
+    public synchronized InstantaneaMetricas tomarInstantanea(int pendientes) {
+        long ahora = System.nanoTime();
+        long totalEnviadas = enviadas.sum();
+        double segundos = (ahora - instanteUltimaInstantanea) / 1_000_000_000.0;
+        double enviosPorSegundo = segundos > 0 ? (totalEnviadas - enviadasUltimaInstantanea) / segundos : 0;
+        enviadasUltimaInstantanea = totalEnviadas;
+        instanteUltimaInstantanea = ahora;
+        
+        // El repuesto se vacía antes de publicarse; el histograma que sale de uso se lee
+        // ahora y queda de repuesto, así que solo se vacía un intervalo después
+        HistogramaLatencia intervalo = latenciaIntervalo;
+        latenciaIntervaloRepuesto.reiniciar();
+        latenciaIntervalo = latenciaIntervaloRepuesto;
+        latenciaIntervaloRepuesto = intervalo;
+        
+        return new InstantaneaMetricas(tipo, pendientes, encoladas.sum(), totalEnviadas, fallidas.sum(),
+                reintentadas.sum(), rechazadas.sum(), enviosPorSegundo,
+                intervalo.getPercentilMs(50), intervalo.getPercentilMs(99),
+                intervalo.getPercentilMs(99.9), intervalo.getMaximoNanos() / 1_000_000.0);
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public long getEncoladas() {
+        return encoladas.sum();
+    }
+    
+    public long getEnviadas() {
+        return enviadas.sum();
+    }
+    
+    public long getFallidas() {
+        return fallidas.sum();
+    }
+    
+    public long getReintentadas() {
+        return reintentadas.sum();
+    }
+    
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+    
+    /**
+     * Obtiene el histograma del tiempo entre que se encola una notificación y se entrega,
+     * acumulado desde el inicio
+     * @return histograma de latencia de entrega
+     */
+    public HistogramaLatencia getLatenciaEntrega() {
+        return latenciaEntrega;
+    }
+    
+    /**
+     * Obtiene el histograma de lo que tarda el servicio del canal en cada envío exitoso
+     * @return histograma de duración de envío
+     */
+    public HistogramaLatencia getDuracionEnvio() {
+        return duracionEnvio;
+    }
+}
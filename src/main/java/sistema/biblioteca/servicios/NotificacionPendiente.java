@@ -0,0 +1,174 @@
+package sistema.biblioteca.servicios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.List;
+
+/**
+ * Notificación encolada en el ProcesadorNotificaciones a la espera de ser enviada.
+ * Se ordena por plazo de envío, que el procesador calcula sumando al instante de encolado
+ * el retardo máximo admitido para su prioridad; así una notificación de baja prioridad
+ * que lleva tiempo esperando termina adelantándose a las urgentes recién llegadas.
+ * A igual plazo se ordena por prioridad (1 es la máxima) y luego por orden de llegada.
+ * El mensaje puede ser un texto ya construido o una plantilla con sus parámetros,
+ * que se renderiza recién cuando se necesita el texto.
+ */
+public class NotificacionPendiente implements Comparable<NotificacionPendiente> {
+    private final Usuario usuario;
+    private final String mensaje;
+    private final MensajePlantilla mensajePlantilla;
+    private final String tipo;
+    private final int prioridad;
+    private final long secuencia;
+    private final long instanteEncolado;
+    private long plazo;
+    private volatile boolean tasaReservada;
+    private volatile int intentos;
+    private volatile long idBandeja = -1;
+    private volatile List<Long> idsBandejaResumidos = List.of();
+    
+    public NotificacionPendiente(Usuario usuario, String mensaje, String tipo, int prioridad, long secuencia) {
+        this(usuario, mensaje, null, tipo, prioridad, secuencia);
+    }
+    
+    public NotificacionPendiente(Usuario usuario, MensajePlantilla mensaje, String tipo, int prioridad, long secuencia) {
+        this(usuario, null, mensaje, tipo, prioridad, secuencia);
+    }
+    
+    private NotificacionPendiente(Usuario usuario, String mensaje, MensajePlantilla mensajePlantilla,
+                                  String tipo, int prioridad, long secuencia) {
+        this.usuario = usuario;
+        this.mensaje = mensaje;
+        this.mensajePlantilla = mensajePlantilla;
+        this.tipo = tipo;
+        this.prioridad = prioridad;
+        this.secuencia = secuencia;
+        this.instanteEncolado = System.nanoTime();
+        this.plazo = instanteEncolado;
+    }
+    
+    public Usuario getUsuario() {
+        return usuario;
+    }
+    
+    /**
+     * Obtiene el texto del mensaje, renderizando la plantilla si hace falta
+     * @return el texto del mensaje
+     */
+    public String getMensaje() {
+        return mensaje != null ? mensaje : mensajePlantilla.renderizar();
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public int getPrioridad() {
+        return prioridad;
+    }
+    
+    public long getSecuencia() {
+        return secuencia;
+    }
+    
+    /**
+     * Obtiene el instante (System.nanoTime) en que la notificación fue encolada
+     *
+     * @return Instante de encolado en nanosegundos
+     */
+    public long getInstanteEncolado() {
+        return instanteEncolado;
+    }
+    
+    /**
+     * Obtiene el instante (System.nanoTime) límite en que la notificación debería enviarse
+     *
+     * @return Plazo de envío en nanosegundos
+     */
+    public long getPlazo() {
+        return plazo;
+    }
+    
+    /**
+     * Fija el plazo de envío. Solo debe llamarse antes de agregar la notificación a la cola,
+     * ya que cambiarlo mientras está en ella rompería el orden de la cola.
+     */
+    void setPlazo(long plazo) {
+        this.plazo = plazo;
+    }
+    
+    /**
+     * Indica si ya se reservó el cupo del limitador de tasa para esta notificación,
+     * en cuyo caso no debe volver a consumir tokens cuando se reintente su envío
+     *
+     * @return true si la notificación ya tiene su cupo reservado
+     */
+    public boolean isTasaReservada() {
+        return tasaReservada;
+    }
+    
+    void setTasaReservada(boolean tasaReservada) {
+        this.tasaReservada = tasaReservada;
+    }
+    
+    /**
+     * Obtiene la cantidad de envíos intentados para esta notificación
+     * @return el número de intentos
+     */
+    public int getIntentos() {
+        return intentos;
+    }
+    
+    int registrarIntento() {
+        return ++intentos;
+    }
+    
+    /**
+     * Obtiene el id del registro de la notificación en la bandeja de salida persistente
+     * @return el id del registro, o -1 si la notificación no está persistida
+     */
+    public long getIdBandeja() {
+        return idBandeja;
+    }
+    
+    void setIdBandeja(long idBandeja) {
+        this.idBandeja = idBandeja;
+    }
+    
+    /**
+     * Obtiene los ids en la bandeja de salida de los mensajes que este resumen agrupa.
+     * Se confirman cuando el resumen se entrega o se descarta.
+     * @return lista de ids, vacía si la notificación no es un resumen persistido
+     */
+    public List<Long> getIdsBandejaResumidos() {
+        return idsBandejaResumidos;
+    }
+    
+    void setIdsBandejaResumidos(List<Long> idsBandejaResumidos) {
+        this.idsBandejaResumidos = List.copyOf(idsBandejaResumidos);
+    }
+    
+    @Override
+    public int compareTo(NotificacionPendiente otra) {
+        // Se comparan por diferencia porque System.nanoTime puede desbordar
+        int comparacion = Long.signum(this.plazo - otra.plazo);
+        if (comparacion != 0) {
+            return comparacion;
+        }
+        comparacion = Integer.compare(this.prioridad, otra.prioridad);
+        if (comparacion != 0) {
+            return comparacion;
+        }
+        return Long.compare(this.secuencia, otra.secuencia);
+    }
+    
+    @Override
+    public String toString() {
+        return "NotificacionPendiente{" +
+                "usuario=" + (usuario != null ? usuario.getId() : null) +
+                ", tipo='" + tipo + '\'' +
+                ", prioridad=" + prioridad +
+                ", secuencia=" + secuencia +
+                '}';
+    }
+}
@@ -0,0 +1,145 @@
+package sistema.biblioteca.servicios;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plantilla de mensaje compilada una sola vez.
+ * El texto admite marcadores posicionales {0}, {1}, ... que se reemplazan por los
+ * parámetros al renderizar. Al compilar, el texto se divide en fragmentos literales
+ * y posiciones de parámetros, así que renderizar solo concatena en un buffer
+ * reutilizado por cada hilo, sin volver a analizar el texto.
+ */
+public class PlantillaMensaje {
+    
+    private static final int CAPACIDAD_MAXIMA_BUFFER = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(256));
+    
+    private final String texto;
+    private final String[] literales;
+    private final int[] parametros;
+    private final int cantidadParametros;
+    
+    private PlantillaMensaje(String texto, String[] literales, int[] parametros) {
+        this.texto = texto;
+        this.literales = literales;
+        this.parametros = parametros;
+        
+        int maximo = -1;
+        for (int indice : parametros) {
+            maximo = Math.max(maximo, indice);
+        }
+        this.cantidadParametros = maximo + 1;
+    }
+    
+    /**
+     * Compila el texto de una plantilla
+     *
+     * @param texto Texto con marcadores {0}, {1}, ...
+     * @return Plantilla compilada
+     */
+    public static PlantillaMensaje compilar(String texto) {
+        if (texto == null) {
+            throw new IllegalArgumentException("El texto de la plantilla no puede ser nulo");
+        }
+        
+        List<String> literales = new ArrayList<>();
+        List<Integer> parametros = new ArrayList<>();
+        int inicioLiteral = 0;
+        int i = 0;
+        while (i < texto.length()) {
+            int fin = texto.charAt(i) == '{' ? finMarcador(texto, i) : -1;
+            if (fin < 0) {
+                i++;
+                continue;
+            }
+            
+            literales.add(texto.substring(inicioLiteral, i));
+            parametros.add(Integer.parseInt(texto.substring(i + 1, fin)));
+            inicioLiteral = fin + 1;
+            i = inicioLiteral;
+        }
+        literales.add(texto.substring(inicioLiteral));
+        
+        int[] indices = new int[parametros.size()];
+        for (int j = 0; j < indices.length; j++) {
+            indices[j] = parametros.get(j);
+        }
+        return new PlantillaMensaje(texto, literales.toArray(new String[0]), indices);
+    }
+    
+    /**
+     * Devuelve la posición de la llave de cierre si en la posición indicada empieza
+     * un marcador {n}, o -1 si no es un marcador
+     */
+    private static int finMarcador(String texto, int inicio) {
+        int i = inicio + 1;
+        while (i < texto.length() && Character.isDigit(texto.charAt(i))) {
+            i++;
+        }
+        boolean hayDigitos = i > inicio + 1 && i - inicio <= 4;
+        return hayDigitos && i < texto.length() && texto.charAt(i) == '}' ? i : -1;
+    }
+    
+    /**
+     * Crea un mensaje con esta plantilla que se renderizará cuando se necesite su texto
+     *
+     * @param valores Valores de los parámetros, en orden
+     * @return Mensaje sin renderizar
+     */
+    public MensajePlantilla con(Object... valores) {
+        validarParametros(valores);
+        return new MensajePlantilla(this, valores);
+    }
+    
+    /**
+     * Renderiza la plantilla con los valores indicados
+     *
+     * @param valores Valores de los parámetros, en orden
+     * @return Texto del mensaje
+     */
+    public String renderizar(Object... valores) {
+        validarParametros(valores);
+        
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        renderizarEn(buffer, valores);
+        String resultado = buffer.toString();
+        
+        if (buffer.capacity() > CAPACIDAD_MAXIMA_BUFFER) {
+            // No retener un buffer enorme por un mensaje excepcional
+            BUFFER.remove();
+        }
+        return resultado;
+    }
+    
+    /**
+     * Agrega el texto renderizado al final de un buffer
+     *
+     * @param destino Buffer donde se escribe el mensaje
+     * @param valores Valores de los parámetros, en orden
+     */
+    public void renderizarEn(StringBuilder destino, Object... valores) {
+        for (int i = 0; i < parametros.length; i++) {
+            destino.append(literales[i]).append(valores[parametros[i]]);
+        }
+        destino.append(literales[parametros.length]);
+    }
+    
+    private void validarParametros(Object[] valores) {
+        int recibidos = valores != null ? valores.length : 0;
+        if (recibidos < cantidadParametros) {
+            throw new IllegalArgumentException("La plantilla requiere " + cantidadParametros +
+                    " parámetros y se recibieron " + recibidos);
+        }
+    }
+    
+    public String getTexto() {
+        return texto;
+    }
+    
+    public int getCantidadParametros() {
+        return cantidadParametros;
+    }
+}
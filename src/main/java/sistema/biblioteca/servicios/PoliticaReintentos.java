@@ -0,0 +1,66 @@
+package sistema.biblioteca.servicios;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Política de reintentos con retroceso exponencial para los envíos fallidos de un canal
+ */
+public class PoliticaReintentos {
+    
+    public static final PoliticaReintentos DEFAULT = new PoliticaReintentos(3, 100, 5000);
+    public static final PoliticaReintentos SIN_REINTENTOS = new PoliticaReintentos(0, 0, 0);
+    
+    private final int maximoReintentos;
+    private final long retardoInicialMs;
+    private final long retardoMaximoMs;
+    
+    /**
+     * Constructor
+     * @param maximoReintentos cantidad de reintentos tras el primer envío fallido
+     * @param retardoInicialMs espera antes del primer reintento; se duplica en cada reintento
+     * @param retardoMaximoMs espera máxima entre reintentos
+     */
+    public PoliticaReintentos(int maximoReintentos, long retardoInicialMs, long retardoMaximoMs) {
+        if (maximoReintentos < 0 || retardoInicialMs < 0 || retardoMaximoMs < retardoInicialMs) {
+            throw new IllegalArgumentException("Parámetros de reintento inválidos");
+        }
+        
+        this.maximoReintentos = maximoReintentos;
+        this.retardoInicialMs = retardoInicialMs;
+        this.retardoMaximoMs = retardoMaximoMs;
+    }
+    
+    /**
+     * Indica si corresponde reintentar un envío
+     *
+     * @param intentosRealizados Cantidad de envíos ya intentados
+     * @return true si todavía quedan reintentos
+     */
+    public boolean debeReintentar(int intentosRealizados) {
+        return intentosRealizados <= maximoReintentos;
+    }
+    
+    /**
+     * Calcula la espera antes del próximo reintento
+     *
+     * @param intentosRealizados Cantidad de envíos ya intentados (1 o más)
+     * @return Espera en nanosegundos
+     */
+    public long calcularRetardoNanos(int intentosRealizados) {
+        int exponente = Math.min(Math.max(intentosRealizados - 1, 0), 30);
+        long retardoMs = Math.min(retardoMaximoMs, retardoInicialMs << exponente);
+        return TimeUnit.MILLISECONDS.toNanos(retardoMs);
+    }
+    
+    public int getMaximoReintentos() {
+        return maximoReintentos;
+    }
+    
+    public long getRetardoInicialMs() {
+        return retardoInicialMs;
+    }
+    
+    public long getRetardoMaximoMs() {
+        return retardoMaximoMs;
+    }
+}
@@ -1 +1,967 @@
- 
\ No newline at end of file
+package sistema.biblioteca.servicios;
+
+import sistema.biblioteca.modelos.Usuario;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Procesador concurrente de notificaciones.
+ * Cada tipo de canal registrado con {@link #agregarServicio(String, ServicioNotificaciones)}
+ * tiene su propia cola de prioridad (1 es la máxima prioridad, y a igual prioridad se
+ * respeta el orden de llegada) y su propio grupo de hilos trabajadores, que envían las
+ * notificaciones a través del ServicioNotificaciones del canal. Así, un canal lento o
+ * bloqueado solo ocupa sus propios hilos y no frena el envío por los demás canales.
+ * Para que un flujo constante de notificaciones urgentes no postergue indefinidamente
+ * a las de baja prioridad, cada prioridad tiene un retardo máximo de envío (ver
+ * {@link #configurarRetardoMaximo(int, long)}): la cola ordena por el plazo resultante,
+ * así que una notificación que ya esperó su retardo máximo pasa delante de las nuevas.
+ * Opcionalmente, los canales pueden agrupar los mensajes de cada usuario en resúmenes
+ * periódicos (ver {@link #configurarResumen(String, long)}) y limitar su tasa de envío
+ * con cubos de tokens; los envíos que superan el límite se difieren, no se descartan.
+ * Cada canal está protegido por un {@link CircuitoServicio}: los envíos fallidos se
+ * reintentan con retroceso exponencial y, mientras el circuito de un canal está abierto,
+ * sus notificaciones quedan estacionadas sin afectar al resto de los canales.
+ * Con una {@link BandejaSalidaPersistente} configurada, cada notificación que entra en la
+ * cola o en un resumen se guarda en disco hasta que se entrega o se descarta, y las que
+ * quedaron sin confirmar en una ejecución anterior se vuelven a encolar (las de un resumen
+ * interrumpido, como mensajes individuales).
+ * Los mensajes pueden encolarse como plantillas del {@link RegistroPlantillas} del
+ * procesador, que se renderizan recién al enviarse.
+ */
+public class ProcesadorNotificaciones {
+    
+    public static final int PRIORIDAD_DEFAULT = 5;
+    private static final int NUM_TRABAJADORES_DEFAULT = 1;
+    private static final long INTERVALO_REVISION_RESUMENES_MS = 100;
+    private static final long INTERVALO_REVISION_DIFERIDAS_MS = 10;
+    private static final long INTERVALO_PURGA_LIMITADOR_MS = 1000;
+    private static final long INTERVALO_REVISION_CIRCUITOS_MS = 100;
+    private static final long INTERVALO_SINCRONIZACION_BANDEJA_MS = 50;
+    private static final long RETARDO_MAXIMO_POR_NIVEL_MS_DEFAULT = 60000;
+    public static final int CAPACIDAD_COLA_ILIMITADA = Integer.MAX_VALUE;
+    
+    private final Map<String, CanalDespacho> canales;
+    private final AtomicBoolean ejecutando;
+    private final AtomicLong secuencia;
+    private final AtomicLong notificacionesEnviadas;
+    private final AtomicLong notificacionesFallidas;
+    private final AtomicLong notificacionesReintentadas;
+    private final AtomicLong notificacionesRechazadas;
+    private final Map<String, MetricasCanal> metricas;
+    private final int numTrabajadores;
+    private final AgrupadorResumenes agrupadorResumenes;
+    private final LimitadorTasa limitadorTasa;
+    private final DelayQueue<NotificacionDiferida> notificacionesDiferidas;
+    private final Map<String, CircuitoServicio> circuitos;
+    private final Map<String, PoliticaReintentos> politicasReintento;
+    private final Map<Integer, Long> retardosMaximos;
+    private final ScheduledExecutorService planificador;
+    private final RegistroPlantillas plantillas;
+    private volatile BandejaSalidaPersistente bandejaSalida;
+    private boolean revisionResumenesProgramada;
+    private boolean purgaLimitadorProgramada;
+    
+    /**
+     * Constructor que crea un solo hilo trabajador por canal, con lo que las notificaciones
+     * de cada canal se entregan estrictamente en orden de prioridad
+     */
+    public ProcesadorNotificaciones() {
+        this(NUM_TRABAJADORES_DEFAULT);
+    }
+    
+    /**
+     * Constructor
+     * @param numTrabajadores el número de hilos por canal que envían notificaciones en paralelo,
+     *        salvo que se indique otro al registrar el servicio del canal
+     */
+    public ProcesadorNotificaciones(int numTrabajadores) {
+        if (numTrabajadores <= 0) {
+            throw new IllegalArgumentException("El número de trabajadores debe ser mayor que cero");
+        }
+        
+        this.canales = new ConcurrentHashMap<>();
+        this.ejecutando = new AtomicBoolean(true);
+        this.secuencia = new AtomicLong(0);
+        this.notificacionesEnviadas = new AtomicLong(0);
+        this.notificacionesFallidas = new AtomicLong(0);
+        this.notificacionesReintentadas = new AtomicLong(0);
+        this.notificacionesRechazadas = new AtomicLong(0);
+        this.metricas = new ConcurrentHashMap<>();
+        this.numTrabajadores = numTrabajadores;
+        this.agrupadorResumenes = new AgrupadorResumenes();
+        this.limitadorTasa = new LimitadorTasa();
+        this.notificacionesDiferidas = new DelayQueue<>();
+        this.circuitos = new ConcurrentHashMap<>();
+        this.politicasReintento = new ConcurrentHashMap<>();
+        this.retardosMaximos = new ConcurrentHashMap<>();
+        this.plantillas = new RegistroPlantillas();
+        this.planificador = Executors.newSingleThreadScheduledExecutor();
+        
+        programar(this::liberarNotificacionesDiferidas, INTERVALO_REVISION_DIFERIDAS_MS);
+        programar(this::probarCircuitosAbiertos, INTERVALO_REVISION_CIRCUITOS_MS);
+    }
+    
+    /**
+     * Registra el servicio que enviará las notificaciones de un tipo de canal, con
+     * tantos hilos como indique el constructor y una cola sin límite.
+     * Si ya había un servicio registrado para ese tipo, lo reemplaza.
+     * El canal queda protegido por un circuito con la configuración por defecto.
+     *
+     * @param tipo Tipo de canal ("email", "sms", ...)
+     * @param servicio Servicio encargado del envío
+     */
+    public void agregarServicio(String tipo, ServicioNotificaciones servicio) {
+        agregarServicio(tipo, servicio, numTrabajadores, CAPACIDAD_COLA_ILIMITADA);
+    }
+    
+    /**
+     * Registra el servicio que enviará las notificaciones de un tipo de canal, con sus
+     * propios hilos y su propia cola. Si ya había un servicio registrado para ese tipo,
+     * lo reemplaza; si además cambia la concurrencia o la capacidad, las notificaciones
+     * en cola pasan a la nueva cola del canal.
+     *
+     * @param tipo Tipo de canal ("email", "sms", ...)
+     * @param servicio Servicio encargado del envío
+     * @param concurrencia Cantidad de hilos que envían por este canal
+     * @param capacidadCola Cantidad máxima aproximada de notificaciones en cola o estacionadas
+     *        en el circuito del canal; al superarla se rechazan las nuevas
+     */
+    public synchronized void agregarServicio(String tipo, ServicioNotificaciones servicio,
+                                             int concurrencia, int capacidadCola) {
+        if (tipo == null || servicio == null) {
+            throw new IllegalArgumentException("El tipo y el servicio no pueden ser nulos");
+        }
+        if (concurrencia <= 0 || capacidadCola <= 0) {
+            throw new IllegalArgumentException("La concurrencia y la capacidad de la cola deben ser mayores que cero");
+        }
+        circuitos.putIfAbsent(tipo, new CircuitoServicio());
+        
+        CanalDespacho anterior = canales.get(tipo);
+        if (anterior != null && anterior.concurrencia == concurrencia && anterior.capacidadCola == capacidadCola) {
+            anterior.servicio = servicio;
+            return;
+        }
+        
+        CanalDespacho canal = new CanalDespacho(servicio, concurrencia, capacidadCola);
+        canales.put(tipo, canal);
+        if (anterior != null) {
+            anterior.detener();
+            List<NotificacionPendiente> enCola = new ArrayList<>();
+            anterior.cola.drainTo(enCola);
+            canal.cola.addAll(enCola);
+        }
+        canal.iniciar();
+    }
+    
+    /**
+     * Reemplaza el circuito que protege un canal. Las notificaciones que estuvieran
+     * estacionadas en el circuito anterior vuelven a la cola de envío.
+     *
+     * @param tipo Tipo de canal
+     * @param umbralFallos Fallos consecutivos que abren el circuito
+     * @param tiempoAperturaMs Tiempo que el circuito permanece abierto antes de probar de nuevo
+     * @param umbralLentitudMs Duración a partir de la cual un envío cuenta como fallo
+     */
+    public void configurarCircuito(String tipo, int umbralFallos, long tiempoAperturaMs, long umbralLentitudMs) {
+        CircuitoServicio anterior = circuitos.put(tipo,
+                new CircuitoServicio(umbralFallos, tiempoAperturaMs, umbralLentitudMs));
+        if (anterior != null) {
+            for (NotificacionPendiente notificacion : anterior.liberarEstacionadas()) {
+                reencolar(notificacion);
+            }
+        }
+    }
+    
+    /**
+     * Configura la política de reintentos de un canal
+     *
+     * @param tipo Tipo de canal
+     * @param politica Política de reintentos a aplicar
+     */
+    public void configurarReintentos(String tipo, PoliticaReintentos politica) {
+        if (tipo == null || politica == null) {
+            throw new IllegalArgumentException("El tipo y la política no pueden ser nulos");
+        }
+        politicasReintento.put(tipo, politica);
+    }
+    
+    /**
+     * Configura el tiempo máximo que una notificación de cierta prioridad debería esperar
+     * en la cola antes de adelantarse a notificaciones más prioritarias llegadas después.
+     * Por defecto es de un minuto por cada nivel por debajo de la prioridad 1
+     * (prioridad 1: sin espera, prioridad 5: cuatro minutos, ...).
+     *
+     * @param prioridad Prioridad a configurar
+     * @param retardoMaximoMs Retardo máximo en milisegundos
+     */
+    public void configurarRetardoMaximo(int prioridad, long retardoMaximoMs) {
+        if (retardoMaximoMs < 0) {
+            throw new IllegalArgumentException("El retardo máximo no puede ser negativo");
+        }
+        retardosMaximos.put(prioridad, TimeUnit.MILLISECONDS.toNanos(retardoMaximoMs));
+    }
+    
+    /**
+     * Obtiene el retardo máximo de envío de una prioridad
+     *
+     * @param prioridad Prioridad a consultar
+     * @return Retardo máximo en milisegundos
+     */
+    public long getRetardoMaximoMs(int prioridad) {
+        return TimeUnit.NANOSECONDS.toMillis(retardoMaximoNanos(prioridad));
+    }
+    
+    private long retardoMaximoNanos(int prioridad) {
+        Long configurado = retardosMaximos.get(prioridad);
+        if (configurado != null) {
+            return configurado;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, prioridad - 1) * RETARDO_MAXIMO_POR_NIVEL_MS_DEFAULT);
+    }
+    
+    /**
+     * Configura un canal para que los mensajes de cada usuario se acumulen durante
+     * una ventana de tiempo y se envíen como un único resumen al vencer la ventana.
+     *
+     * @param tipo Tipo de canal ("email", "sms", ...)
+     * @param ventanaMs Duración de la ventana en milisegundos (0 desactiva la agrupación)
+     */
+    public synchronized void configurarResumen(String tipo, long ventanaMs) {
+        agrupadorResumenes.configurarVentana(tipo, ventanaMs);
+        
+        if (!revisionResumenesProgramada && agrupadorResumenes.estaActivo()) {
+            revisionResumenesProgramada = true;
+            programar(this::emitirResumenesVencidos, INTERVALO_REVISION_RESUMENES_MS);
+        }
+    }
+    
+    /**
+     * Limita la tasa global de envíos de un canal, por ejemplo al máximo que acepta
+     * la pasarela SMS. Los envíos que superan el límite se difieren hasta que haya cupo.
+     *
+     * @param tipo Tipo de canal
+     * @param capacidad Envíos permitidos en ráfaga
+     * @param enviosPorSegundo Tasa sostenida permitida
+     */
+    public synchronized void configurarLimiteCanal(String tipo, int capacidad, double enviosPorSegundo) {
+        limitadorTasa.configurarLimiteCanal(tipo, capacidad, enviosPorSegundo);
+        programarPurgaLimitador();
+    }
+    
+    /**
+     * Limita la tasa de envíos que recibe cada destinatario por un canal
+     *
+     * @param tipo Tipo de canal
+     * @param capacidad Envíos permitidos en ráfaga por destinatario
+     * @param enviosPorSegundo Tasa sostenida permitida por destinatario
+     */
+    public synchronized void configurarLimiteDestinatario(String tipo, int capacidad, double enviosPorSegundo) {
+        limitadorTasa.configurarLimiteDestinatario(tipo, capacidad, enviosPorSegundo);
+        programarPurgaLimitador();
+    }
+    
+    /**
+     * Configura la bandeja de salida persistente. Las notificaciones que la bandeja tenga
+     * sin confirmar de una ejecución anterior se vuelven a encolar de inmediato.
+     * La bandeja se sincroniza con el disco periódicamente; cerrarla es responsabilidad
+     * de quien la creó, después de detener el procesador.
+     *
+     * @param bandeja Bandeja de salida a utilizar
+     * @return Cantidad de notificaciones recuperadas de la bandeja
+     */
+    public synchronized int configurarBandejaSalida(BandejaSalidaPersistente bandeja) {
+        if (bandeja == null) {
+            throw new IllegalArgumentException("La bandeja de salida no puede ser nula");
+        }
+        if (bandejaSalida != null) {
+            throw new IllegalStateException("El procesador ya tiene una bandeja de salida configurada");
+        }
+        
+        // La bandeja se publica antes de reencolar: un trabajador puede enviar una
+        // notificación recuperada de inmediato y tiene que poder confirmarla
+        List<BandejaSalidaPersistente.RegistroBandeja> recuperados = bandeja.recuperarPendientes();
+        bandejaSalida = bandeja;
+        for (BandejaSalidaPersistente.RegistroBandeja registro : recuperados) {
+            NotificacionPendiente notificacion = new NotificacionPendiente(registro.getUsuario(),
+                    registro.getMensaje(), registro.getTipo(), registro.getPrioridad(),
+                    secuencia.getAndIncrement());
+            notificacion.setIdBandeja(registro.getId());
+            notificacion.setPlazo(notificacion.getInstanteEncolado() + retardoMaximoNanos(registro.getPrioridad()));
+            reencolar(notificacion);
+        }
+        
+        programar(bandeja::sincronizar, INTERVALO_SINCRONIZACION_BANDEJA_MS);
+        return recuperados.size();
+    }
+    
+    private void programarPurgaLimitador() {
+        if (!purgaLimitadorProgramada) {
+            purgaLimitadorProgramada = true;
+            programar(() -> limitadorTasa.purgarDestinatariosInactivos(System.nanoTime()),
+                    INTERVALO_PURGA_LIMITADOR_MS);
+        }
+    }
+    
+    /**
+     * Entrega periódicamente una instantánea de las métricas de todos los canales,
+     * por ejemplo para registrarla en un log o publicarla en un sistema de monitoreo
+     *
+     * @param intervaloMs Cada cuánto se toma la instantánea
+     * @param consumidor Receptor de las instantáneas, una por canal
+     */
+    public void configurarInstantaneasPeriodicas(long intervaloMs, Consumer<List<InstantaneaMetricas>> consumidor) {
+        if (intervaloMs <= 0 || consumidor == null) {
+            throw new IllegalArgumentException("El intervalo debe ser positivo y el consumidor no puede ser nulo");
+        }
+        programar(() -> {
+            try {
+                consumidor.accept(obtenerInstantaneas());
+            } catch (RuntimeException e) {
+                // Un fallo del consumidor no debe cancelar las próximas instantáneas
+                System.out.println("Error al publicar las métricas de notificaciones: " + e.getMessage());
+            }
+        }, intervaloMs);
+    }
+    
+    /**
+     * Programa una tarea periódica en el planificador
+     */
+    private void programar(Runnable tarea, long intervaloMs) {
+        planificador.scheduleWithFixedDelay(tarea, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Devuelve a la cola de envío las notificaciones diferidas (por límite de tasa
+     * o a la espera de un reintento) cuyo momento de envío ya llegó
+     */
+    private void liberarNotificacionesDiferidas() {
+        List<NotificacionDiferida> listas = new ArrayList<>();
+        notificacionesDiferidas.drainTo(listas);
+        for (NotificacionDiferida diferida : listas) {
+            reencolar(diferida.notificacion);
+        }
+    }
+    
+    /**
+     * Envía una notificación de prueba por cada circuito abierto cuyo tiempo de apertura venció
+     */
+    private void probarCircuitosAbiertos() {
+        long ahora = System.nanoTime();
+        for (CircuitoServicio circuito : circuitos.values()) {
+            NotificacionPendiente sonda = circuito.extraerSonda(ahora);
+            if (sonda != null) {
+                reencolar(sonda);
+            }
+        }
+    }
+    
+    /**
+     * Pasa a la cola de envío los resúmenes cuya ventana ya venció
+     */
+    private void emitirResumenesVencidos() {
+        try {
+            for (AgrupadorResumenes.ResumenPendiente resumen :
+                    agrupadorResumenes.extraerVencidos(System.nanoTime())) {
+                NotificacionPendiente notificacion = new NotificacionPendiente(resumen.getUsuario(),
+                        resumen.construirMensaje(), resumen.getTipo(), resumen.getPrioridad(),
+                        secuencia.getAndIncrement());
+                // Los mensajes ya están en la bandeja; se confirman cuando se entregue el resumen
+                notificacion.setIdsBandejaResumidos(resumen.getIdsBandeja());
+                agregarACola(notificacion);
+            }
+        } catch (Exception e) {
+            System.out.println("Error al emitir resúmenes de notificaciones: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Encola una notificación con la prioridad por defecto
+     *
+     * @param usuario Destinatario de la notificación
+     * @param mensaje Contenido de la notificación
+     * @param tipo Tipo de canal por el que se enviará
+     * @return true si la notificación se encoló correctamente
+     */
+    public boolean encolarNotificacion(Usuario usuario, String mensaje, String tipo) {
+        return encolarNotificacion(usuario, mensaje, tipo, PRIORIDAD_DEFAULT);
+    }
+    
+    /**
+     * Encola una notificación con una prioridad específica
+     *
+     * @param usuario Destinatario de la notificación
+     * @param mensaje Contenido de la notificación
+     * @param tipo Tipo de canal por el que se enviará
+     * @param prioridad Prioridad de la notificación (1 es la máxima)
+     * @return true si la notificación se encoló correctamente
+     */
+    public boolean encolarNotificacion(Usuario usuario, String mensaje, String tipo, int prioridad) {
+        if (!ejecutando.get() || usuario == null || mensaje == null || tipo == null) {
+            return false;
+        }
+        
+        if (agrupadorResumenes.agrupaTipo(tipo)) {
+            agregarAResumen(usuario, mensaje, tipo, prioridad);
+            return true;
+        }
+        return agregarACola(usuario, mensaje, tipo, prioridad);
+    }
+    
+    /**
+     * Encola una notificación cuyo mensaje es una plantilla registrada en el procesador
+     *
+     * @param usuario Destinatario de la notificación
+     * @param idPlantilla Id de la plantilla en el registro de plantillas
+     * @param parametros Valores de los parámetros de la plantilla
+     * @param tipo Tipo de canal por el que se enviará
+     * @param prioridad Prioridad de la notificación (1 es la máxima)
+     * @return true si la notificación se encoló correctamente
+     */
+    public boolean encolarNotificacion(Usuario usuario, String idPlantilla, Object[] parametros,
+                                       String tipo, int prioridad) {
+        return encolarNotificacion(usuario, plantillas.obtener(idPlantilla).con(parametros), tipo, prioridad);
+    }
+    
+    /**
+     * Encola una notificación cuyo mensaje se renderiza recién al enviarse.
+     * Un mismo mensaje puede encolarse por varios canales y se renderiza una sola vez.
+     *
+     * @param usuario Destinatario de la notificación
+     * @param mensaje Plantilla con sus parámetros
+     * @param tipo Tipo de canal por el que se enviará
+     * @param prioridad Prioridad de la notificación (1 es la máxima)
+     * @return true si la notificación se encoló correctamente
+     */
+    public boolean encolarNotificacion(Usuario usuario, MensajePlantilla mensaje, String tipo, int prioridad) {
+        if (!ejecutando.get() || usuario == null || mensaje == null || tipo == null) {
+            return false;
+        }
+        
+        if (agrupadorResumenes.agrupaTipo(tipo)) {
+            // El resumen combina los textos, así que se renderiza al agruparlo
+            agregarAResumen(usuario, mensaje.renderizar(), tipo, prioridad);
+            return true;
+        }
+        return agregarACola(new NotificacionPendiente(usuario, mensaje, tipo, prioridad, secuencia.getAndIncrement()));
+    }
+    
+    /**
+     * Agrega un mensaje al resumen pendiente del usuario, guardándolo antes en la
+     * bandeja de salida para que no se pierda si el proceso cae durante la ventana
+     */
+    private void agregarAResumen(Usuario usuario, String mensaje, String tipo, int prioridad) {
+        NotificacionPendiente notificacion = new NotificacionPendiente(
+                usuario, mensaje, tipo, prioridad, secuencia.getAndIncrement());
+        registrarEnBandeja(notificacion);
+        agrupadorResumenes.agregar(usuario, mensaje, tipo, prioridad, notificacion.getIdBandeja());
+    }
+    
+    private boolean agregarACola(Usuario usuario, String mensaje, String tipo, int prioridad) {
+        return agregarACola(new NotificacionPendiente(usuario, mensaje, tipo, prioridad, secuencia.getAndIncrement()));
+    }
+    
+    /**
+     * Agrega una notificación nueva a la cola de su canal
+     *
+     * @return true si se encoló, false si el canal no existe o no tiene cupo
+     */
+    private boolean agregarACola(NotificacionPendiente notificacion) {
+        CanalDespacho canal = canales.get(notificacion.getTipo());
+        MetricasCanal metricasCanal = metricasDe(notificacion.getTipo());
+        if (canal == null) {
+            notificacionesFallidas.incrementAndGet();
+            metricasCanal.registrarFallida();
+            confirmarEnBandeja(notificacion);
+            System.out.println("No hay servicio registrado para el tipo de notificación: " + notificacion.getTipo());
+            return false;
+        }
+        if (cupoLibre(notificacion.getTipo(), canal) <= 0) {
+            notificacionesRechazadas.incrementAndGet();
+            metricasCanal.registrarRechazada();
+            confirmarEnBandeja(notificacion);
+            return false;
+        }
+        metricasCanal.registrarEncolada();
+        
+        notificacion.setPlazo(notificacion.getInstanteEncolado() + retardoMaximoNanos(notificacion.getPrioridad()));
+        registrarEnBandeja(notificacion);
+        canal.cola.offer(notificacion);
+        return true;
+    }
+    
+    /**
+     * Encola de una sola vez un lote de notificaciones del mismo canal y prioridad.
+     * El estado del procesador, el canal y el cupo de la cola se consultan una vez por lote
+     * y las secuencias se reservan en bloque, así que un barrido grande compite mucho menos
+     * con los hilos trabajadores que encolando las notificaciones de a una.
+     *
+     * @param lote Notificaciones a encolar
+     * @return Cantidad de notificaciones admitidas; las que no tienen cupo en el canal se rechazan
+     */
+    public int encolarLote(LoteNotificaciones lote) {
+        if (!ejecutando.get() || lote == null || lote.estaVacio()) {
+            return 0;
+        }
+        
+        String tipo = lote.getTipo();
+        int prioridad = lote.getPrioridad();
+        int cantidad = lote.getCantidad();
+        
+        if (agrupadorResumenes.agrupaTipo(tipo)) {
+            for (int i = 0; i < cantidad; i++) {
+                agregarAResumen(lote.getUsuario(i), lote.getMensaje(i).renderizar(), tipo, prioridad);
+            }
+            return cantidad;
+        }
+        
+        CanalDespacho canal = canales.get(tipo);
+        MetricasCanal metricasCanal = metricasDe(tipo);
+        if (canal == null) {
+            notificacionesFallidas.addAndGet(cantidad);
+            metricasCanal.registrarFallidas(cantidad);
+            System.out.println("No hay servicio registrado para el tipo de notificación: " + tipo);
+            return 0;
+        }
+        
+        int admitidas = (int) Math.min(cantidad, cupoLibre(tipo, canal));
+        if (admitidas < cantidad) {
+            notificacionesRechazadas.addAndGet(cantidad - admitidas);
+            metricasCanal.registrarRechazadas(cantidad - admitidas);
+        }
+        if (admitidas == 0) {
+            return 0;
+        }
+        
+        long primeraSecuencia = secuencia.getAndAdd(admitidas);
+        long retardoMaximo = retardoMaximoNanos(prioridad);
+        List<NotificacionPendiente> notificaciones = new ArrayList<>(admitidas);
+        for (int i = 0; i < admitidas; i++) {
+            NotificacionPendiente notificacion = new NotificacionPendiente(
+                    lote.getUsuario(i), lote.getMensaje(i), tipo, prioridad, primeraSecuencia + i);
+            notificacion.setPlazo(notificacion.getInstanteEncolado() + retardoMaximo);
+            registrarEnBandeja(notificacion);
+            notificaciones.add(notificacion);
+        }
+        
+        metricasCanal.registrarEncoladas(admitidas);
+        canal.cola.addAll(notificaciones);
+        return admitidas;
+    }
+    
+    /**
+     * Calcula cuántas notificaciones nuevas admite un canal. Las estacionadas en su circuito
+     * cuentan contra la capacidad de la cola, así que un canal caído no las acumula sin límite.
+     */
+    private long cupoLibre(String tipo, CanalDespacho canal) {
+        CircuitoServicio circuito = circuitos.get(tipo);
+        int estacionadas = circuito != null ? circuito.getCantidadEstacionadas() : 0;
+        return Math.max(0L, (long) canal.capacidadCola - canal.cola.size() - estacionadas);
+    }
+    
+    private void registrarEnBandeja(NotificacionPendiente notificacion) {
+        BandejaSalidaPersistente bandeja = bandejaSalida;
+        // Un resumen no se guarda: sus mensajes ya están en la bandeja
+        if (bandeja != null && notificacion.getIdsBandejaResumidos().isEmpty()) {
+            try {
+                // La bandeja guarda el texto, así que con bandeja el mensaje se renderiza al encolar
+                notificacion.setIdBandeja(bandeja.registrar(notificacion));
+            } catch (IOException | RuntimeException e) {
+                // Se envía igual, aunque sin la garantía de sobrevivir a una caída
+                System.out.println("Error al guardar la notificación en la bandeja de salida: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Devuelve a la cola de su canal una notificación ya admitida (diferida, estacionada
+     * o recuperada), sin aplicar el límite de capacidad de la cola
+     */
+    private void reencolar(NotificacionPendiente notificacion) {
+        CanalDespacho canal = canales.get(notificacion.getTipo());
+        if (canal != null) {
+            canal.cola.offer(notificacion);
+            return;
+        }
+        
+        notificacionesFallidas.incrementAndGet();
+        metricasDe(notificacion.getTipo()).registrarFallida();
+        confirmarEnBandeja(notificacion);
+        System.out.println("No hay servicio registrado para el tipo de notificación: " + notificacion.getTipo());
+    }
+    
+    private MetricasCanal metricasDe(String tipo) {
+        MetricasCanal metricasCanal = metricas.get(tipo);
+        return metricasCanal != null ? metricasCanal : metricas.computeIfAbsent(tipo, MetricasCanal::new);
+    }
+    
+    /**
+     * Confirma en la bandeja de salida una notificación que ya no debe enviarse
+     */
+    private void confirmarEnBandeja(NotificacionPendiente notificacion) {
+        BandejaSalidaPersistente bandeja = bandejaSalida;
+        if (bandeja == null) {
+            return;
+        }
+        if (notificacion.getIdBandeja() >= 0) {
+            bandeja.confirmar(notificacion.getIdBandeja());
+        }
+        for (long id : notificacion.getIdsBandejaResumidos()) {
+            bandeja.confirmar(id);
+        }
+    }
+    
+    /**
+     * Método que se ejecuta en cada hilo trabajador de un canal para enviar sus notificaciones
+     *
+     * @param canal Canal cuyas notificaciones envía el hilo
+     */
+    private void procesarNotificaciones(CanalDespacho canal) {
+        PriorityBlockingQueue<NotificacionPendiente> cola = canal.cola;
+        while (ejecutando.get() && canal.activo) {
+            try {
+                // Tomar con timeout para poder verificar periódicamente si debemos seguir
+                NotificacionPendiente notificacion = cola.poll(1, TimeUnit.SECONDS);
+                if (notificacion == null) {
+                    continue;
+                }
+                
+                if (!diferirSiSuperaLimite(notificacion)) {
+                    enviar(canal.servicio, notificacion);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Reserva el cupo de la notificación en el limitador de tasa y, si no hay cupo
+     * inmediato, la difiere hasta el momento en que lo habrá
+     *
+     * @param notificacion La notificación a enviar
+     * @return true si la notificación quedó diferida
+     */
+    private boolean diferirSiSuperaLimite(NotificacionPendiente notificacion) {
+        if (notificacion.isTasaReservada() || !limitadorTasa.estaActivo()) {
+            return false;
+        }
+        
+        long ahora = System.nanoTime();
+        long espera = limitadorTasa.reservar(notificacion, ahora);
+        if (espera <= 0) {
+            return false;
+        }
+        
+        notificacion.setTasaReservada(true);
+        notificacionesDiferidas.offer(new NotificacionDiferida(notificacion, ahora + espera));
+        return true;
+    }
+    
+    /**
+     * Envía una notificación por el servicio de su canal.
+     * Cualquier fallo queda aislado en la notificación que lo produjo: se reintenta según
+     * la política del canal y cuenta para el circuito del canal.
+     *
+     * @param servicio Servicio del canal
+     * @param notificacion La notificación a enviar
+     */
+    private void enviar(ServicioNotificaciones servicio, NotificacionPendiente notificacion) {
+        String tipo = notificacion.getTipo();
+        CircuitoServicio circuito = circuitos.get(tipo);
+        
+        MetricasCanal metricasCanal = metricasDe(tipo);
+        if (circuito == null) {
+            notificacionesFallidas.incrementAndGet();
+            metricasCanal.registrarFallida();
+            confirmarEnBandeja(notificacion);
+            System.out.println("No hay servicio registrado para el tipo de notificación: " + tipo);
+            return;
+        }
+        
+        long inicio = System.nanoTime();
+        if (!circuito.admitir(notificacion, inicio)) {
+            return; // Queda estacionada hasta que el circuito se cierre
+        }
+        
+        int intentos = notificacion.registrarIntento();
+        EventoEnvioNotificacion evento = new EventoEnvioNotificacion();
+        evento.begin();
+        boolean exito;
+        try {
+            exito = servicio.enviarNotificacion(notificacion.getUsuario(), notificacion.getMensaje());
+        } catch (Exception e) {
+            exito = false;
+            System.out.println("Error al enviar notificación " + tipo + ": " + e.getMessage());
+        }
+        long fin = System.nanoTime();
+        evento.registrar(notificacion, intentos, exito, inicio);
+        
+        if (exito) {
+            notificacionesEnviadas.incrementAndGet();
+            metricasCanal.registrarEnviada(fin - notificacion.getInstanteEncolado(), fin - inicio);
+            confirmarEnBandeja(notificacion);
+            for (NotificacionPendiente liberada : circuito.registrarExito(notificacion, fin - inicio, fin)) {
+                reencolar(liberada);
+            }
+            return;
+        }
+        
+        if (circuito.registrarFallo(notificacion, fin)) {
+            return; // Era la prueba del circuito: vuelve a quedar estacionada
+        }
+        
+        PoliticaReintentos politica = politicasReintento.getOrDefault(tipo, PoliticaReintentos.DEFAULT);
+        if (politica.debeReintentar(intentos)) {
+            notificacionesReintentadas.incrementAndGet();
+            metricasCanal.registrarReintento();
+            notificacion.setTasaReservada(false);
+            notificacionesDiferidas.offer(new NotificacionDiferida(
+                    notificacion, fin + politica.calcularRetardoNanos(intentos)));
+        } else {
+            notificacionesFallidas.incrementAndGet();
+            metricasCanal.registrarFallida();
+            confirmarEnBandeja(notificacion);
+        }
+    }
+    
+    /**
+     * Detiene el procesador de notificaciones.
+     * Las notificaciones que aún estén en cola, diferidas, estacionadas o en resúmenes
+     * abiertos no se envían; si hay bandeja de salida, las que ya estaban en ella se
+     * recuperan la próxima vez que se configure.
+     */
+    public void detener() {
+        ejecutando.set(false);
+        planificador.shutdownNow();
+        for (CanalDespacho canal : canales.values()) {
+            canal.detener();
+        }
+        
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (CanalDespacho canal : canales.values()) {
+            try {
+                if (!canal.trabajadores.awaitTermination(limite - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    canal.trabajadores.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                canal.trabajadores.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        BandejaSalidaPersistente bandeja = bandejaSalida;
+        if (bandeja != null) {
+            bandeja.sincronizar();
+        }
+    }
+    
+    /**
+     * Obtiene la cantidad de notificaciones que esperan ser enviadas
+     * @return el número de notificaciones en cola
+     */
+    public int getNotificacionesPendientes() {
+        int total = 0;
+        for (CanalDespacho canal : canales.values()) {
+            total += canal.cola.size();
+        }
+        return total;
+    }
+    
+    /**
+     * Obtiene la cantidad de notificaciones de un canal que esperan ser enviadas
+     *
+     * @param tipo Tipo de canal
+     * @return el número de notificaciones en la cola del canal
+     */
+    public int getNotificacionesPendientes(String tipo) {
+        CanalDespacho canal = canales.get(tipo);
+        return canal != null ? canal.cola.size() : 0;
+    }
+    
+    /**
+     * Obtiene los tipos de canal registrados en el procesador
+     * @return conjunto no modificable con los tipos de canal
+     */
+    public Set<String> getTiposCanal() {
+        return Collections.unmodifiableSet(canales.keySet());
+    }
+    
+    /**
+     * Obtiene el agrupador de resúmenes, para consultar sus contadores
+     * @return el agrupador de resúmenes del procesador
+     */
+    public AgrupadorResumenes getAgrupadorResumenes() {
+        return agrupadorResumenes;
+    }
+    
+    /**
+     * Obtiene el limitador de tasa, para consultar el nivel de los cubos de tokens
+     * @return el limitador de tasa del procesador
+     */
+    public LimitadorTasa getLimitadorTasa() {
+        return limitadorTasa;
+    }
+    
+    /**
+     * Obtiene el estado del circuito que protege un canal
+     *
+     * @param tipo Tipo de canal
+     * @return Estado del circuito, o null si el canal no está registrado
+     */
+    public CircuitoServicio.EstadoCircuito getEstadoCircuito(String tipo) {
+        CircuitoServicio circuito = circuitos.get(tipo);
+        return circuito != null ? circuito.getEstado() : null;
+    }
+    
+    /**
+     * Obtiene el registro de plantillas de mensajes del procesador
+     * @return el registro de plantillas
+     */
+    public RegistroPlantillas getPlantillas() {
+        return plantillas;
+    }
+    
+    /**
+     * Obtiene la bandeja de salida persistente configurada
+     * @return la bandeja de salida, o null si el procesador no persiste notificaciones
+     */
+    public BandejaSalidaPersistente getBandejaSalida() {
+        return bandejaSalida;
+    }
+    
+    /**
+     * Obtiene la cantidad de notificaciones diferidas por el limitador de tasa
+     * o a la espera de un reintento
+     * @return el número de notificaciones diferidas
+     */
+    public int getNotificacionesDiferidas() {
+        return notificacionesDiferidas.size();
+    }
+    
+    public long getNotificacionesEnviadas() {
+        return notificacionesEnviadas.get();
+    }
+    
+    public long getNotificacionesFallidas() {
+        return notificacionesFallidas.get();
+    }
+    
+    public long getNotificacionesReintentadas() {
+        return notificacionesReintentadas.get();
+    }
+    
+    /**
+     * Obtiene las métricas de entrega de un canal
+     *
+     * @param tipo Tipo de canal
+     * @return las métricas del canal, o null si todavía no tuvo actividad
+     */
+    public MetricasCanal getMetricas(String tipo) {
+        return metricas.get(tipo);
+    }
+    
+    /**
+     * Toma una instantánea de las métricas de cada canal, incluida la cantidad
+     * de notificaciones que esperan en su cola
+     *
+     * @return Lista con una instantánea por canal
+     */
+    public List<InstantaneaMetricas> obtenerInstantaneas() {
+        for (String tipo : canales.keySet()) {
+            metricasDe(tipo);
+        }
+        List<InstantaneaMetricas> instantaneas = new ArrayList<>();
+        for (MetricasCanal metricasCanal : metricas.values()) {
+            instantaneas.add(metricasCanal.tomarInstantanea(getNotificacionesPendientes(metricasCanal.getTipo())));
+        }
+        return instantaneas;
+    }
+    
+    /**
+     * Obtiene la cantidad de notificaciones rechazadas porque la cola de su canal estaba llena
+     * @return el número de notificaciones rechazadas
+     */
+    public long getNotificacionesRechazadas() {
+        return notificacionesRechazadas.get();
+    }
+    
+    /**
+     * Verifica si el procesador está en ejecución
+     * @return true si está en ejecución, false en caso contrario
+     */
+    public boolean estaEjecutando() {
+        return ejecutando.get();
+    }
+    
+    /**
+     * Compartimento de un canal: su cola, su servicio y sus propios hilos trabajadores
+     */
+    private class CanalDespacho {
+        private final PriorityBlockingQueue<NotificacionPendiente> cola;
+        private final ExecutorService trabajadores;
+        private final int concurrencia;
+        private final int capacidadCola;
+        private volatile ServicioNotificaciones servicio;
+        private volatile boolean activo;
+        
+        CanalDespacho(ServicioNotificaciones servicio, int concurrencia, int capacidadCola) {
+            this.cola = new PriorityBlockingQueue<>();
+            this.trabajadores = Executors.newFixedThreadPool(concurrencia);
+            this.concurrencia = concurrencia;
+            this.capacidadCola = capacidadCola;
+            this.servicio = servicio;
+            this.activo = true;
+        }
+        
+        void iniciar() {
+            for (int i = 0; i < concurrencia; i++) {
+                trabajadores.submit(() -> procesarNotificaciones(this));
+            }
+        }
+        
+        void detener() {
+            activo = false;
+            trabajadores.shutdown();
+        }
+    }
+    
+    /**
+     * Notificación a la espera de cupo en el limitador de tasa o de su próximo reintento
+     */
+    private static class NotificacionDiferida implements Delayed {
+        private final NotificacionPendiente notificacion;
+        private final long instanteLiberacion;
+        
+        NotificacionDiferida(NotificacionPendiente notificacion, long instanteLiberacion) {
+            this.notificacion = notificacion;
+            this.instanteLiberacion = instanteLiberacion;
+        }
+        
+        @Override
+        public long getDelay(TimeUnit unidad) {
+            return unidad.convert(instanteLiberacion - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed otra) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), otra.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
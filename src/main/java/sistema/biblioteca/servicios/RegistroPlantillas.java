@@ -0,0 +1,55 @@
+package sistema.biblioteca.servicios;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de plantillas de mensajes identificadas por un id.
+ * Cada plantilla se compila una sola vez al registrarla.
+ */
+public class RegistroPlantillas {
+    
+    private final Map<String, PlantillaMensaje> plantillas;
+    
+    public RegistroPlantillas() {
+        this.plantillas = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Registra una plantilla. Si ya existía una con el mismo id y el mismo texto se
+     * reutiliza la ya compilada; si el texto es distinto, la nueva la reemplaza.
+     *
+     * @param id Identificador de la plantilla
+     * @param texto Texto con marcadores {0}, {1}, ...
+     * @return La plantilla compilada
+     */
+    public PlantillaMensaje registrar(String id, String texto) {
+        if (id == null || texto == null) {
+            throw new IllegalArgumentException("El id y el texto de la plantilla no pueden ser nulos");
+        }
+        return plantillas.compute(id, (clave, actual) ->
+                actual != null && actual.getTexto().equals(texto) ? actual : PlantillaMensaje.compilar(texto));
+    }
+    
+    /**
+     * Obtiene una plantilla registrada
+     *
+     * @param id Identificador de la plantilla
+     * @return La plantilla compilada
+     */
+    public PlantillaMensaje obtener(String id) {
+        PlantillaMensaje plantilla = plantillas.get(id);
+        if (plantilla == null) {
+            throw new IllegalArgumentException("No existe la plantilla: " + id);
+        }
+        return plantilla;
+    }
+    
+    public boolean contiene(String id) {
+        return plantillas.containsKey(id);
+    }
+    
+    public int getCantidadPlantillas() {
+        return plantillas.size();
+    }
+}
@@ -1,31 +1,46 @@
 package sistema.biblioteca.servicios;
 
 import sistema.biblioteca.modelos.Usuario;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
 
 public class ServicioNotificacionesEmail implements ServicioNotificaciones {
-    private Map<String, Queue<String>> notificacionesPendientes;
+    private static final int TAMANO_LOTE_PROCESAMIENTO = 50;
+    
+    private final ColasPendientesPorUsuario notificacionesPendientes;
     
     public ServicioNotificacionesEmail() {
-        this.notificacionesPendientes = new HashMap<>();
+        this(new ColasPendientesPorUsuario());
+    }
+    
+    /**
+     * Constructor
+     * @param notificacionesPendientes colas acotadas donde se guardan los emails pendientes
+     */
+    public ServicioNotificacionesEmail(ColasPendientesPorUsuario notificacionesPendientes) {
+        this.notificacionesPendientes = notificacionesPendientes;
     }
     
     @Override
-    public void enviarNotificacion(Usuario usuario, String mensaje) {
+    public boolean enviarNotificacion(Usuario usuario, String mensaje) {
         if (usuario == null || usuario.getEmail() == null || usuario.getEmail().isEmpty()) {
-            return;
+            return false;
         }
         
         // Agregar a la cola de notificaciones pendientes
-        notificacionesPendientes
-            .computeIfAbsent(usuario.getId(), k -> new LinkedList<>())
-            .add(mensaje);
+        if (!notificacionesPendientes.agregar(usuario.getId(), mensaje)) {
+            // Cola del usuario llena: el descarte es la política de desborde, no una falla
+            // del canal, así que no se reintenta ni cuenta para el circuito
+            return true;
+        }
         
         // Simulamos envío real con un println
         System.out.println("EMAIL enviado a " + usuario.getEmail() + ": " + mensaje);
+        return true;
+    }
+    
+    @Override
+    public int enviarNotificacionGlobal(String mensaje) {
+        // Este servicio no conoce a los usuarios; los envíos globales se hacen con AdaptadorNotificaciones
+        return 0;
     }
     
     @Override
@@ -34,22 +49,20 @@ public class ServicioNotificacionesEmail implements ServicioNotificaciones {
             return false;
         }
         
-        Queue<String> pendientes = notificacionesPendientes.get(usuario.getId());
-        return pendientes != null && !pendientes.isEmpty();
+        return notificacionesPendientes.tienePendientes(usuario.getId());
     }
     
     @Override
     public void procesarNotificacionesPendientes() {
-        for (Map.Entry<String, Queue<String>> entry : notificacionesPendientes.entrySet()) {
-            String usuarioId = entry.getKey();
-            Queue<String> mensajes = entry.getValue();
-            
-            // Procesar mensajes pendientes
-            while (!mensajes.isEmpty()) {
-                String mensaje = mensajes.poll();
+        notificacionesPendientes.drenar(Integer.MAX_VALUE, TAMANO_LOTE_PROCESAMIENTO, (usuarioId, mensajes) -> {
+            for (String mensaje : mensajes) {
                 System.out.println("Procesando email pendiente para usuario " + usuarioId + ": " + mensaje);
                 // Aquí iría lógica real de envío
             }
-        }
+        });
+    }
+    
+    public ColasPendientesPorUsuario getNotificacionesPendientes() {
+        return notificacionesPendientes;
     }
-} 
\ No newline at end of file
+}
@@ -1,22 +1,29 @@
 package sistema.biblioteca.servicios;
 
 import sistema.biblioteca.modelos.Usuario;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
 
 public class ServicioNotificacionesSMS implements ServicioNotificaciones {
-    private Map<String, Queue<String>> notificacionesPendientes;
+    // En un entorno real, limitar número de SMS por usuario por hora
+    private static final int MAXIMO_SMS_POR_PROCESAMIENTO = 5;
+    
+    private final ColasPendientesPorUsuario notificacionesPendientes;
     
     public ServicioNotificacionesSMS() {
-        this.notificacionesPendientes = new HashMap<>();
+        this(new ColasPendientesPorUsuario());
+    }
+    
+    /**
+     * Constructor
+     * @param notificacionesPendientes colas acotadas donde se guardan los SMS pendientes
+     */
+    public ServicioNotificacionesSMS(ColasPendientesPorUsuario notificacionesPendientes) {
+        this.notificacionesPendientes = notificacionesPendientes;
     }
     
     @Override
-    public void enviarNotificacion(Usuario usuario, String mensaje) {
+    public boolean enviarNotificacion(Usuario usuario, String mensaje) {
         if (usuario == null || usuario.getTelefono() == null || usuario.getTelefono().isEmpty()) {
-            return;
+            return false;
         }
         
         // Truncar mensaje si es muy largo (los SMS tienen límite)
@@ -26,12 +33,21 @@ public class ServicioNotificacionesSMS implements ServicioNotificaciones {
         }
         
         // Agregar a la cola de notificaciones pendientes
-        notificacionesPendientes
-            .computeIfAbsent(usuario.getId(), k -> new LinkedList<>())
-            .add(mensajeFinal);
+        if (!notificacionesPendientes.agregar(usuario.getId(), mensajeFinal)) {
+            // Cola del usuario llena: el descarte es la política de desborde, no una falla
+            // del canal, así que no se reintenta ni cuenta para el circuito
+            return true;
+        }
         
         // Simulamos envío real
         System.out.println("SMS enviado a " + usuario.getTelefono() + ": " + mensajeFinal);
+        return true;
+    }
+    
+    @Override
+    public int enviarNotificacionGlobal(String mensaje) {
+        // Este servicio no conoce a los usuarios; los envíos globales se hacen con AdaptadorNotificaciones
+        return 0;
     }
     
     @Override
@@ -40,27 +56,25 @@ public class ServicioNotificacionesSMS implements ServicioNotificaciones {
             return false;
         }
         
-        Queue<String> pendientes = notificacionesPendientes.get(usuario.getId());
-        return pendientes != null && !pendientes.isEmpty();
+        return notificacionesPendientes.tienePendientes(usuario.getId());
     }
     
     @Override
     public void procesarNotificacionesPendientes() {
-        for (Map.Entry<String, Queue<String>> entry : notificacionesPendientes.entrySet()) {
-            String usuarioId = entry.getKey();
-            Queue<String> mensajes = entry.getValue();
-            
-            // En un entorno real, limitar número de SMS por usuario por hora
-            int count = 0;
-            while (!mensajes.isEmpty() && count < 5) {  
-                String mensaje = mensajes.poll();
-                System.out.println("Procesando SMS pendiente para usuario " + usuarioId + ": " + mensaje);
-                count++;
-            }
-            
-            if (!mensajes.isEmpty()) {
-                System.out.println("Quedan " + mensajes.size() + " SMS pendientes para procesar más tarde");
-            }
-        }
+        notificacionesPendientes.drenar(MAXIMO_SMS_POR_PROCESAMIENTO, MAXIMO_SMS_POR_PROCESAMIENTO,
+                (usuarioId, mensajes) -> {
+                    for (String mensaje : mensajes) {
+                        System.out.println("Procesando SMS pendiente para usuario " + usuarioId + ": " + mensaje);
+                    }
+                    
+                    int restantes = notificacionesPendientes.getCantidadPendientes(usuarioId);
+                    if (restantes > 0) {
+                        System.out.println("Quedan " + restantes + " SMS pendientes para procesar más tarde");
+                    }
+                });
+    }
+    
+    public ColasPendientesPorUsuario getNotificacionesPendientes() {
+        return notificacionesPendientes;
     }
-} 
\ No newline at end of file
+}
@@ -2,17 +2,29 @@ package sistema.biblioteca.servicios;
 
 import sistema.biblioteca.colas.ColaReservas;
 import sistema.biblioteca.gestores.GestorReglaRenovacion;
+import sistema.biblioteca.gestores.PoliticaRenovacion;
+import sistema.biblioteca.modelos.CategoriaRecurso;
 import sistema.biblioteca.modelos.Prestamo;
-import sistema.biblioteca.modelos.RecursoBase;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servicio para validar si una renovación de préstamo es posible
  * según las reglas definidas y otras condiciones del sistema.
  */
 public class ValidadorRenovaciones {
+    /** Días de atraso de un préstamo que no está vencido */
+    private static final int NO_VENCIDO = -1;
+    
     private GestorReglaRenovacion gestorReglas;
     private ColaReservas colaReservas;
     
@@ -29,31 +41,82 @@ public class ValidadorRenovaciones {
         PRESTAMO_VENCIDO("El préstamo está vencido y no puede renovarse"),
         LIMITE_RENOVACIONES("Se ha alcanzado el límite de renovaciones para este recurso"),
         RESERVAS_PENDIENTES("Hay reservas pendientes para este recurso"),
-        REQUIERE_AUTORIZACION("Este tipo de recurso requiere autorización para renovarse");
+        REQUIERE_AUTORIZACION("Este tipo de recurso requiere autorización para renovarse"),
+        POLITICA_BIBLIOTECA("La política de renovación de la biblioteca no permite esta renovación");
+        
+        private static final MotivoRechazoRenovacion[] VALORES = values();
         
         private final String mensaje;
+        private final int mascara;
         
         MotivoRechazoRenovacion(String mensaje) {
             this.mensaje = mensaje;
+            this.mascara = 1 << ordinal();
         }
         
         public String getMensaje() {
             return mensaje;
         }
+        
+        /**
+         * Obtiene el bit que representa a este motivo en una máscara de motivos
+         * 
+         * @return La máscara con solo el bit de este motivo
+         */
+        public int getMascara() {
+            return mascara;
+        }
+        
+        /**
+         * Verifica si este motivo está incluido en una máscara de motivos
+         * 
+         * @param mascaraMotivos Máscara devuelta por la validación rápida
+         * @return true si la máscara incluye este motivo
+         */
+        public boolean estaEn(int mascaraMotivos) {
+            return (mascaraMotivos & mascara) != 0;
+        }
+        
+        /**
+         * Convierte una máscara de motivos en la lista de motivos que contiene
+         * 
+         * @param mascaraMotivos Máscara devuelta por la validación rápida
+         * @return Lista de motivos en el orden en que se verifican
+         */
+        public static List<MotivoRechazoRenovacion> desdeMascara(int mascaraMotivos) {
+            List<MotivoRechazoRenovacion> motivos = new ArrayList<>(Integer.bitCount(mascaraMotivos));
+            for (MotivoRechazoRenovacion motivo : VALORES) {
+                if (motivo.estaEn(mascaraMotivos)) {
+                    motivos.add(motivo);
+                }
+            }
+            return motivos;
+        }
     }
     
     /**
-     * Resultado de la validación de una renovación
+     * Resultado de la validación de una renovación.
+     * Los motivos se guardan como máscara y la lista se arma solo cuando se pide.
      */
     public static class ResultadoValidacion {
         private boolean renovacionPermitida;
-        private List<MotivoRechazoRenovacion> motivos;
+        private int mascaraMotivos;
         private int diasSugeridos;
         
         public ResultadoValidacion() {
-            this.renovacionPermitida = true;
-            this.motivos = new ArrayList<>();
-            this.diasSugeridos = 0;
+            this(0, 0);
+        }
+        
+        /**
+         * Crea el resultado detallado a partir de la máscara de la validación rápida
+         * 
+         * @param mascaraMotivos Máscara de motivos de rechazo (0 si la renovación es posible)
+         * @param diasSugeridos Días sugeridos para la renovación
+         */
+        public ResultadoValidacion(int mascaraMotivos, int diasSugeridos) {
+            this.renovacionPermitida = mascaraMotivos == 0;
+            this.mascaraMotivos = mascaraMotivos;
+            this.diasSugeridos = diasSugeridos;
         }
         
         public boolean isRenovacionPermitida() {
@@ -65,12 +128,16 @@ public class ValidadorRenovaciones {
         }
         
         public List<MotivoRechazoRenovacion> getMotivos() {
-            return motivos;
+            return MotivoRechazoRenovacion.desdeMascara(mascaraMotivos);
+        }
+        
+        public int getMascaraMotivos() {
+            return mascaraMotivos;
         }
         
         public void agregarMotivo(MotivoRechazoRenovacion motivo) {
             if (motivo != null) {
-                this.motivos.add(motivo);
+                this.mascaraMotivos |= motivo.getMascara();
                 this.renovacionPermitida = false;
             }
         }
@@ -85,7 +152,7 @@ public class ValidadorRenovaciones {
         
         public String getMensajesRechazo() {
             StringBuilder mensaje = new StringBuilder();
-            for (MotivoRechazoRenovacion motivo : motivos) {
+            for (MotivoRechazoRenovacion motivo : getMotivos()) {
                 mensaje.append("- ").append(motivo.getMensaje()).append("\n");
             }
             return mensaje.toString();
@@ -99,46 +166,213 @@ public class ValidadorRenovaciones {
      * @return Resultado de la validación con información detallada
      */
     public ResultadoValidacion validarRenovacion(Prestamo prestamo) {
-        ResultadoValidacion resultado = new ResultadoValidacion();
-        
         if (prestamo == null) {
+            ResultadoValidacion resultado = new ResultadoValidacion();
             resultado.setRenovacionPermitida(false);
             return resultado;
         }
         
-        // Verificar si el préstamo está activo
-        if (!prestamo.isActivo()) {
-            resultado.agregarMotivo(MotivoRechazoRenovacion.PRESTAMO_INACTIVO);
+        return validarRenovacion(prestamo, null);
+    }
+    
+    /**
+     * Validación rápida: devuelve los motivos de rechazo como máscara de bits, sin crear objetos.
+     * Sirve cuando solo importa si la renovación es posible, por ejemplo para filtrar
+     * préstamos; el resultado detallado puede armarse después con
+     * {@link ResultadoValidacion#ResultadoValidacion(int, int)}.
+     * 
+     * @param prestamo El préstamo a renovar
+     * @param detenerEnPrimerMotivo Si es true, deja de verificar al encontrar el primer motivo
+     * @return Máscara de {@link MotivoRechazoRenovacion}; 0 si la renovación es posible
+     */
+    public int validarMotivos(Prestamo prestamo, boolean detenerEnPrimerMotivo) {
+        if (prestamo == null || (detenerEnPrimerMotivo && !prestamo.isActivo())) {
+            return MotivoRechazoRenovacion.PRESTAMO_INACTIVO.getMascara();
         }
         
-        // Verificar si el préstamo está vencido
-        if (prestamo.estaVencido()) {
-            resultado.agregarMotivo(MotivoRechazoRenovacion.PRESTAMO_VENCIDO);
+        long reglas = gestorReglas.evaluar(prestamo.getRecurso(), prestamo.getCantidadRenovaciones());
+        int motivos = verificarEstado(prestamo, reglas, detenerEnPrimerMotivo);
+        if (motivos != 0 && detenerEnPrimerMotivo) {
+            return motivos;
+        }
+        int diasVencido = diasVencido(prestamo);
+        int decisionPolitica = motivos == 0 ? evaluarPolitica(prestamo, null, diasVencido) : PoliticaRenovacion.SIN_DECISION;
+        return motivos | calcularMotivos(prestamo, reglas, null, diasVencido, decisionPolitica, detenerEnPrimerMotivo);
+    }
+    
+    /**
+     * Verifica si un préstamo puede renovarse, deteniéndose en el primer motivo de rechazo
+     * 
+     * @param prestamo El préstamo a renovar
+     * @return true si la renovación es posible
+     */
+    public boolean puedeRenovarse(Prestamo prestamo) {
+        return validarMotivos(prestamo, true) == 0;
+    }
+    
+    /**
+     * Valida un lote de préstamos en paralelo. Las reservas pendientes se consultan
+     * una sola vez por recurso antes de validar.
+     * 
+     * @param prestamos Los préstamos a validar
+     * @return Mapa con el resultado de la validación de cada préstamo, por ID de préstamo
+     */
+    public Map<String, ResultadoValidacion> validarLote(Collection<Prestamo> prestamos) {
+        Set<String> idsRecurso = new HashSet<>();
+        for (Prestamo prestamo : prestamos) {
+            idsRecurso.add(prestamo.getRecurso().getIdentificador());
+        }
+        Set<String> conReservas = recursosConReservasPendientes(idsRecurso);
+        
+        Map<String, ResultadoValidacion> resultados = new ConcurrentHashMap<>();
+        prestamos.parallelStream().forEach(prestamo -> resultados.put(prestamo.getId(),
+                validarRenovacion(prestamo, conReservas)));
+        return resultados;
+    }
+    
+    /**
+     * Valida un préstamo con todas las verificaciones y arma el resultado detallado
+     * 
+     * @param conReservas Recursos con reservas pendientes ya consultados, o null para consultarlos
+     */
+    private ResultadoValidacion validarRenovacion(Prestamo prestamo, Set<String> conReservas) {
+        long reglas = gestorReglas.evaluar(prestamo.getRecurso(), prestamo.getCantidadRenovaciones());
+        int motivos = verificarEstado(prestamo, reglas, false);
+        int diasVencido = diasVencido(prestamo);
+        int decisionPolitica = motivos == 0 ? evaluarPolitica(prestamo, conReservas, diasVencido) : PoliticaRenovacion.SIN_DECISION;
+        motivos |= calcularMotivos(prestamo, reglas, conReservas, diasVencido, decisionPolitica, false);
+        
+        // Si la renovación es permitida, sugerir los días de la política o, si no los indica, de la categoría
+        int dias = PoliticaRenovacion.diasDe(decisionPolitica);
+        return new ResultadoValidacion(motivos, motivos != 0 ? 0 : dias > 0 ? dias : GestorReglaRenovacion.diasDe(reglas));
+    }
+    
+    /**
+     * Calcula una sola vez los días de atraso de un préstamo; el reloj se vuelve a leer
+     * solo si el préstamo está vencido
+     * 
+     * @return Los días de atraso, o {@link #NO_VENCIDO} si el préstamo no está vencido
+     */
+    private static int diasVencido(Prestamo prestamo) {
+        if (!prestamo.estaVencido()) {
+            return NO_VENCIDO;
+        }
+        LocalDate fechaDevolucion = prestamo.getFechaDevolucionEstimada().toLocalDate();
+        return (int) Math.max(ChronoUnit.DAYS.between(fechaDevolucion, LocalDate.now()), 0);
+    }
+    
+    /**
+     * Evalúa la política de renovación vigente para un préstamo
+     * 
+     * @param conReservas Recursos con reservas pendientes ya consultados, o null para consultarlos
+     * @param diasVencido Días de atraso del préstamo, o {@link #NO_VENCIDO}
+     * @return La decisión de la política, o {@link PoliticaRenovacion#SIN_DECISION}
+     */
+    private int evaluarPolitica(Prestamo prestamo, Set<String> conReservas, int diasVencido) {
+        PoliticaRenovacion politica = gestorReglas.getPolitica();
+        if (politica == null) {
+            return PoliticaRenovacion.SIN_DECISION;
         }
         
-        RecursoBase recurso = prestamo.getRecurso();
+        // Las reservas se cuentan solo si una regla que las consulta cumple el resto de sus condiciones;
+        // si el lote ya consultó la cola, los recursos sin reservas cuentan 0 sin volver a consultarla
+        String idRecurso = prestamo.getRecurso().getIdentificador();
+        int reservas = conReservas != null && !conReservas.contains(idRecurso)
+                ? 0 : PoliticaRenovacion.RESERVAS_SIN_CONTAR;
+        CategoriaRecurso categoria = prestamo.getRecurso().getCategoria();
+        int renovaciones = prestamo.getCantidadRenovaciones();
+        int prestamosUsuario = prestamo.getUsuario().getCantidadPrestamos();
+        int atraso = Math.max(diasVencido, 0);
+        
+        int decision = politica.evaluar(categoria, renovaciones, prestamosUsuario, reservas, atraso);
+        if (decision == PoliticaRenovacion.FALTAN_RESERVAS) {
+            decision = politica.evaluar(categoria, renovaciones, prestamosUsuario,
+                    contarReservasPendientes(idRecurso), atraso);
+        }
+        return decision;
+    }
+    
+    /**
+     * Verifica los motivos de rechazo que ninguna política puede revertir: que el préstamo
+     * esté inactivo o que haya alcanzado el límite de renovaciones de su categoría.
+     * Son las verificaciones más baratas, así que la política solo se evalúa si ambas pasan.
+     * 
+     * @param prestamo El préstamo a renovar
+     * @param reglas Decisión de las reglas de renovación de la categoría del recurso
+     * @param detenerEnPrimerMotivo Si es true, deja de verificar al encontrar el primer motivo
+     * @return Máscara de motivos de rechazo
+     */
+    private int verificarEstado(Prestamo prestamo, long reglas, boolean detenerEnPrimerMotivo) {
+        int motivos = 0;
+        
+        // Verificar si el préstamo está activo
+        if (!prestamo.isActivo()) {
+            motivos |= MotivoRechazoRenovacion.PRESTAMO_INACTIVO.getMascara();
+            if (detenerEnPrimerMotivo) {
+                return motivos;
+            }
+        }
         
         // Verificar número máximo de renovaciones según la categoría
-        if (!gestorReglas.puedeRenovarse(recurso, prestamo.getCantidadRenovaciones())) {
-            resultado.agregarMotivo(MotivoRechazoRenovacion.LIMITE_RENOVACIONES);
+        if ((reglas & GestorReglaRenovacion.PUEDE_RENOVARSE) == 0) {
+            motivos |= MotivoRechazoRenovacion.LIMITE_RENOVACIONES.getMascara();
+        }
+        return motivos;
+    }
+    
+    /**
+     * Calcula el resto de los motivos de rechazo de un préstamo. La consulta de reservas
+     * es la más costosa, por eso se hace al final.
+     * La política de la biblioteca se suma a las reglas por categoría: puede rechazar la
+     * renovación, exigir autorización o, si decide renovar, permitirla aunque el préstamo
+     * esté vencido (por ejemplo, con unos días de gracia).
+     * 
+     * @param prestamo El préstamo a renovar
+     * @param reglas Decisión de las reglas de renovación de la categoría del recurso
+     * @param conReservas Recursos con reservas pendientes ya consultados, o null para consultarlos
+     * @param diasVencido Días de atraso del préstamo, o {@link #NO_VENCIDO}
+     * @param decisionPolitica Decisión de la política de renovación
+     * @param detenerEnPrimerMotivo Si es true, deja de verificar al encontrar el primer motivo
+     * @return Máscara de motivos de rechazo
+     */
+    private int calcularMotivos(Prestamo prestamo, long reglas, Set<String> conReservas,
+                                int diasVencido, int decisionPolitica, boolean detenerEnPrimerMotivo) {
+        PoliticaRenovacion.AccionRenovacion accion = PoliticaRenovacion.accionDe(decisionPolitica);
+        int motivos = 0;
+        
+        // Verificar si el préstamo está vencido
+        if (diasVencido != NO_VENCIDO && accion != PoliticaRenovacion.AccionRenovacion.RENOVAR) {
+            motivos |= MotivoRechazoRenovacion.PRESTAMO_VENCIDO.getMascara();
+            if (detenerEnPrimerMotivo) {
+                return motivos;
+            }
         }
         
-        // Verificar si hay reservas pendientes para este recurso
-        if (hayReservasPendientes(recurso.getIdentificador())) {
-            resultado.agregarMotivo(MotivoRechazoRenovacion.RESERVAS_PENDIENTES);
+        // Verificar si la política de la biblioteca rechaza la renovación
+        if (accion == PoliticaRenovacion.AccionRenovacion.RECHAZAR) {
+            motivos |= MotivoRechazoRenovacion.POLITICA_BIBLIOTECA.getMascara();
+            if (detenerEnPrimerMotivo) {
+                return motivos;
+            }
         }
         
         // Verificar si requiere autorización especial
-        if (gestorReglas.requiereAutorizacion(recurso)) {
-            resultado.agregarMotivo(MotivoRechazoRenovacion.REQUIERE_AUTORIZACION);
+        if ((reglas & GestorReglaRenovacion.REQUIERE_AUTORIZACION) != 0
+                || accion == PoliticaRenovacion.AccionRenovacion.AUTORIZAR) {
+            motivos |= MotivoRechazoRenovacion.REQUIERE_AUTORIZACION.getMascara();
+            if (detenerEnPrimerMotivo) {
+                return motivos;
+            }
         }
         
-        // Si la renovación es permitida, sugerir días según la categoría
-        if (resultado.isRenovacionPermitida()) {
-            resultado.setDiasSugeridos(gestorReglas.getDiasParaRenovacion(recurso));
+        // Verificar si hay reservas pendientes para este recurso
+        String idRecurso = prestamo.getRecurso().getIdentificador();
+        boolean hayReservas = conReservas != null ? conReservas.contains(idRecurso) : hayReservasPendientes(idRecurso);
+        if (hayReservas) {
+            motivos |= MotivoRechazoRenovacion.RESERVAS_PENDIENTES.getMascara();
         }
         
-        return resultado;
+        return motivos;
     }
     
     /**
@@ -162,4 +396,46 @@ public class ValidadorRenovaciones {
             return false;
         }
     }
+    
+    /**
+     * Cuenta las reservas pendientes de un recurso específico.
+     * 
+     * @param idRecurso Identificador del recurso
+     * @return Cantidad de reservas pendientes
+     */
+    private int contarReservasPendientes(String idRecurso) {
+        if (colaReservas == null) {
+            return 0;
+        }
+        
+        try {
+            return colaReservas.contarReservasPendientes(idRecurso);
+        } catch (Exception e) {
+            // En caso de error, por seguridad asumimos que no hay reservas
+            System.out.println("Error al contar reservas pendientes: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * Obtiene cuáles de los recursos indicados tienen reservas pendientes.
+     * 
+     * @param idsRecurso Identificadores de los recursos
+     * @return Identificadores de los recursos con reservas pendientes
+     */
+    private Set<String> recursosConReservasPendientes(Collection<String> idsRecurso) {
+        // Si no hay cola de reservas configurada, asumir que no hay reservas
+        if (colaReservas == null) {
+            return Collections.emptySet();
+        }
+        
+        try {
+            // Verificar si hay reservas pendientes para estos recursos
+            return colaReservas.filtrarConReservasPendientes(idsRecurso);
+        } catch (Exception e) {
+            // En caso de error, por seguridad asumimos que no hay reservas
+            System.out.println("Error al verificar reservas pendientes: " + e.getMessage());
+            return Collections.emptySet();
+        }
+    }
 } 
\ No newline at end of file
@@ -1,7 +1,11 @@
 package sistema.biblioteca.gestores;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import sistema.biblioteca.colas.ColaReservasSimple;
 import sistema.biblioteca.excepciones.RecursoNoDisponibleException;
 import sistema.biblioteca.excepciones.UsuarioNoEncontradoException;
 import sistema.biblioteca.modelos.CategoriaRecurso;
@@ -9,13 +13,18 @@ import sistema.biblioteca.modelos.Libro;
 import sistema.biblioteca.modelos.Prestamo;
 import sistema.biblioteca.modelos.Usuario;
 import sistema.biblioteca.servicios.ServicioNotificacionesEmail;
+import sistema.biblioteca.servicios.ValidadorRenovaciones;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -427,4 +436,123 @@ public class GestorPrestamosTest {
         
         assertTrue(exception.getMessage().contains("ya ha sido devuelto"));
     }
-} 
\ No newline at end of file
+    
+    @Test
+    public void testRenovarPrestamosElegibles() throws RecursoNoDisponibleException, UsuarioNoEncontradoException {
+        Usuario usuario2 = new Usuario("U002", "Usuario 2", "usuario2@ejemplo.com");
+        gestorUsuarios.registrarUsuario(usuario2);
+        gestorRecursos.agregarRecurso(new Libro("L002", "Libro 2", "Autor 2", "9876543210", CategoriaRecurso.FICCION));
+        gestorRecursos.agregarRecurso(new Libro("L003", "Libro 3", "Autor 3", "5555555555", CategoriaRecurso.FICCION));
+        
+        // El libro L002 tiene una reserva pendiente, así que su préstamo no se renueva
+        ColaReservasSimple colaReservas = new ColaReservasSimple();
+        colaReservas.agregarReserva("L002", "U003");
+        gestorPrestamos.setValidadorRenovaciones(
+            new ValidadorRenovaciones(gestorPrestamos.getGestorReglaRenovacion(), colaReservas));
+        
+        Prestamo p1 = gestorPrestamos.crearPrestamo("L001", "U001");
+        Prestamo p2 = gestorPrestamos.crearPrestamo("L002", "U001");
+        Prestamo p3 = gestorPrestamos.crearPrestamo("L003", "U002");
+        var fechaOriginal = p1.getFechaDevolucionEstimada();
+        
+        GestorPrestamos.ResultadoRenovacionMasiva resultado = gestorPrestamos.renovarPrestamosElegibles("Fin de período");
+        
+        assertEquals(2, resultado.getPrestamosRenovados());
+        assertEquals(1, resultado.getPrestamosRechazados());
+        assertEquals(2, resultado.getUsuariosNotificados());
+        assertEquals(1, p1.getCantidadRenovaciones());
+        assertEquals(0, p2.getCantidadRenovaciones());
+        assertEquals(1, p3.getCantidadRenovaciones());
+        assertEquals(fechaOriginal.plusDays(
+            gestorPrestamos.getGestorReglaRenovacion().getDiasParaRenovacion(libro)), p1.getFechaDevolucionEstimada());
+    }
+    
+    @Test
+    public void testRenovacionMasivaNoCuentaComoRechazadosLosDevueltosDuranteElLote()
+            throws RecursoNoDisponibleException, UsuarioNoEncontradoException {
+        gestorRecursos.agregarRecurso(new Libro("L002", "Libro 2", "Autor 2", "9876543210", CategoriaRecurso.FICCION));
+        Prestamo p1 = gestorPrestamos.crearPrestamo("L001", "U001");
+        Prestamo p2 = gestorPrestamos.crearPrestamo("L002", "U001");
+        
+        // La primera renovación del lote devuelve el otro préstamo, ya validado
+        gestorPrestamos.agregarEscucha(prestamo -> {
+            if (prestamo.isActivo() && prestamo.getCantidadRenovaciones() == 1) {
+                gestorPrestamos.devolverPrestamo((prestamo == p1 ? p2 : p1).getId());
+            }
+        });
+        
+        GestorPrestamos.ResultadoRenovacionMasiva resultado = gestorPrestamos.renovarPrestamosElegibles(null);
+        
+        assertEquals(1, resultado.getPrestamosRenovados());
+        assertEquals(0, resultado.getPrestamosRechazados());
+        assertEquals(1, p1.getCantidadRenovaciones() + p2.getCantidadRenovaciones());
+        assertTrue(p1.isActivo() != p2.isActivo());
+    }
+    
+    @Test
+    public void testRenovacionMasivaRevalidaLosPrestamosRenovadosDuranteElLote()
+            throws RecursoNoDisponibleException, UsuarioNoEncontradoException {
+        gestorRecursos.agregarRecurso(new Libro("L002", "Libro 2", "Autor 2", "9876543210", CategoriaRecurso.FICCION));
+        Prestamo p1 = gestorPrestamos.crearPrestamo("L001", "U001");
+        Prestamo p2 = gestorPrestamos.crearPrestamo("L002", "U001");
+        
+        // Ambos préstamos quedan a una renovación del límite de su categoría
+        int maximo = gestorPrestamos.getGestorReglaRenovacion()
+                .obtenerRegla(CategoriaRecurso.FICCION).getMaximoRenovaciones();
+        for (int i = 1; i < maximo; i++) {
+            gestorPrestamos.renovarPrestamo(p1.getId(), 7);
+            gestorPrestamos.renovarPrestamo(p2.getId(), 7);
+        }
+        
+        // La primera renovación del lote renueva por su cuenta el otro préstamo, ya validado
+        AtomicBoolean renovadoPorFuera = new AtomicBoolean(false);
+        gestorPrestamos.agregarEscucha(prestamo -> {
+            if (renovadoPorFuera.compareAndSet(false, true)) {
+                gestorPrestamos.renovarPrestamo((prestamo == p1 ? p2 : p1).getId(), 7);
+            }
+        });
+        
+        GestorPrestamos.ResultadoRenovacionMasiva resultado = gestorPrestamos.renovarPrestamosElegibles(null);
+        
+        assertEquals(1, resultado.getPrestamosRenovados());
+        assertEquals(1, resultado.getPrestamosRechazados());
+        assertEquals(maximo, p1.getCantidadRenovaciones());
+        assertEquals(maximo, p2.getCantidadRenovaciones());
+    }
+    
+    @Test
+    public void testRegistraEventosJfrDePrestamos() throws Exception {
+        Path archivo = Files.createTempFile("prestamos", ".jfr");
+        try (Recording grabacion = new Recording()) {
+            grabacion.enable("sistema.biblioteca.Prestamo").withThreshold(Duration.ZERO);
+            grabacion.start();
+            
+            Prestamo prestamo = gestorPrestamos.crearPrestamo("L001", "U001");
+            gestorPrestamos.renovarPrestamo(prestamo.getId(), 7);
+            gestorPrestamos.devolverPrestamo(prestamo.getId());
+            gestorPrestamos.devolverPrestamo(prestamo.getId()); // Ya devuelto: no tiene efecto
+            
+            grabacion.stop();
+            grabacion.dump(archivo);
+            
+            List<RecordedEvent> eventos = new ArrayList<>();
+            for (RecordedEvent evento : RecordingFile.readAllEvents(archivo)) {
+                if (evento.getEventType().getName().equals("sistema.biblioteca.Prestamo")) {
+                    eventos.add(evento);
+                }
+            }
+            
+            assertEquals(List.of("CREAR", "RENOVAR", "DEVOLVER", "DEVOLVER"),
+                eventos.stream().map(e -> e.getString("operacion")).toList());
+            assertEquals(List.of(true, true, true, false),
+                eventos.stream().map(e -> e.getBoolean("exito")).toList());
+            for (RecordedEvent evento : eventos) {
+                assertEquals(prestamo.getId(), evento.getString("idPrestamo"));
+                assertEquals("L001", evento.getString("idRecurso"));
+                assertEquals("U001", evento.getString("idUsuario"));
+            }
+        } finally {
+            Files.deleteIfExists(archivo);
+        }
+    }
+}
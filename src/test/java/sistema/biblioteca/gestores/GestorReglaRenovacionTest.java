@@ -0,0 +1,68 @@
+package sistema.biblioteca.gestores;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.CategoriaRecurso;
+import sistema.biblioteca.modelos.Libro;
+import sistema.biblioteca.modelos.ReglaRenovacion;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GestorReglaRenovacionTest {
+    
+    private GestorReglaRenovacion gestorReglas;
+    
+    @BeforeEach
+    public void setUp() {
+        gestorReglas = new GestorReglaRenovacion();
+    }
+    
+    @Test
+    public void testConsultasDeLaReglaDeUnaCategoria() {
+        Libro libro = new Libro("L001", "Libro Histórico", "Autor", "123", CategoriaRecurso.HISTORICO);
+        
+        assertTrue(gestorReglas.puedeRenovarse(libro, 0));
+        assertTrue(gestorReglas.requiereAutorizacion(libro));
+        assertEquals(5, gestorReglas.getDiasParaRenovacion(libro));
+        assertEquals(1, gestorReglas.getMaximoRenovacionesPermitidas(libro));
+        assertFalse(gestorReglas.puedeRenovarse(libro, 1));
+        assertFalse(gestorReglas.puedeRenovarse(null, 0));
+    }
+    
+    @Test
+    public void testEvaluarDevuelveTodasLasDecisionesDeLaRegla() {
+        Libro libro = new Libro("L001", "Libro Histórico", "Autor", "123", CategoriaRecurso.HISTORICO);
+        
+        long decision = gestorReglas.evaluar(libro, 0);
+        assertTrue((decision & GestorReglaRenovacion.PUEDE_RENOVARSE) != 0);
+        assertTrue((decision & GestorReglaRenovacion.REQUIERE_AUTORIZACION) != 0);
+        assertEquals(5, GestorReglaRenovacion.diasDe(decision));
+        
+        // Alcanzado el máximo ya no puede renovarse, pero la regla sigue indicando sus días
+        decision = gestorReglas.evaluar(libro, 1);
+        assertEquals(0, decision & GestorReglaRenovacion.PUEDE_RENOVARSE);
+        assertEquals(5, GestorReglaRenovacion.diasDe(decision));
+        
+        decision = gestorReglas.evaluar(null, 0);
+        assertEquals(0, decision & (GestorReglaRenovacion.PUEDE_RENOVARSE | GestorReglaRenovacion.REQUIERE_AUTORIZACION));
+        assertEquals(7, GestorReglaRenovacion.diasDe(decision));
+    }
+    
+    @Test
+    public void testReemplazarReglasAplicaLaNuevaTablaCompleta() {
+        Libro academico = new Libro("L001", "Libro Académico", "Autor", "123", CategoriaRecurso.ACADEMICO);
+        Libro referencia = new Libro("L002", "Libro Referencia", "Autor", "456", CategoriaRecurso.REFERENCIA);
+        
+        gestorReglas.reemplazarReglas(List.of(new ReglaRenovacion(CategoriaRecurso.ACADEMICO, 5, 21, true)));
+        
+        assertEquals(21, gestorReglas.getDiasParaRenovacion(academico));
+        assertTrue(gestorReglas.requiereAutorizacion(academico));
+        // Las categorías que no están en la nueva tabla vuelven a la regla por defecto
+        assertEquals(7, gestorReglas.getDiasParaRenovacion(referencia));
+        assertEquals(2, gestorReglas.getMaximoRenovacionesPermitidas(referencia));
+        assertEquals(CategoriaRecurso.REFERENCIA,
+            gestorReglas.obtenerRegla(CategoriaRecurso.REFERENCIA).getCategoriaRecurso());
+    }
+}
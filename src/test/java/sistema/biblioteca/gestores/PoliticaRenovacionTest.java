@@ -0,0 +1,133 @@
+package sistema.biblioteca.gestores;
+
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.CategoriaRecurso;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoliticaRenovacionTest {
+    
+    private static final String POLITICA =
+        "# Política de fin de período\n" +
+        "si reservas >= 2 entonces RECHAZAR\n" +
+        "si categoria = ACADEMICO, REFERENCIA y prestamosUsuario > 5 entonces AUTORIZAR\n" +
+        "si diasVencido > 0 y diasVencido <= 3 entonces RENOVAR 3\n" +
+        "si categoria = ACADEMICO y renovaciones < 2 entonces RENOVAR 14\n";
+    
+    @Test
+    public void testEvaluarAplicaLaPrimeraReglaQueSeCumple() {
+        PoliticaRenovacion politica = PoliticaRenovacion.compilar(POLITICA, 1);
+        
+        assertEquals(4, politica.getCantidadReglas());
+        
+        int decision = politica.evaluar(CategoriaRecurso.ACADEMICO, 0, 1, 3, 0);
+        assertEquals(PoliticaRenovacion.AccionRenovacion.RECHAZAR, PoliticaRenovacion.accionDe(decision));
+        
+        decision = politica.evaluar(CategoriaRecurso.REFERENCIA, 0, 6, 0, 0);
+        assertEquals(PoliticaRenovacion.AccionRenovacion.AUTORIZAR, PoliticaRenovacion.accionDe(decision));
+        
+        decision = politica.evaluar(CategoriaRecurso.FICCION, 0, 1, 0, 2);
+        assertEquals(PoliticaRenovacion.AccionRenovacion.RENOVAR, PoliticaRenovacion.accionDe(decision));
+        assertEquals(3, PoliticaRenovacion.diasDe(decision));
+        
+        decision = politica.evaluar(CategoriaRecurso.ACADEMICO, 1, 1, 0, 0);
+        assertEquals(14, PoliticaRenovacion.diasDe(decision));
+        
+        assertEquals(PoliticaRenovacion.SIN_DECISION, politica.evaluar(CategoriaRecurso.ACADEMICO, 2, 1, 0, 0));
+        assertEquals(PoliticaRenovacion.SIN_DECISION, politica.evaluar(null, 0, 1, 0, 5));
+        assertNull(PoliticaRenovacion.accionDe(PoliticaRenovacion.SIN_DECISION));
+    }
+    
+    @Test
+    public void testEvaluarPideLasReservasSoloSiLaReglaPuedeCumplirse() {
+        PoliticaRenovacion politica = PoliticaRenovacion.compilar(
+            "si categoria = ACADEMICO y reservas >= 2 entonces RECHAZAR\n" +
+            "si renovaciones = 0 y reservas = 0 entonces RENOVAR 5\n" +
+            "si renovaciones > 5 entonces RECHAZAR\n" +
+            "si reservas >= 1 entonces AUTORIZAR", 1);
+        int sinContar = PoliticaRenovacion.RESERVAS_SIN_CONTAR;
+        
+        // Una regla sin reservas que se cumple antes decide sin pedirlas
+        int decision = politica.evaluar(CategoriaRecurso.FICCION, 6, 0, sinContar, 0);
+        assertEquals(PoliticaRenovacion.AccionRenovacion.RECHAZAR, PoliticaRenovacion.accionDe(decision));
+        
+        // Una regla con reservas que cumple el resto de sus condiciones las pide
+        decision = politica.evaluar(CategoriaRecurso.FICCION, 1, 0, sinContar, 0);
+        assertEquals(PoliticaRenovacion.FALTAN_RESERVAS, decision);
+        assertNull(PoliticaRenovacion.accionDe(decision));
+        decision = politica.evaluar(CategoriaRecurso.FICCION, 1, 0, 1, 0);
+        assertEquals(PoliticaRenovacion.AccionRenovacion.AUTORIZAR, PoliticaRenovacion.accionDe(decision));
+        
+        // Sin reglas con reservas nunca se piden
+        PoliticaRenovacion sinReservas = PoliticaRenovacion.compilar("si renovaciones < 2 entonces RENOVAR", 1);
+        assertEquals(PoliticaRenovacion.AccionRenovacion.RENOVAR,
+            PoliticaRenovacion.accionDe(sinReservas.evaluar(CategoriaRecurso.ACADEMICO, 0, 0, sinContar, 0)));
+        assertEquals(PoliticaRenovacion.SIN_DECISION, sinReservas.evaluar(CategoriaRecurso.ACADEMICO, 3, 0, sinContar, 0));
+    }
+    
+    @Test
+    public void testCompilarInformaLaLineaInvalida() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("siempre entonces RENOVAR\nsi multas > 2 entonces RECHAZAR", 1));
+        
+        assertTrue(exception.getMessage().contains("línea 2"));
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("si categoria = INEXISTENTE entonces RECHAZAR", 1));
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("siempre entonces RECHAZAR 5", 1));
+    }
+    
+    @Test
+    public void testCompilarRechazaRangosVacios() {
+        // Los límites extremos no deben desbordar y dar un rango que siempre se cumple
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("si reservas < " + Integer.MIN_VALUE + " entonces RECHAZAR", 1));
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("si diasVencido > " + Integer.MAX_VALUE + " entonces RECHAZAR", 1));
+        
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("siempre entonces RENOVAR\nsi renovaciones > 3 y renovaciones < 2 entonces RECHAZAR", 1));
+        assertTrue(exception.getMessage().contains("línea 2"));
+        
+        // Las categorías que no tienen ninguna en común tampoco pueden cumplirse a la vez
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("si categoria = ACADEMICO y categoria = FICCION entonces RECHAZAR", 1));
+        
+        // Los días de la acción deben caber en la decisión
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("siempre entonces RENOVAR " + (1 << 23), 1));
+        assertThrows(IllegalArgumentException.class, () ->
+            PoliticaRenovacion.compilar("siempre entonces RENOVAR " + (PoliticaRenovacion.DIAS_MAXIMOS + 1), 1));
+        assertEquals(PoliticaRenovacion.DIAS_MAXIMOS, PoliticaRenovacion.diasDe(
+            PoliticaRenovacion.compilar("siempre entonces RENOVAR " + PoliticaRenovacion.DIAS_MAXIMOS, 1)
+                .evaluar(CategoriaRecurso.ACADEMICO, 0, 0, 0, 0)));
+        
+        // Los límites extremos que sí pueden cumplirse se aceptan
+        PoliticaRenovacion politica = PoliticaRenovacion.compilar(
+            "si reservas <= " + Integer.MIN_VALUE + " entonces RECHAZAR\n" +
+            "si diasVencido >= " + Integer.MAX_VALUE + " entonces RECHAZAR\n" +
+            "si renovaciones >= 2 y renovaciones <= 2 entonces AUTORIZAR\n" +
+            "si categoria = ACADEMICO, FICCION y categoria = FICCION entonces RECHAZAR", 1);
+        assertEquals(PoliticaRenovacion.SIN_DECISION, politica.evaluar(CategoriaRecurso.ACADEMICO, 0, 0, 0, 0));
+        assertEquals(PoliticaRenovacion.AccionRenovacion.AUTORIZAR,
+            PoliticaRenovacion.accionDe(politica.evaluar(CategoriaRecurso.ACADEMICO, 2, 0, 0, 0)));
+        assertEquals(PoliticaRenovacion.AccionRenovacion.RECHAZAR,
+            PoliticaRenovacion.accionDe(politica.evaluar(CategoriaRecurso.FICCION, 0, 0, 0, 0)));
+    }
+    
+    @Test
+    public void testCargarPoliticaIncrementaLaVersion() {
+        GestorReglaRenovacion gestorReglas = new GestorReglaRenovacion();
+        
+        assertEquals(1, gestorReglas.cargarPolitica("siempre entonces RENOVAR"));
+        assertEquals(2, gestorReglas.cargarPolitica(POLITICA));
+        assertThrows(IllegalArgumentException.class, () -> gestorReglas.cargarPolitica("entonces"));
+        
+        // Una política inválida no reemplaza a la vigente
+        assertEquals(2, gestorReglas.getPolitica().getVersion());
+        assertFalse(gestorReglas.getPolitica().getTexto().isEmpty());
+        
+        gestorReglas.quitarPolitica();
+        assertNull(gestorReglas.getPolitica());
+    }
+}
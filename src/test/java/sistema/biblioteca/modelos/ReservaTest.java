@@ -56,8 +56,9 @@ public class ReservaTest {
         // Crear una nueva reserva para probar expiración
         Reserva reserva3 = new Reserva("R003", recurso, usuario);
         
-        // Expirar reserva
-        reserva3.expirar();
+        // Expirar reserva: solo la primera llamada hace la transición
+        assertTrue(reserva3.expirar());
+        assertFalse(reserva3.expirar());
         assertFalse(reserva3.estaPendiente());
         assertFalse(reserva3.estaCompletada());
         assertTrue(reserva3.estaExpirada());
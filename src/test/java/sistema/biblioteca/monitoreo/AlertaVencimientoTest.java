@@ -0,0 +1,104 @@
+package sistema.biblioteca.monitoreo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.CategoriaRecurso;
+import sistema.biblioteca.modelos.Libro;
+import sistema.biblioteca.modelos.Prestamo;
+import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.servicios.ProcesadorNotificaciones;
+import sistema.biblioteca.servicios.ServicioNotificaciones;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertaVencimientoTest {
+    
+    private ProcesadorNotificaciones procesador;
+    private ServicioBloqueado servicio;
+    
+    @BeforeEach
+    void setUp() {
+        procesador = new ProcesadorNotificaciones();
+        servicio = new ServicioBloqueado();
+        // Un solo hilo y lugar para dos notificaciones en cola
+        procesador.agregarServicio("email", servicio, 1, 2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        servicio.liberar.countDown();
+        procesador.detener();
+    }
+    
+    @Test
+    void debeAnularLasAlertasDelLoteQueNoEntranEnLaCola() throws InterruptedException {
+        RegistroAlertasEnviadas registro = new RegistroAlertasEnviadas();
+        AlertaVencimiento alertas = new AlertaVencimiento(procesador, registro);
+        
+        // Ocupar al único trabajador para que la cola no se vacíe durante la prueba
+        procesador.encolarNotificacion(new Usuario("U0", "Ocupado", "u0@ejemplo.com"), "Bloqueo", "email", 1);
+        assertTrue(servicio.enviando.await(5, TimeUnit.SECONDS));
+        
+        List<Prestamo> prestamos = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Usuario usuario = new Usuario("U" + i, "Usuario " + i, "u" + i + "@ejemplo.com");
+            Prestamo prestamo = new Prestamo("P" + i,
+                    new Libro("L" + i, "Libro " + i, "Autor", "ISBN-" + i, CategoriaRecurso.FICCION), usuario);
+            prestamo.setFechaDevolucionEstimada(LocalDateTime.now().plusDays(1));
+            prestamos.add(prestamo);
+        }
+        
+        Map<NivelAlerta, Integer> alertados = alertas.verificarLote(prestamos);
+        
+        assertEquals(Map.of(NivelAlerta.MEDIA, 2), alertados);
+        LocalDate hoy = LocalDate.now();
+        assertTrue(registro.fueEnviada(TipoAlerta.ALERTA_VENCIMIENTO, "P1", NivelAlerta.MEDIA, hoy));
+        assertTrue(registro.fueEnviada(TipoAlerta.ALERTA_VENCIMIENTO, "P2", NivelAlerta.MEDIA, hoy));
+        for (int i = 3; i <= 5; i++) {
+            assertFalse(registro.fueEnviada(TipoAlerta.ALERTA_VENCIMIENTO, "P" + i, NivelAlerta.MEDIA, hoy), "P" + i + " no entró en la cola");
+        }
+        assertEquals(2, registro.getCantidadRegistradas());
+    }
+    
+    /**
+     * Servicio cuyo primer envío queda bloqueado hasta que se lo libera
+     */
+    private static class ServicioBloqueado implements ServicioNotificaciones {
+        private final CountDownLatch enviando = new CountDownLatch(1);
+        private final CountDownLatch liberar = new CountDownLatch(1);
+        
+        @Override
+        public boolean enviarNotificacion(Usuario usuario, String mensaje) {
+            enviando.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+        
+        @Override
+        public int enviarNotificacionGlobal(String mensaje) {
+            return 0;
+        }
+        
+        @Override
+        public boolean notificacionesPendientes(Usuario usuario) {
+            return false;
+        }
+        
+        @Override
+        public void procesarNotificacionesPendientes() {
+        }
+    }
+}
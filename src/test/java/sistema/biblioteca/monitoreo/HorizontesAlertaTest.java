@@ -0,0 +1,45 @@
+package sistema.biblioteca.monitoreo;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HorizontesAlertaTest {
+    
+    @Test
+    void debeAsignarElNivelDeCadaHorizonte() {
+        // Arrange
+        HorizontesAlerta horizontes = new HorizontesAlerta(Map.of(
+                7, NivelAlerta.BAJA,
+                3, NivelAlerta.MEDIA,
+                1, NivelAlerta.ALTA));
+        
+        // Assert
+        assertEquals(NivelAlerta.BAJA, horizontes.nivelPara(7));
+        assertEquals(NivelAlerta.MEDIA, horizontes.nivelPara(3));
+        assertEquals(NivelAlerta.ALTA, horizontes.nivelPara(1));
+        assertNull(horizontes.nivelPara(2));
+        assertNull(horizontes.nivelPara(8));
+        assertNull(horizontes.nivelPara(-1));
+        assertEquals(7, horizontes.getDiasMaximos());
+        assertEquals(7, horizontes.getHorizontes().firstKey());
+    }
+    
+    @Test
+    void debeEncontrarElProximoDiaDeAlerta() {
+        // Arrange
+        HorizontesAlerta horizontes = new HorizontesAlerta(Map.of(3, NivelAlerta.BAJA, 1, NivelAlerta.MEDIA));
+        LocalDate vencimiento = LocalDate.of(2024, 5, 20);
+        
+        // Assert
+        assertEquals(LocalDate.of(2024, 5, 17), horizontes.proximoDiaAlerta(vencimiento, LocalDate.of(2024, 5, 1)));
+        assertEquals(LocalDate.of(2024, 5, 19), horizontes.proximoDiaAlerta(vencimiento, LocalDate.of(2024, 5, 18)));
+        assertNull(horizontes.proximoDiaAlerta(vencimiento, LocalDate.of(2024, 5, 20)));
+        
+        assertThrows(IllegalArgumentException.class, () -> HorizontesAlerta.unico(-1, NivelAlerta.BAJA));
+        assertThrows(IllegalArgumentException.class, () -> new HorizontesAlerta(Map.of()));
+    }
+}
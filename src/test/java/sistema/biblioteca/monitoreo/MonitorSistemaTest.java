@@ -11,11 +11,17 @@ import sistema.biblioteca.modelos.CategoriaRecurso;
 import sistema.biblioteca.modelos.Libro;
 import sistema.biblioteca.modelos.Prestamo;
 import sistema.biblioteca.modelos.RecursoBase;
+import sistema.biblioteca.modelos.Reserva;
 import sistema.biblioteca.modelos.Usuario;
 import sistema.biblioteca.servicios.ProcesadorNotificaciones;
 import sistema.biblioteca.servicios.ServicioNotificaciones;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -90,6 +96,121 @@ class MonitorSistemaTest {
         assertTrue(true, "El monitor debería detenerse sin excepciones");
     }
     
+    @Test
+    void debeActualizarLaAgendaConLosCambiosDePrestamos() throws Exception {
+        monitorSistema.iniciar(1);
+        
+        // El préstamo de prueba tiene programados su recordatorio y su vencimiento
+        assertEquals(2, monitorSistema.getCantidadEventosProgramados());
+        
+        RecursoBase libro = new Libro("L2", "Otro Libro", "Autor Test", "ISBN-TEST-2", CategoriaRecurso.ACADEMICO);
+        gestorRecursos.agregarRecurso(libro);
+        Prestamo nuevo = gestorPrestamos.crearPrestamo("L2", "U1");
+        assertEquals(4, monitorSistema.getCantidadEventosProgramados(),
+                "El préstamo nuevo debería agregarse a la agenda sin esperar una verificación");
+        
+        gestorPrestamos.devolverPrestamo(nuevo.getId());
+        assertEquals(2, monitorSistema.getCantidadEventosProgramados(),
+                "El préstamo devuelto debería quitarse de la agenda");
+        
+        monitorSistema.detener();
+        assertEquals(0, monitorSistema.getCantidadEventosProgramados());
+    }
+    
+    @Test
+    void debeAlertarSegunLosHorizontesConfigurados() {
+        Prestamo prestamo = gestorPrestamos.listarPrestamosActivos().get(0);
+        LocalDate hoy = LocalDate.now();
+        int diasRestantes = (int) ChronoUnit.DAYS.between(hoy, prestamo.getFechaDevolucionEstimada().toLocalDate());
+        
+        monitorSistema.configurarHorizontesAlerta(new HorizontesAlerta(Map.of(
+                diasRestantes, NivelAlerta.BAJA,
+                diasRestantes + 1, NivelAlerta.MEDIA)));
+        monitorSistema.ejecutarVerificacionManual();
+        
+        RegistroAlertasEnviadas registro = monitorSistema.getRegistroAlertas();
+        assertTrue(registro.fueEnviada(TipoAlerta.RECORDATORIO, prestamo.getId(), NivelAlerta.BAJA, hoy));
+        assertFalse(registro.fueEnviada(TipoAlerta.RECORDATORIO, prestamo.getId(), NivelAlerta.MEDIA, hoy));
+        
+        // Con un único horizonte que no coincide no se envía nada nuevo
+        monitorSistema.cambiarDiasAlertaPrevia(diasRestantes + 1);
+        assertEquals(NivelAlerta.MEDIA, monitorSistema.getHorizontesAlerta().nivelPara(diasRestantes + 1));
+        monitorSistema.ejecutarVerificacionManual();
+        assertFalse(registro.fueEnviada(TipoAlerta.RECORDATORIO, prestamo.getId(), NivelAlerta.MEDIA, hoy));
+    }
+    
+    @Test
+    void elRecordatorioDelDiaNoDebeSuprimirElAvisoDeVencido() {
+        Prestamo prestamo = gestorPrestamos.listarPrestamosActivos().get(0);
+        LocalDate hoy = LocalDate.now();
+        monitorSistema.configurarHorizontesAlerta(HorizontesAlerta.unico(0, NivelAlerta.ALTA));
+        
+        // A la mañana vence hoy: se envía el recordatorio del horizonte de 0 días
+        prestamo.setFechaDevolucionEstimada(hoy.atTime(23, 59, 59));
+        monitorSistema.ejecutarVerificacionManual();
+        RegistroAlertasEnviadas registro = monitorSistema.getRegistroAlertas();
+        assertTrue(registro.fueEnviada(TipoAlerta.RECORDATORIO, prestamo.getId(), NivelAlerta.ALTA, hoy));
+        
+        // Más tarde el mismo día ya está vencido y el aviso no debe confundirse con el recordatorio
+        prestamo.setFechaDevolucionEstimada(hoy.atStartOfDay());
+        monitorSistema.ejecutarVerificacionManual();
+        assertTrue(registro.fueEnviada(TipoAlerta.VENCIDO, prestamo.getId(), NivelAlerta.ALTA, hoy));
+    }
+    
+    @Test
+    void laClasificacionEnParaleloCoincideConLaSecuencial() {
+        int cantidad = MonitorSistema.UMBRAL_VERIFICACION_PARALELA + 1000;
+        LocalDateTime ahora = LocalDateTime.now().plusDays(5);
+        Usuario usuario = new Usuario("U100", "Usuario Carga", "carga@ejemplo.com");
+        List<Prestamo> prestamos = new ArrayList<>();
+        List<Reserva> reservas = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            Libro libro = new Libro("LC" + i, "Libro " + i, "Autor", "ISBN-C" + i, CategoriaRecurso.FICCION);
+            
+            // Vencidos, dentro y fuera del horizonte de alerta, y algunos ya devueltos
+            Prestamo prestamo = new Prestamo("PC" + i, libro, usuario);
+            prestamo.setFechaDevolucionEstimada(ahora.plusDays(i % 7 - 3).plusHours(i % 5));
+            if (i % 11 == 0) {
+                prestamo.registrarDevolucion();
+            }
+            prestamos.add(prestamo);
+            
+            // Reservas que a la fecha de referencia expiraron o siguen vigentes, y algunas canceladas
+            Reserva reserva = new Reserva("RC" + i, libro, usuario, i % 10 + 1);
+            if (i % 13 == 0) {
+                reserva.cancelar();
+            }
+            reservas.add(reserva);
+        }
+        HorizontesAlerta horizontes = HorizontesAlerta.unico(2, NivelAlerta.MEDIA);
+        
+        MonitorSistema.LoteAlertas secuencial = MonitorSistema.clasificar(
+                prestamos, reservas, ahora, horizontes, Integer.MAX_VALUE);
+        MonitorSistema.LoteAlertas paralelo = MonitorSistema.clasificar(
+                prestamos, reservas, ahora, horizontes, MonitorSistema.UMBRAL_VERIFICACION_PARALELA);
+        
+        assertFalse(secuencial.prestamosVencidos.isEmpty());
+        assertFalse(secuencial.proximosVencimientos.isEmpty());
+        assertFalse(secuencial.reservasExpiradas.isEmpty());
+        assertEquals(secuencial.prestamosVencidos, paralelo.prestamosVencidos);
+        assertEquals(secuencial.proximosVencimientos, paralelo.proximosVencimientos);
+        assertEquals(secuencial.reservasExpiradas, paralelo.reservasExpiradas);
+    }
+    
+    @Test
+    void noDebeRegistrarLaAlertaSiNoSePudoEncolar() {
+        Prestamo prestamo = gestorPrestamos.listarPrestamosActivos().get(0);
+        LocalDate hoy = LocalDate.now();
+        int diasRestantes = (int) ChronoUnit.DAYS.between(hoy, prestamo.getFechaDevolucionEstimada().toLocalDate());
+        monitorSistema.cambiarDiasAlertaPrevia(diasRestantes);
+        
+        // Con el procesador detenido el encolado falla y la alerta debe quedar pendiente
+        procesadorNotificaciones.detener();
+        monitorSistema.ejecutarVerificacionManual();
+        
+        assertFalse(monitorSistema.getRegistroAlertas().fueEnviada(TipoAlerta.RECORDATORIO, prestamo.getId(), NivelAlerta.MEDIA, hoy));
+    }
+    
     @Test
     void debeEjecutarVerificacionManual() {
         // Configuración inicial
@@ -116,6 +237,29 @@ class MonitorSistemaTest {
         });
     }
     
+    @Test
+    void debeCambiarElIntervaloSinDetenerLaAgenda() {
+        monitorSistema.iniciar(1);
+        assertEquals(2, monitorSistema.getCantidadEventosProgramados());
+        
+        monitorSistema.cambiarIntervaloVerificacion(8);
+        assertEquals(480, monitorSistema.getIntervaloRevisionSegundos());
+        assertEquals(2, monitorSistema.getCantidadEventosProgramados(),
+                "Cambiar el intervalo no debería reconstruir la agenda");
+    }
+    
+    @Test
+    void debeAdaptarElIntervaloALaActividad() {
+        // Con actividad se acorta hasta base/4 y sin actividad se alarga hasta base*4
+        assertEquals(1800, MonitorSistema.siguienteIntervalo(3600, 3600, true));
+        assertEquals(900, MonitorSistema.siguienteIntervalo(900, 3600, true));
+        assertEquals(7200, MonitorSistema.siguienteIntervalo(3600, 3600, false));
+        assertEquals(14400, MonitorSistema.siguienteIntervalo(14400, 3600, false));
+        
+        // El intervalo nunca baja del mínimo absoluto
+        assertEquals(15, MonitorSistema.siguienteIntervalo(20, 60, true));
+    }
+    
     /**
      * Crea datos de prueba para los tests
      */
@@ -0,0 +1,62 @@
+package sistema.biblioteca.monitoreo;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistroAlertasEnviadasTest {
+    
+    private final LocalDate hoy = LocalDate.of(2024, 3, 10);
+    
+    @Test
+    void debeRegistrarCadaAlertaUnaSolaVezPorDia() {
+        RegistroAlertasEnviadas registro = new RegistroAlertasEnviadas(2);
+        
+        assertTrue(registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+        assertFalse(registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy), "La misma alerta no se repite el mismo día");
+        assertTrue(registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.MEDIA, hoy), "Otro nivel es otra alerta");
+        assertTrue(registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy.plusDays(1)), "Al día siguiente se vuelve a enviar");
+        assertTrue(registro.fueEnviada(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+    }
+    
+    @Test
+    void debeSepararLasAlertasDeCadaTipo() {
+        // Un registro compartido entre el monitor y AlertaVencimiento
+        RegistroAlertasEnviadas registro = new RegistroAlertasEnviadas();
+        
+        assertTrue(registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+        assertTrue(registro.registrarSiEsNueva(TipoAlerta.ALERTA_VENCIMIENTO, "P1", NivelAlerta.ALTA, hoy),
+                "La alerta de otro tipo no debe suprimirse");
+        
+        registro.anular(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy);
+        assertFalse(registro.fueEnviada(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+        assertTrue(registro.fueEnviada(TipoAlerta.ALERTA_VENCIMIENTO, "P1", NivelAlerta.ALTA, hoy));
+    }
+    
+    @Test
+    void debeDescartarLosDiasFueraDelPeriodoDeRetencion() {
+        RegistroAlertasEnviadas registro = new RegistroAlertasEnviadas(2);
+        registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy);
+        registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P2", NivelAlerta.ALTA, hoy.plusDays(1));
+        assertEquals(2, registro.getCantidadRegistradas());
+        
+        // Registrar dos días después deja fuera de la retención al primer día
+        registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P3", NivelAlerta.ALTA, hoy.plusDays(2));
+        assertFalse(registro.fueEnviada(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+        assertTrue(registro.fueEnviada(TipoAlerta.VENCIDO, "P2", NivelAlerta.ALTA, hoy.plusDays(1)));
+        assertEquals(2, registro.getCantidadRegistradas());
+    }
+    
+    @Test
+    void debePermitirReintentarUnaAlertaAnulada() {
+        RegistroAlertasEnviadas registro = new RegistroAlertasEnviadas();
+        registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy);
+        
+        registro.anular(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy);
+        
+        assertFalse(registro.fueEnviada(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+        assertTrue(registro.registrarSiEsNueva(TipoAlerta.VENCIDO, "P1", NivelAlerta.ALTA, hoy));
+    }
+}
@@ -0,0 +1,112 @@
+package sistema.biblioteca.monitoreo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.gestores.GestorPrestamos;
+import sistema.biblioteca.gestores.GestorRecursos;
+import sistema.biblioteca.gestores.GestorUsuarios;
+import sistema.biblioteca.modelos.CategoriaRecurso;
+import sistema.biblioteca.modelos.Libro;
+import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.servicios.HistogramaLatencia;
+import sistema.biblioteca.servicios.ProcesadorNotificaciones;
+import sistema.biblioteca.servicios.ServicioNotificaciones;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServidorMetricasTest {
+    
+    private ServidorMetricas servidor;
+    private ProcesadorNotificaciones procesador;
+    
+    @BeforeEach
+    void setUp() {
+        servidor = new ServidorMetricas();
+        procesador = new ProcesadorNotificaciones();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        servidor.detener();
+        procesador.detener();
+    }
+    
+    @Test
+    void debePublicarLasMetricasEnFormatoPrometheus() throws Exception {
+        // Arrange
+        ServicioSilencioso servicio = new ServicioSilencioso();
+        procesador.agregarServicio("email", servicio);
+        GestorRecursos gestorRecursos = new GestorRecursos();
+        GestorUsuarios gestorUsuarios = new GestorUsuarios();
+        GestorPrestamos gestorPrestamos = new GestorPrestamos(gestorRecursos, gestorUsuarios, servicio);
+        gestorUsuarios.registrarUsuario(new Usuario("U1", "Usuario Test", "test@ejemplo.com", "555-1234"));
+        gestorRecursos.agregarRecurso(new Libro("L1", "Libro Test", "Autor Test", "ISBN-TEST", CategoriaRecurso.ACADEMICO));
+        gestorPrestamos.crearPrestamo("L1", "U1");
+        
+        servidor.registrarGestorPrestamos(gestorPrestamos);
+        servidor.registrarProcesadorNotificaciones(procesador);
+        servidor.registrar("prueba_valor", "gauge", "Valor fijo", () -> 7);
+        HistogramaLatencia latencia = new HistogramaLatencia();
+        latencia.registrar(1_000_000_000L);
+        latencia.registrar(2_000_000_000L);
+        servidor.registrarResumen("prueba_latencia_segundos", "Latencia fija",
+                () -> Map.of(ServidorMetricas.etiqueta("canal", "email"), latencia));
+        servidor.iniciar(0);
+        
+        // Act
+        HttpResponse<String> respuesta = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + servidor.getPuerto() + ServidorMetricas.RUTA)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        
+        // Assert
+        assertEquals(200, respuesta.statusCode());
+        assertTrue(respuesta.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        String cuerpo = respuesta.body();
+        assertTrue(cuerpo.contains("# TYPE biblioteca_prestamos_activos gauge\nbiblioteca_prestamos_activos 1\n"));
+        assertTrue(cuerpo.contains("biblioteca_notificaciones_pendientes{canal=\"email\"} 0\n"));
+        assertTrue(cuerpo.contains("prueba_valor 7\n"));
+        assertTrue(cuerpo.contains("# TYPE prueba_latencia_segundos summary\n"));
+        assertTrue(cuerpo.contains("prueba_latencia_segundos{canal=\"email\",quantile=\"0.5\"} "));
+        assertTrue(cuerpo.contains("prueba_latencia_segundos_sum{canal=\"email\"} 3.0\n"));
+        assertTrue(cuerpo.contains("prueba_latencia_segundos_count{canal=\"email\"} 2\n"));
+        assertTrue(servidor.getDireccion().isLoopbackAddress());
+    }
+    
+    @Test
+    void debeEscaparLasEtiquetasYRechazarNombresInvalidos() {
+        assertEquals("canal=\"a\\\"b\"", ServidorMetricas.etiqueta("canal", "a\"b"));
+        assertThrows(IllegalArgumentException.class,
+                () -> servidor.registrar("nombre inválido", "gauge", "x", () -> 0));
+    }
+    
+    /**
+     * Servicio de notificaciones que descarta los mensajes
+     */
+    private static class ServicioSilencioso implements ServicioNotificaciones {
+        @Override
+        public boolean enviarNotificacion(Usuario usuario, String mensaje) {
+            return true;
+        }
+        
+        @Override
+        public int enviarNotificacionGlobal(String mensaje) {
+            return 0;
+        }
+        
+        @Override
+        public boolean notificacionesPendientes(Usuario usuario) {
+            return false;
+        }
+        
+        @Override
+        public void procesarNotificacionesPendientes() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package sistema.biblioteca.reportes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.gestores.GestorPrestamos;
+import sistema.biblioteca.gestores.GestorRecursos;
+import sistema.biblioteca.gestores.GestorUsuarios;
+import sistema.biblioteca.modelos.CategoriaRecurso;
+import sistema.biblioteca.modelos.Libro;
+import sistema.biblioteca.modelos.Prestamo;
+import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.servicios.ServicioNotificacionesEmail;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EstadisticasPrestamosTest {
+    
+    private GestorPrestamos gestorPrestamos;
+    private GestorRecursos gestorRecursos;
+    
+    @BeforeEach
+    void setUp() {
+        gestorRecursos = new GestorRecursos();
+        GestorUsuarios gestorUsuarios = new GestorUsuarios();
+        gestorPrestamos = new GestorPrestamos(gestorRecursos, gestorUsuarios, new ServicioNotificacionesEmail());
+        
+        gestorUsuarios.registrarUsuario(new Usuario("U001", "Usuario Test", "test@ejemplo.com"));
+        for (int i = 1; i <= 3; i++) {
+            gestorRecursos.agregarRecurso(new Libro("L00" + i, "Libro " + i, "Autor", "ISBN-" + i, CategoriaRecurso.FICCION));
+        }
+    }
+    
+    @Test
+    void debeCargarElHistorialYSeguirLosCambios() throws Exception {
+        // Historial previo: un préstamo devuelto y uno atrasado
+        Prestamo devuelto = gestorPrestamos.crearPrestamo("L001", "U001");
+        gestorPrestamos.devolverPrestamo(devuelto.getId());
+        Prestamo atrasado = gestorPrestamos.crearPrestamo("L002", "U001");
+        atrasado.setFechaDevolucionEstimada(LocalDateTime.now().minusDays(2));
+        
+        EstadisticasPrestamos estadisticas = EstadisticasPrestamos.suscribir(gestorPrestamos);
+        LocalDateTime ahora = LocalDateTime.now();
+        assertEquals(2, estadisticas.getTotalPrestamos());
+        assertEquals(1, estadisticas.getPrestamosActivos());
+        assertEquals(1, estadisticas.getPrestamosDevueltos());
+        assertEquals(1, estadisticas.getPrestamosAtrasados(ahora));
+        
+        // Los cambios posteriores llegan por los avisos del gestor
+        Prestamo nuevo = gestorPrestamos.crearPrestamo("L003", "U001");
+        assertEquals(3, estadisticas.getTotalPrestamos());
+        assertEquals(2, estadisticas.getPrestamosActivos());
+        assertEquals(1, estadisticas.getPrestamosAtrasados(ahora));
+        assertEquals(2, estadisticas.getPrestamosAtrasados(nuevo.getFechaDevolucionEstimada().plusSeconds(1)));
+        
+        // Renovar saca al préstamo atrasado de los atrasados
+        gestorPrestamos.renovarPrestamo(atrasado.getId(), 30);
+        assertEquals(1, estadisticas.getPrestamosAtrasados(nuevo.getFechaDevolucionEstimada().plusSeconds(1)));
+        
+        gestorPrestamos.devolverPrestamo(nuevo.getId());
+        gestorPrestamos.devolverPrestamo(nuevo.getId()); // Repetida: no cambia nada
+        assertEquals(3, estadisticas.getTotalPrestamos());
+        assertEquals(1, estadisticas.getPrestamosActivos());
+        assertEquals(2, estadisticas.getPrestamosDevueltos());
+        assertEquals(0, estadisticas.getPrestamosAtrasados(ahora));
+        assertEquals(0.0, estadisticas.getPromedioDiasPrestamo());
+        
+        YearMonth mes = YearMonth.now();
+        assertEquals(Map.of(mes, 3), estadisticas.getPrestamosPorMes(mes.minusMonths(6), mes));
+    }
+    
+    @Test
+    void debeGenerarLasEstadisticasDelReporteSinRecorrerElHistorial() throws Exception {
+        EstadisticasPrestamos estadisticasPrestamos = EstadisticasPrestamos.suscribir(gestorPrestamos);
+        GeneradorReportes generador = new GeneradorReportes(gestorPrestamos, gestorRecursos, new GestorUsuarios(),
+                estadisticasPrestamos);
+        Prestamo prestamo = gestorPrestamos.crearPrestamo("L001", "U001");
+        gestorPrestamos.crearPrestamo("L002", "U001");
+        gestorPrestamos.devolverPrestamo(prestamo.getId());
+        
+        Map<String, Object> estadisticas = generador.generarEstadisticasPrestamos();
+        assertEquals(2, estadisticas.get("totalPrestamos"));
+        assertEquals(1, estadisticas.get("prestamosActivos"));
+        assertEquals(1, estadisticas.get("prestamosDevueltos"));
+        assertEquals(0, estadisticas.get("prestamosAtrasados"));
+        
+        YearMonth mes = YearMonth.now();
+        assertEquals(Map.of(mes.getMonth() + " " + mes.getYear(), 2),
+                generador.generarEstadisticasRendimiento().get("prestamosPorMes"));
+    }
+}
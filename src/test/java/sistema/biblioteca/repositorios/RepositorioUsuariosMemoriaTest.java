@@ -0,0 +1,75 @@
+package sistema.biblioteca.repositorios;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositorioUsuariosMemoriaTest {
+    
+    private RepositorioUsuariosMemoria repositorio;
+    
+    @BeforeEach
+    void setUp() {
+        repositorio = new RepositorioUsuariosMemoria();
+        for (int i = 1; i <= 25; i++) {
+            String id = String.format("U%03d", i);
+            repositorio.guardar(new Usuario(id, "Usuario " + i, id + "@ejemplo.com"));
+        }
+    }
+    
+    @Test
+    void debeRecorrerTodasLasPaginasConElCursor() {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        
+        do {
+            PaginaUsuarios pagina = repositorio.obtenerPagina(cursor, 10);
+            pagina.getUsuarios().forEach(usuario -> ids.add(usuario.getId()));
+            cursor = pagina.getSiguienteCursor();
+            paginas++;
+        } while (cursor != null);
+        
+        assertEquals(3, paginas);
+        assertEquals(25, ids.size());
+        assertEquals("U001", ids.get(0));
+        assertEquals("U025", ids.get(24));
+    }
+    
+    @Test
+    void debeContinuarLaPaginacionTrasModificaciones() {
+        PaginaUsuarios primera = repositorio.obtenerPagina(null, 10);
+        
+        // Un usuario eliminado y otro agregado mientras se pagina
+        repositorio.eliminar("U011");
+        repositorio.guardar(new Usuario("U030", "Nuevo", "nuevo@ejemplo.com"));
+        
+        PaginaUsuarios segunda = repositorio.obtenerPagina(primera.getSiguienteCursor(), 10);
+        assertEquals("U012", segunda.getUsuarios().get(0).getId());
+        assertEquals(25, repositorio.contar());
+    }
+    
+    @Test
+    void debeOfrecerUnStreamDeUsuarios() {
+        try (Stream<Usuario> usuarios = repositorio.stream()) {
+            List<String> pares = usuarios
+                    .filter(usuario -> Integer.parseInt(usuario.getId().substring(1)) % 2 == 0)
+                    .map(Usuario::getId)
+                    .collect(Collectors.toList());
+            assertEquals(12, pares.size());
+        }
+        assertEquals(25, repositorio.obtenerTodos().size());
+    }
+    
+    @Test
+    void debeRechazarTamanoDePaginaInvalido() {
+        assertThrows(IllegalArgumentException.class, () -> repositorio.obtenerPagina(null, 0));
+    }
+}
@@ -0,0 +1,119 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.Usuario;
+import sistema.biblioteca.repositorios.RepositorioUsuariosMemoria;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptadorNotificacionesTest {
+    
+    private static final int CANTIDAD_USUARIOS = 2500;
+    
+    private ProcesadorNotificaciones procesador;
+    private ServicioContador servicio;
+    private AdaptadorNotificaciones adaptador;
+    
+    @BeforeEach
+    void setUp() {
+        procesador = new ProcesadorNotificaciones();
+        servicio = new ServicioContador();
+        procesador.agregarServicio("test", servicio);
+        
+        RepositorioUsuariosMemoria repositorio = new RepositorioUsuariosMemoria();
+        for (int i = 0; i < CANTIDAD_USUARIOS; i++) {
+            String id = String.format("U%05d", i);
+            repositorio.guardar(new Usuario(id, "Usuario " + i, id + "@ejemplo.com"));
+        }
+        adaptador = new AdaptadorNotificaciones(procesador, "test", repositorio, 2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        procesador.detener();
+    }
+    
+    @Test
+    void debeEncolarElEnvioGlobalPorBloquesInformandoElAvance() throws InterruptedException {
+        List<Integer> avances = new CopyOnWriteArrayList<>();
+        
+        int encoladas = adaptador.enviarNotificacionGlobal("Aviso general {0}", avances::add);
+        
+        // Tres bloques (1000, 1000 y 500), cada uno informa el acumulado al terminar
+        assertEquals(CANTIDAD_USUARIOS, encoladas);
+        assertEquals(3, avances.size());
+        assertEquals(CANTIDAD_USUARIOS, avances.stream().mapToInt(Integer::intValue).max().getAsInt());
+        assertTrue(avances.stream().allMatch(avance -> avance % 500 == 0));
+        
+        long limite = System.currentTimeMillis() + 5000;
+        while (servicio.getEnviados() < CANTIDAD_USUARIOS && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(CANTIDAD_USUARIOS, servicio.getEnviados());
+        assertEquals(List.of("Aviso general {0}"), servicio.getMensajes(), "El texto se entrega sin interpretar");
+        
+        // El envío global no deja estado por usuario en el adaptador
+        assertFalse(adaptador.notificacionesPendientes(new Usuario("U00000", "Usuario 0", "U00000@ejemplo.com")));
+    }
+    
+    @Test
+    void debeInformarLaInterrupcionDelEnvioGlobal() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedException.class, () -> adaptador.enviarNotificacionGlobal("Aviso", avance -> { }));
+        } finally {
+            Thread.interrupted();
+        }
+        
+        // La variante de la interfaz no puede lanzarla: conserva la marca de interrupción
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(0, adaptador.enviarNotificacionGlobal("Aviso"));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+    
+    private static class ServicioContador implements ServicioNotificaciones {
+        private final AtomicInteger enviados = new AtomicInteger(0);
+        private final Set<String> mensajes = ConcurrentHashMap.newKeySet();
+        
+        @Override
+        public boolean enviarNotificacion(Usuario usuario, String mensaje) {
+            mensajes.add(mensaje);
+            enviados.incrementAndGet();
+            return true;
+        }
+        
+        @Override
+        public int enviarNotificacionGlobal(String mensaje) {
+            return 0;
+        }
+        
+        @Override
+        public boolean notificacionesPendientes(Usuario usuario) {
+            return false;
+        }
+        
+        @Override
+        public void procesarNotificacionesPendientes() {
+        }
+        
+        int getEnviados() {
+            return enviados.get();
+        }
+        
+        List<String> getMensajes() {
+            return List.copyOf(mensajes);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sistema.biblioteca.modelos.Usuario;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BandejaSalidaPersistenteTest {
+    
+    @TempDir
+    Path directorio;
+    
+    private Usuario usuario;
+    
+    @BeforeEach
+    void setUp() {
+        usuario = new Usuario("U001", "Usuario de Prueba", "test@ejemplo.com", null);
+    }
+    
+    @Test
+    void debeRecuperarLasNotificacionesSinConfirmarAlReabrir() throws IOException {
+        // Arrange
+        long id1;
+        long id2;
+        try (BandejaSalidaPersistente bandeja = new BandejaSalidaPersistente(directorio)) {
+            id1 = bandeja.registrar(new NotificacionPendiente(usuario, "Primera", "email", 1, 0));
+            id2 = bandeja.registrar(new NotificacionPendiente(usuario, "Segunda ñandú", "sms", 3, 1));
+            bandeja.registrar(new NotificacionPendiente(usuario, "Tercera", "email", 5, 2));
+            
+            // Act
+            bandeja.confirmar(id1);
+        }
+        
+        // Assert
+        try (BandejaSalidaPersistente reabierta = new BandejaSalidaPersistente(directorio)) {
+            List<BandejaSalidaPersistente.RegistroBandeja> pendientes = reabierta.recuperarPendientes();
+            assertEquals(2, pendientes.size());
+            assertEquals(id1, reabierta.getConfirmadoHasta());
+            
+            BandejaSalidaPersistente.RegistroBandeja registro = pendientes.get(0);
+            assertEquals(id2, registro.getId());
+            assertEquals("Segunda ñandú", registro.getMensaje());
+            assertEquals("sms", registro.getTipo());
+            assertEquals(3, registro.getPrioridad());
+            assertEquals("U001", registro.getUsuario().getId());
+            assertEquals("test@ejemplo.com", registro.getUsuario().getEmail());
+            assertNull(registro.getUsuario().getTelefono());
+            
+            // Los ids nuevos continúan después de los ya registrados
+            long nuevo = reabierta.registrar(new NotificacionPendiente(usuario, "Cuarta", "email", 5, 3));
+            assertEquals(id2 + 2, nuevo);
+        }
+    }
+    
+    @Test
+    void debeEliminarLosSegmentosCompletamenteConfirmados() throws IOException {
+        // Arrange - segmentos pequeños para que se creen varios
+        try (BandejaSalidaPersistente bandeja = new BandejaSalidaPersistente(directorio, 256)) {
+            long[] ids = new long[20];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = bandeja.registrar(new NotificacionPendiente(usuario, "Mensaje " + i, "email", 5, i));
+            }
+            int segmentosIniciales = bandeja.getCantidadSegmentos();
+            assertTrue(segmentosIniciales > 1, "Los registros deberían repartirse en varios segmentos");
+            
+            // Act - confirmar en desorden
+            for (int i = ids.length - 1; i >= 0; i--) {
+                bandeja.confirmar(ids[i]);
+            }
+            
+            // Assert - solo queda el segmento activo
+            assertEquals(0, bandeja.getCantidadPendientes());
+            assertEquals(ids[ids.length - 1], bandeja.getConfirmadoHasta());
+            assertEquals(1, bandeja.getCantidadSegmentos());
+            assertTrue(bandeja.recuperarPendientes().isEmpty());
+        }
+    }
+    
+    @Test
+    void debeRechazarNotificacionesMasGrandesQueUnSegmento() throws IOException {
+        try (BandejaSalidaPersistente bandeja = new BandejaSalidaPersistente(directorio, 64)) {
+            NotificacionPendiente grande = new NotificacionPendiente(usuario, "x".repeat(100), "email", 5, 0);
+            assertThrows(IllegalArgumentException.class, () -> bandeja.registrar(grande));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColasPendientesPorUsuarioTest {
+    
+    @Test
+    void debeAplicarLaPoliticaDeDesborde() {
+        ColasPendientesPorUsuario descartarNuevo = new ColasPendientesPorUsuario(
+                2, ColasPendientesPorUsuario.PoliticaDesborde.DESCARTAR_NUEVO);
+        ColasPendientesPorUsuario descartarAntiguo = new ColasPendientesPorUsuario(
+                2, ColasPendientesPorUsuario.PoliticaDesborde.DESCARTAR_ANTIGUO);
+        
+        for (String mensaje : new String[] {"m1", "m2", "m3"}) {
+            descartarNuevo.agregar("U001", mensaje);
+            descartarAntiguo.agregar("U001", mensaje);
+        }
+        
+        assertEquals(List.of("m1", "m2"), drenarTodo(descartarNuevo));
+        assertEquals(List.of("m2", "m3"), drenarTodo(descartarAntiguo));
+        assertEquals(1, descartarNuevo.getMensajesDescartados());
+        assertEquals(1, descartarAntiguo.getMensajesDescartados());
+        assertEquals(0, descartarNuevo.getCantidadUsuarios(), "Las colas vacías deberían eliminarse");
+    }
+    
+    @Test
+    void elDescarteEnLaColaDelUsuarioNoCuentaComoFallaDelCanal() throws InterruptedException {
+        ColasPendientesPorUsuario colas = new ColasPendientesPorUsuario(
+                1, ColasPendientesPorUsuario.PoliticaDesborde.DESCARTAR_NUEVO);
+        ProcesadorNotificaciones procesador = new ProcesadorNotificaciones();
+        procesador.agregarServicio("email", new ServicioNotificacionesEmail(colas));
+        procesador.configurarCircuito("email", 2, 60_000, 60_000);
+        Usuario usuario = new Usuario("U001", "Usuario Test", "test@ejemplo.com");
+        
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(procesador.encolarNotificacion(usuario, "m" + i, "email"));
+            }
+            long limite = System.currentTimeMillis() + 5000;
+            while (procesador.getNotificacionesEnviadas() < 5 && System.currentTimeMillis() < limite) {
+                Thread.sleep(10);
+            }
+            
+            assertEquals(5, procesador.getNotificacionesEnviadas());
+            assertEquals(0, procesador.getNotificacionesFallidas());
+            assertEquals(0, procesador.getNotificacionesReintentadas());
+            assertEquals(CircuitoServicio.EstadoCircuito.CERRADO, procesador.getEstadoCircuito("email"));
+            assertEquals(4, colas.getMensajesDescartados());
+        } finally {
+            procesador.detener();
+        }
+    }
+    
+    @Test
+    void debeDrenarPorLotesRespetandoElMaximoPorUsuario() {
+        ColasPendientesPorUsuario colas = new ColasPendientesPorUsuario();
+        for (int i = 0; i < 7; i++) {
+            colas.agregar("U001", "m" + i);
+        }
+        
+        List<Integer> tamanosLote = new ArrayList<>();
+        int retirados = colas.drenar(5, 2, (usuarioId, lote) -> tamanosLote.add(lote.size()));
+        
+        assertEquals(5, retirados);
+        assertEquals(List.of(2, 2, 1), tamanosLote);
+        assertEquals(2, colas.getCantidadPendientes("U001"));
+        assertTrue(colas.tienePendientes("U001"));
+    }
+    
+    @Test
+    void noDebePerderMensajesConProductoresYDrenadoConcurrentes() throws InterruptedException {
+        ColasPendientesPorUsuario colas = new ColasPendientesPorUsuario(
+                10_000, ColasPendientesPorUsuario.PoliticaDesborde.DESCARTAR_NUEVO);
+        int productores = 4;
+        int mensajesPorProductor = 5_000;
+        AtomicInteger recibidos = new AtomicInteger(0);
+        CountDownLatch terminaron = new CountDownLatch(productores);
+        ExecutorService hilos = Executors.newFixedThreadPool(productores);
+        
+        for (int p = 0; p < productores; p++) {
+            hilos.submit(() -> {
+                for (int i = 0; i < mensajesPorProductor; i++) {
+                    colas.agregar("U" + (i % 20), "mensaje " + i);
+                }
+                terminaron.countDown();
+            });
+        }
+        
+        // Drenar mientras los productores siguen agregando
+        while (terminaron.getCount() > 0) {
+            colas.drenar(Integer.MAX_VALUE, 100, (usuarioId, lote) -> recibidos.addAndGet(lote.size()));
+        }
+        colas.drenar(Integer.MAX_VALUE, 100, (usuarioId, lote) -> recibidos.addAndGet(lote.size()));
+        hilos.shutdown();
+        assertTrue(hilos.awaitTermination(5, TimeUnit.SECONDS));
+        
+        assertEquals(productores * mensajesPorProductor, recibidos.get());
+        assertEquals(0, colas.getMensajesDescartados());
+        assertEquals(0, colas.getCantidadUsuarios());
+    }
+    
+    private List<String> drenarTodo(ColasPendientesPorUsuario colas) {
+        List<String> mensajes = new ArrayList<>();
+        colas.drenar(Integer.MAX_VALUE, 10, (usuarioId, lote) -> mensajes.addAll(lote));
+        return mensajes;
+    }
+}
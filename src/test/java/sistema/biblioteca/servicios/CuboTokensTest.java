@@ -0,0 +1,23 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuboTokensTest {
+    
+    @Test
+    void debeRellenarCuandoElRelojDeNanosegundosSeDesborda() {
+        // Arrange - un token por segundo, gastado justo antes del desborde
+        CuboTokens cubo = new CuboTokens(1, 1.0);
+        assertEquals(0, cubo.reservar(Long.MAX_VALUE));
+        
+        // Act - pasado el desborde el reloj devuelve valores negativos
+        long esperaSinRelleno = cubo.reservar(Long.MAX_VALUE + 500_000_000L);
+        long esperaConRelleno = cubo.reservar(Long.MAX_VALUE + 2_500_000_000L);
+        
+        // Assert
+        assertTrue(esperaSinRelleno > 0);
+        assertEquals(0, esperaConRelleno);
+    }
+}
@@ -0,0 +1,46 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramaLatenciaTest {
+    
+    @Test
+    void debeCalcularPercentilesConErrorRelativoAcotado() {
+        // Arrange
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        
+        // Act - latencias de 1 a 10000 microsegundos
+        for (long micros = 1; micros <= 10000; micros++) {
+            histograma.registrar(micros * 1000);
+        }
+        
+        // Assert
+        assertEquals(10000, histograma.getCantidad());
+        assertEquals(10_000_000, histograma.getMaximoNanos());
+        assertEquals(10000L * 10001 / 2 * 1000, histograma.getSumaNanos());
+        assertEquals(5_000_000, histograma.getPercentilNanos(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, histograma.getPercentilNanos(99), 9_900_000 * 0.04);
+        assertEquals(9_990_000, histograma.getPercentilNanos(99.9), 9_990_000 * 0.04);
+        assertEquals(10_000_000, histograma.getPercentilNanos(100));
+    }
+    
+    @Test
+    void debeRegistrarValoresPequenosExactamente() {
+        // Arrange
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        
+        // Act
+        histograma.registrar(-5);
+        histograma.registrar(3);
+        histograma.registrar(40);
+        
+        // Assert
+        assertEquals(0, histograma.getPercentilNanos(10));
+        assertEquals(3, histograma.getPercentilNanos(50));
+        assertEquals(40, histograma.getPercentilNanos(100));
+        assertEquals(0, new HistogramaLatencia().getPercentilNanos(99));
+        assertThrows(IllegalArgumentException.class, () -> histograma.getPercentilNanos(101));
+    }
+}
@@ -0,0 +1,68 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.Test;
+import sistema.biblioteca.modelos.Usuario;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitadorTasaTest {
+    
+    private static final Usuario USUARIO = new Usuario("U001", "Usuario Test", "usuario@test.com");
+    
+    @Test
+    void debePurgarSoloLosCubosLlenos() {
+        // Arrange - un envío por destinatario en ráfaga, un token por segundo
+        LimitadorTasa limitador = new LimitadorTasa();
+        limitador.configurarLimiteDestinatario("email", 1, 1.0);
+        NotificacionPendiente notificacion = new NotificacionPendiente(USUARIO, "Aviso", "email", 5, 0);
+        long ahora = System.nanoTime();
+        
+        // Act
+        assertEquals(0, limitador.reservar(notificacion, ahora));
+        limitador.purgarDestinatariosInactivos(ahora);
+        
+        // Assert - el cubo con el token gastado sigue limitando al destinatario
+        assertTrue(limitador.reservar(notificacion, ahora) > 0);
+        
+        // Una vez lleno de nuevo, la purga lo quita y el destinatario vuelve a la capacidad configurada
+        long despues = ahora + 5_000_000_000L;
+        limitador.purgarDestinatariosInactivos(despues);
+        assertEquals(0, limitador.reservar(notificacion, despues));
+    }
+    
+    @Test
+    void laPurgaNoDebePerderUnaReservaConcurrente() throws InterruptedException {
+        for (int intento = 0; intento < 500; intento++) {
+            // Arrange - un cubo lleno a punto de reservarse mientras se purga
+            LimitadorTasa limitador = new LimitadorTasa();
+            limitador.configurarLimiteDestinatario("email", 1, 1.0);
+            NotificacionPendiente notificacion = new NotificacionPendiente(USUARIO, "Aviso", "email", 5, 0);
+            long ahora = System.nanoTime();
+            limitador.purgarDestinatariosInactivos(ahora);
+            assertEquals(0, limitador.reservar(notificacion, ahora));
+            long despues = ahora + 5_000_000_000L;
+            CountDownLatch inicio = new CountDownLatch(1);
+            
+            // Act
+            Thread purga = new Thread(() -> {
+                try {
+                    inicio.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                limitador.purgarDestinatariosInactivos(despues);
+            });
+            purga.start();
+            inicio.countDown();
+            long primera = limitador.reservar(notificacion, despues);
+            purga.join();
+            long segunda = limitador.reservar(notificacion, despues);
+            
+            // Assert - la primera reserva gasta el único token, así que la segunda espera
+            assertEquals(0, primera);
+            assertTrue(segunda > 0, "La reserva se hizo sobre un cubo ya purgado en el intento " + intento);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricasCanalTest {
+    
+    @Test
+    void laInstantaneaDebeReportarLosPercentilesDelIntervalo() {
+        // Arrange - un primer intervalo con entregas lentas
+        MetricasCanal metricas = new MetricasCanal("email");
+        for (int i = 0; i < 100; i++) {
+            metricas.registrarEnviada(TimeUnit.SECONDS.toNanos(1), 0);
+        }
+        InstantaneaMetricas primera = metricas.tomarInstantanea(0);
+        
+        // Act - un segundo intervalo con entregas rápidas
+        for (int i = 0; i < 100; i++) {
+            metricas.registrarEnviada(TimeUnit.MILLISECONDS.toNanos(1), 0);
+        }
+        InstantaneaMetricas segunda = metricas.tomarInstantanea(0);
+        InstantaneaMetricas vacia = metricas.tomarInstantanea(0);
+        
+        // Assert - las lentas no afectan al segundo intervalo, pero sí al histograma acumulado
+        assertEquals(1000, primera.getLatenciaP99Ms(), 1000 * 0.04);
+        assertEquals(1, segunda.getLatenciaP99Ms(), 0.04);
+        assertEquals(1, segunda.getLatenciaMaximaMs(), 0.04);
+        assertEquals(0, vacia.getLatenciaP99Ms());
+        assertEquals(200, metricas.getLatenciaEntrega().getCantidad());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), metricas.getLatenciaEntrega().getMaximoNanos());
+    }
+}
@@ -0,0 +1,55 @@
+package sistema.biblioteca.servicios;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlantillaMensajeTest {
+    
+    @Test
+    void debeRenderizarLosParametrosEnSuPosicion() {
+        PlantillaMensaje plantilla = PlantillaMensaje.compilar("Tu préstamo de '{0}' vence en {1} {2}. {1}!");
+        
+        assertEquals(3, plantilla.getCantidadParametros());
+        assertEquals("Tu préstamo de 'Rayuela' vence en 2 días. 2!", plantilla.renderizar("Rayuela", 2, "días"));
+        // El buffer reutilizado no arrastra restos del mensaje anterior
+        assertEquals("Tu préstamo de 'X' vence en 1 día. 1!", plantilla.renderizar("X", 1, "día"));
+    }
+    
+    @Test
+    void debeTratarComoLiteralLoQueNoEsUnMarcador() {
+        PlantillaMensaje plantilla = PlantillaMensaje.compilar("{a} {} {0} {");
+        
+        assertEquals(1, plantilla.getCantidadParametros());
+        assertEquals("{a} {} valor {", plantilla.renderizar("valor"));
+    }
+    
+    @Test
+    void debeRenderizarElMensajeUnaSolaVezYSoloCuandoSeNecesita() {
+        PlantillaMensaje plantilla = PlantillaMensaje.compilar("Hola {0}");
+        MensajePlantilla mensaje = plantilla.con("Ana");
+        
+        assertFalse(mensaje.estaRenderizado());
+        String texto = mensaje.renderizar();
+        assertEquals("Hola Ana", texto);
+        assertTrue(mensaje.estaRenderizado());
+        assertSame(texto, mensaje.renderizar());
+    }
+    
+    @Test
+    void debeRechazarParametrosFaltantes() {
+        PlantillaMensaje plantilla = PlantillaMensaje.compilar("{0} y {1}");
+        assertThrows(IllegalArgumentException.class, () -> plantilla.con("solo uno"));
+    }
+    
+    @Test
+    void debeReutilizarLaPlantillaRegistradaConElMismoTexto() {
+        RegistroPlantillas registro = new RegistroPlantillas();
+        PlantillaMensaje primera = registro.registrar("aviso", "Aviso: {0}");
+        
+        assertSame(primera, registro.registrar("aviso", "Aviso: {0}"));
+        assertNotSame(primera, registro.registrar("aviso", "Nuevo aviso: {0}"));
+        assertEquals("Nuevo aviso: x", registro.obtener("aviso").renderizar("x"));
+        assertThrows(IllegalArgumentException.class, () -> registro.obtener("inexistente"));
+    }
+}
@@ -3,8 +3,14 @@ package sistema.biblioteca.servicios;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import sistema.biblioteca.modelos.Usuario;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,21 +54,28 @@ class ProcesadorNotificacionesTest {
     
     @Test
     void debeRespetarPrioridades() throws InterruptedException {
-        // Arrange
-        CountDownLatch latch = new CountDownLatch(2);
-        mockServicio.setLatch(latch);
+        // Arrange - el único trabajador queda ocupado con la primera notificación,
+        // así que el resto espera completo en la cola antes de que se despache
+        ServicioRegistrador servicio = new ServicioRegistrador(0);
+        CountDownLatch retencion = new CountDownLatch(1);
+        servicio.retenerEnvios(retencion);
+        procesador.agregarServicio("ordenado", servicio);
+        procesador.encolarNotificacion(usuario, "Primera", "ordenado", 5);
+        assertTrue(servicio.esperarInicioEnvio(2), "La primera notificación debería estar enviándose");
         
-        // Act - Enviamos en orden inverso de prioridad
-        procesador.encolarNotificacion(usuario, "Mensaje con prioridad baja", "test", 9);
-        procesador.encolarNotificacion(usuario, "Mensaje con prioridad alta", "test", 1);
+        // Act - prioridades mezcladas
+        procesador.encolarNotificacion(usuario, "Baja 1", "ordenado", 9);
+        procesador.encolarNotificacion(usuario, "Media 1", "ordenado", 5);
+        procesador.encolarNotificacion(usuario, "Alta 1", "ordenado", 1);
+        procesador.encolarNotificacion(usuario, "Baja 2", "ordenado", 9);
+        procesador.encolarNotificacion(usuario, "Alta 2", "ordenado", 1);
+        procesador.encolarNotificacion(usuario, "Media 2", "ordenado", 5);
+        retencion.countDown();
         
-        // Assert - Esperar a que ambas notificaciones se procesen
-        assertTrue(latch.await(3, TimeUnit.SECONDS), "Las notificaciones deberían enviarse en 3 segundos");
-        assertEquals(2, mockServicio.getContadorNotificaciones(), "Deberían haberse enviado 2 notificaciones");
-        
-        // Verificar orden por prioridad - El último mensaje debería ser el de baja prioridad
-        assertEquals("Mensaje con prioridad baja", mockServicio.getUltimoMensaje(), 
-                "El último mensaje debería ser el de baja prioridad");
+        // Assert - por prioridad y, dentro de cada una, en orden de llegada
+        assertTrue(servicio.esperarEnvios(7, 3), "Las notificaciones deberían enviarse en 3 segundos");
+        assertEquals(List.of("Primera", "Alta 1", "Alta 2", "Media 1", "Media 2", "Baja 1", "Baja 2"),
+                servicio.getMensajes());
     }
     
     @Test
@@ -113,6 +126,412 @@ class ProcesadorNotificacionesTest {
                 "Deberían haberse enviado todas las notificaciones");
     }
     
+    @Test
+    void debeAgruparNotificacionesDelUsuarioEnUnResumen() throws InterruptedException {
+        // Arrange
+        CountDownLatch latch = new CountDownLatch(1);
+        mockServicio.setLatch(latch);
+        procesador.configurarResumen("test", 300);
+        
+        // Act
+        procesador.encolarNotificacion(usuario, "Préstamo 1 vencido", "test", 1);
+        procesador.encolarNotificacion(usuario, "Préstamo 2 vencido", "test", 1);
+        procesador.encolarNotificacion(usuario, "Préstamo 3 vencido", "test", 1);
+        
+        // Assert
+        assertTrue(latch.await(3, TimeUnit.SECONDS), "El resumen debería enviarse al vencer la ventana");
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertEquals(1, mockServicio.getContadorNotificaciones(), "Debería enviarse un único resumen");
+        String resumen = mockServicio.getUltimoMensaje();
+        assertTrue(resumen.contains("Préstamo 1 vencido"));
+        assertTrue(resumen.contains("Préstamo 2 vencido"));
+        assertTrue(resumen.contains("Préstamo 3 vencido"));
+    }
+    
+    @Test
+    void debeDiferirSinDescartarLoQueSuperaElLimiteDeTasa() throws InterruptedException {
+        // Arrange - ráfaga de 2 envíos y luego 10 por segundo
+        int numeroNotificaciones = 6;
+        CountDownLatch latch = new CountDownLatch(numeroNotificaciones);
+        mockServicio.setLatch(latch);
+        procesador.configurarLimiteCanal("test", 2, 10);
+        long inicio = System.nanoTime();
+        
+        // Act
+        for (int i = 0; i < numeroNotificaciones; i++) {
+            procesador.encolarNotificacion(usuario, "Mensaje limitado " + i, "test");
+        }
+        
+        // Assert - las 4 que exceden la ráfaga necesitan al menos ~400ms de cupo
+        assertTrue(latch.await(3, TimeUnit.SECONDS), "Todas las notificaciones deberían enviarse");
+        long transcurridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        assertTrue(transcurridoMs >= 300, "Los envíos deberían haberse espaciado según el límite");
+        assertEquals(numeroNotificaciones, mockServicio.getContadorNotificaciones());
+        assertTrue(procesador.getLimitadorTasa().obtenerNivelesCanales().containsKey("test"));
+    }
+    
+    @Test
+    void debeAbrirElCircuitoYEstacionarHastaQueLaPruebaTengaExito() throws InterruptedException {
+        // Arrange - el circuito se abre con 2 fallos y prueba de nuevo a los 300ms
+        procesador.configurarCircuito("test", 2, 300, 5000);
+        procesador.configurarReintentos("test", PoliticaReintentos.SIN_REINTENTOS);
+        mockServicio.setSimularFallo(true);
+        
+        // Act - dos fallos abren el circuito
+        procesador.encolarNotificacion(usuario, "Fallo 1", "test");
+        procesador.encolarNotificacion(usuario, "Fallo 2", "test");
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals(CircuitoServicio.EstadoCircuito.ABIERTO, procesador.getEstadoCircuito("test"));
+        
+        // Mientras está abierto, las notificaciones quedan estacionadas
+        CountDownLatch latch = new CountDownLatch(2);
+        mockServicio.setLatch(latch);
+        mockServicio.setSimularFallo(false);
+        procesador.encolarNotificacion(usuario, "Estacionada 1", "test");
+        procesador.encolarNotificacion(usuario, "Estacionada 2", "test");
+        
+        // Assert - la prueba cierra el circuito y se liberan las estacionadas
+        assertTrue(latch.await(3, TimeUnit.SECONDS), "Las notificaciones estacionadas deberían enviarse");
+        assertEquals(CircuitoServicio.EstadoCircuito.CERRADO, procesador.getEstadoCircuito("test"));
+        assertEquals(2, mockServicio.getContadorNotificaciones());
+    }
+    
+    @Test
+    void debeContarLasEstacionadasContraLaCapacidadDeLaCola() throws InterruptedException {
+        // Arrange - cola de 2 lugares y un circuito que se abre con el primer fallo
+        procesador.agregarServicio("test", mockServicio, 1, 2);
+        procesador.configurarCircuito("test", 1, 60_000, 5000);
+        procesador.configurarReintentos("test", PoliticaReintentos.SIN_REINTENTOS);
+        mockServicio.setSimularFallo(true);
+        procesador.encolarNotificacion(usuario, "Fallo", "test");
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (procesador.getEstadoCircuito("test") != CircuitoServicio.EstadoCircuito.ABIERTO
+                && System.nanoTime() < limite) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(CircuitoServicio.EstadoCircuito.ABIERTO, procesador.getEstadoCircuito("test"));
+        
+        // Act - las dos primeras pasan de la cola al circuito y ocupan su cupo
+        assertTrue(procesador.encolarNotificacion(usuario, "Estacionada 1", "test"));
+        assertTrue(procesador.encolarNotificacion(usuario, "Estacionada 2", "test"));
+        while (procesador.getNotificacionesPendientes("test") > 0 && System.nanoTime() < limite) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        boolean aceptada = procesador.encolarNotificacion(usuario, "Sin cupo", "test");
+        
+        // Assert
+        assertEquals(0, procesador.getNotificacionesPendientes("test"));
+        assertFalse(aceptada, "Las estacionadas deberían ocupar el cupo de la cola del canal");
+        assertEquals(1, procesador.getNotificacionesRechazadas());
+    }
+    
+    @Test
+    void debeReenviarLasNotificacionesSinConfirmarDeLaBandejaDeSalida(@TempDir Path directorio)
+            throws IOException, InterruptedException {
+        // Arrange - una ejecución anterior dejó dos notificaciones sin confirmar
+        try (BandejaSalidaPersistente anterior = new BandejaSalidaPersistente(directorio, 4096)) {
+            anterior.registrar(new NotificacionPendiente(usuario, "Pendiente 1", "test", 5, 0));
+            anterior.registrar(new NotificacionPendiente(usuario, "Pendiente 2", "test", 5, 1));
+        }
+        
+        CountDownLatch latch = new CountDownLatch(3);
+        mockServicio.setLatch(latch);
+        
+        try (BandejaSalidaPersistente bandeja = new BandejaSalidaPersistente(directorio, 4096)) {
+            // Act
+            int recuperadas = procesador.configurarBandejaSalida(bandeja);
+            procesador.encolarNotificacion(usuario, "Nueva", "test");
+            
+            // Assert - se envían las recuperadas y la nueva, y todas quedan confirmadas
+            assertEquals(2, recuperadas);
+            assertTrue(latch.await(3, TimeUnit.SECONDS), "Todas las notificaciones deberían enviarse");
+            procesador.detener();
+            assertEquals(0, bandeja.getCantidadPendientes());
+            assertEquals(3, bandeja.getConfirmadoHasta());
+        }
+    }
+    
+    @Test
+    void debeConfirmarLasRecuperadasAunqueLosTrabajadoresLasTomenEnSeguida(@TempDir Path directorio)
+            throws IOException, InterruptedException {
+        // Arrange - muchas pendientes y varios trabajadores ociosos esperando en la cola
+        int cantidad = 500;
+        try (BandejaSalidaPersistente anterior = new BandejaSalidaPersistente(directorio, 4096)) {
+            for (int i = 0; i < cantidad; i++) {
+                anterior.registrar(new NotificacionPendiente(usuario, "Pendiente " + i, "rapido", 5, i));
+            }
+        }
+        ProcesadorNotificaciones concurrente = new ProcesadorNotificaciones(4);
+        MockServicioNotificaciones servicio = new MockServicioNotificaciones();
+        CountDownLatch latch = new CountDownLatch(cantidad);
+        servicio.setLatch(latch);
+        concurrente.agregarServicio("rapido", servicio);
+        
+        try (BandejaSalidaPersistente bandeja = new BandejaSalidaPersistente(directorio, 4096)) {
+            // Act
+            assertEquals(cantidad, concurrente.configurarBandejaSalida(bandeja));
+            
+            // Assert - ninguna queda sin confirmar, aunque se envíe mientras se recupera el resto
+            assertTrue(latch.await(5, TimeUnit.SECONDS), "Todas las recuperadas deberían enviarse");
+            concurrente.detener();
+            assertEquals(0, bandeja.getCantidadPendientes());
+        } finally {
+            concurrente.detener();
+        }
+    }
+    
+    @Test
+    void debeGuardarEnLaBandejaLosMensajesRetenidosEnUnResumen(@TempDir Path directorio)
+            throws IOException, InterruptedException {
+        // Arrange
+        CountDownLatch latch = new CountDownLatch(1);
+        mockServicio.setLatch(latch);
+        procesador.configurarResumen("test", 300);
+        
+        try (BandejaSalidaPersistente bandeja = new BandejaSalidaPersistente(directorio, 4096)) {
+            procesador.configurarBandejaSalida(bandeja);
+            
+            // Act
+            procesador.encolarNotificacion(usuario, "Primero", "test");
+            procesador.encolarNotificacion(usuario, "Segundo", "test");
+            
+            // Assert - mientras la ventana está abierta, los mensajes sobreviven a una caída
+            assertEquals(2, bandeja.getCantidadPendientes());
+            
+            // Al entregarse el resumen se confirman los dos mensajes
+            assertTrue(latch.await(3, TimeUnit.SECONDS), "El resumen debería enviarse");
+            procesador.detener();
+            assertEquals(1, mockServicio.getContadorNotificaciones());
+            assertEquals(0, bandeja.getCantidadPendientes());
+        }
+    }
+    
+    @Test
+    void debeAdelantarLasNotificacionesQueSuperanSuRetardoMaximo() throws InterruptedException {
+        // Arrange - un servicio lento y un flujo constante de notificaciones urgentes
+        ServicioRegistrador servicioLento = new ServicioRegistrador(20);
+        procesador.agregarServicio("lento", servicioLento);
+        procesador.configurarRetardoMaximo(1, 0);
+        procesador.configurarRetardoMaximo(9, 100);
+        
+        // Act
+        for (int i = 0; i < 5; i++) {
+            procesador.encolarNotificacion(usuario, "Urgente " + i, "lento", 1);
+        }
+        procesador.encolarNotificacion(usuario, "Baja prioridad", "lento", 9);
+        for (int i = 5; i < 30; i++) {
+            procesador.encolarNotificacion(usuario, "Urgente " + i, "lento", 1);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        
+        // Assert - sin envejecimiento se enviaría después de todas las urgentes
+        assertTrue(servicioLento.esperarEnvios(31, 5), "Todas las notificaciones deberían enviarse");
+        int posicion = servicioLento.getMensajes().indexOf("Baja prioridad");
+        assertTrue(posicion >= 5 && posicion < 30,
+                "La notificación de baja prioridad debería adelantarse al vencer su retardo, posición: " + posicion);
+        assertEquals(100, procesador.getRetardoMaximoMs(9));
+        assertEquals(240000, procesador.getRetardoMaximoMs(5));
+    }
+    
+    @Test
+    void debeSeguirEnviandoPorUnCanalAunqueOtroEsteBloqueado() throws InterruptedException {
+        // Arrange - el canal sms queda bloqueado en su único hilo, con cola de 2 lugares
+        CountDownLatch desbloquear = new CountDownLatch(1);
+        ServicioBloqueado sms = new ServicioBloqueado(desbloquear);
+        procesador.agregarServicio("sms", sms, 1, 2);
+        
+        CountDownLatch latch = new CountDownLatch(10);
+        mockServicio.setLatch(latch);
+        
+        try {
+            // Act
+            assertTrue(procesador.encolarNotificacion(usuario, "SMS bloqueado", "sms"));
+            assertTrue(sms.esperarInicio(2), "El envío por sms debería haber empezado");
+            assertTrue(procesador.encolarNotificacion(usuario, "SMS 1", "sms"));
+            assertTrue(procesador.encolarNotificacion(usuario, "SMS 2", "sms"));
+            boolean aceptada = procesador.encolarNotificacion(usuario, "SMS 3", "sms");
+            for (int i = 0; i < 10; i++) {
+                procesador.encolarNotificacion(usuario, "Mensaje " + i, "test");
+            }
+            
+            // Assert - el otro canal no comparte hilos con el bloqueado
+            assertTrue(latch.await(2, TimeUnit.SECONDS),
+                    "Las notificaciones del canal test deberían enviarse aunque sms esté bloqueado");
+            assertFalse(aceptada, "La cola llena del canal sms debería rechazar la notificación");
+            assertEquals(1, procesador.getNotificacionesRechazadas());
+            assertEquals(2, procesador.getNotificacionesPendientes("sms"));
+            assertFalse(procesador.encolarNotificacion(usuario, "Sin canal", "fax"));
+        } finally {
+            desbloquear.countDown();
+        }
+    }
+    
+    @Test
+    void debeRegistrarMetricasDeEntregaPorCanal() throws InterruptedException {
+        // Arrange
+        CountDownLatch latch = new CountDownLatch(20);
+        mockServicio.setLatch(latch);
+        List<InstantaneaMetricas> publicadas = Collections.synchronizedList(new ArrayList<>());
+        procesador.configurarInstantaneasPeriodicas(50, publicadas::addAll);
+        
+        // Act
+        for (int i = 0; i < 20; i++) {
+            procesador.encolarNotificacion(usuario, "Mensaje " + i, "test");
+        }
+        procesador.encolarNotificacion(usuario, "Sin canal", "fax");
+        
+        // Assert
+        assertTrue(latch.await(2, TimeUnit.SECONDS), "Las notificaciones deberían enviarse");
+        MetricasCanal metricas = procesador.getMetricas("test");
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (metricas.getEnviadas() < 20 && System.nanoTime() < limite) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(20, metricas.getEncoladas());
+        assertEquals(20, metricas.getEnviadas());
+        assertEquals(20, metricas.getLatenciaEntrega().getCantidad());
+        assertEquals(1, procesador.getMetricas("fax").getFallidas());
+        
+        InstantaneaMetricas instantanea = procesador.obtenerInstantaneas().stream()
+                .filter(m -> m.getTipo().equals("test")).findFirst().orElseThrow();
+        assertEquals(0, instantanea.getPendientes());
+        assertTrue(instantanea.getLatenciaP50Ms() <= instantanea.getLatenciaP99Ms());
+        assertTrue(instantanea.getLatenciaP99Ms() <= instantanea.getLatenciaP999Ms());
+        assertTrue(instantanea.getLatenciaP999Ms() <= instantanea.getLatenciaMaximaMs());
+        
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertFalse(publicadas.isEmpty(), "Deberían publicarse instantáneas periódicas");
+    }
+    
+    @Test
+    void debeEncolarUnLoteYRechazarLoQueNoEntraEnLaCola() throws InterruptedException {
+        // Arrange - el canal sms queda bloqueado con cola de 3 lugares
+        CountDownLatch desbloquear = new CountDownLatch(1);
+        ServicioBloqueado sms = new ServicioBloqueado(desbloquear);
+        procesador.agregarServicio("sms", sms, 1, 3);
+        PlantillaMensaje plantilla = procesador.getPlantillas().registrar("test.lote", "Aviso {0}");
+        
+        CountDownLatch latch = new CountDownLatch(5);
+        mockServicio.setLatch(latch);
+        LoteNotificaciones loteTest = new LoteNotificaciones("test", 2);
+        LoteNotificaciones loteSms = new LoteNotificaciones("sms", 2);
+        for (int i = 0; i < 5; i++) {
+            loteTest.agregar(usuario, plantilla.con(i));
+            loteSms.agregar(usuario, plantilla.con(i));
+        }
+        
+        try {
+            // Act
+            assertTrue(procesador.encolarNotificacion(usuario, "SMS bloqueado", "sms"));
+            assertTrue(sms.esperarInicio(2), "El envío por sms debería haber empezado");
+            int admitidasTest = procesador.encolarLote(loteTest);
+            int admitidasSms = procesador.encolarLote(loteSms);
+            
+            // Assert
+            assertEquals(5, admitidasTest);
+            assertTrue(latch.await(2, TimeUnit.SECONDS), "El lote del canal test debería enviarse");
+            assertEquals(3, admitidasSms);
+            assertEquals(2, procesador.getNotificacionesRechazadas());
+            assertEquals(3, procesador.getNotificacionesPendientes("sms"));
+            assertEquals(4, procesador.getMetricas("sms").getEncoladas());
+        } finally {
+            desbloquear.countDown();
+        }
+    }
+    
+    /**
+     * Servicio que queda bloqueado en el envío hasta que se lo libera
+     */
+    private static class ServicioBloqueado extends ServicioRegistrador {
+        private final CountDownLatch desbloquear;
+        private final CountDownLatch iniciado = new CountDownLatch(1);
+        
+        ServicioBloqueado(CountDownLatch desbloquear) {
+            super(0);
+            this.desbloquear = desbloquear;
+        }
+        
+        @Override
+        public boolean enviarNotificacion(Usuario usuario, String mensaje) {
+            iniciado.countDown();
+            try {
+                desbloquear.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.enviarNotificacion(usuario, mensaje);
+        }
+        
+        boolean esperarInicio(long segundos) throws InterruptedException {
+            return iniciado.await(segundos, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Servicio que registra el orden de los mensajes y tarda un tiempo fijo en cada envío
+     */
+    private static class ServicioRegistrador implements ServicioNotificaciones {
+        private final List<String> mensajes = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch inicioEnvio = new CountDownLatch(1);
+        private final long demoraMs;
+        private volatile CountDownLatch retencion;
+        
+        ServicioRegistrador(long demoraMs) {
+            this.demoraMs = demoraMs;
+        }
+        
+        @Override
+        public boolean enviarNotificacion(Usuario usuario, String mensaje) {
+            inicioEnvio.countDown();
+            try {
+                CountDownLatch espera = retencion;
+                if (espera != null) {
+                    espera.await();
+                }
+                TimeUnit.MILLISECONDS.sleep(demoraMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mensajes.add(mensaje);
+            return true;
+        }
+        
+        @Override
+        public int enviarNotificacionGlobal(String mensaje) {
+            return 0;
+        }
+        
+        @Override
+        public boolean notificacionesPendientes(Usuario usuario) {
+            return false;
+        }
+        
+        @Override
+        public void procesarNotificacionesPendientes() {
+        }
+        
+        void retenerEnvios(CountDownLatch retencion) {
+            this.retencion = retencion;
+        }
+        
+        boolean esperarInicioEnvio(long segundos) throws InterruptedException {
+            return inicioEnvio.await(segundos, TimeUnit.SECONDS);
+        }
+        
+        boolean esperarEnvios(int cantidad, long segundos) throws InterruptedException {
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+            while (mensajes.size() < cantidad && System.nanoTime() < limite) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            return mensajes.size() >= cantidad;
+        }
+        
+        List<String> getMensajes() {
+            return new ArrayList<>(mensajes);
+        }
+    }
+    
     /**
      * Servicio mock para pruebas
      */
@@ -149,4 +149,84 @@ public class ValidadorRenovacionesTest {
         assertEquals(10, resultadoAcademico.getDiasSugeridos());
         assertEquals(3, resultadoReferencia.getDiasSugeridos());
     }
-} 
\ No newline at end of file
+    
+    @Test
+    public void testValidacionRapidaDevuelveMascaraDeMotivos() {
+        // Un préstamo histórico devuelto, con reservas pendientes
+        Usuario usuario = new Usuario("U001", "Usuario Test", "usuario@test.com");
+        Libro libro = new Libro("L001", "Libro Histórico", "Autor Test", "123456789", CategoriaRecurso.HISTORICO);
+        Prestamo prestamo = new Prestamo("P-001", libro, usuario);
+        prestamo.registrarDevolucion();
+        colaReservas.agregarReserva("L001", "U002");
+        
+        int completa = validador.validarMotivos(prestamo, false);
+        int rapida = validador.validarMotivos(prestamo, true);
+        
+        assertTrue(ValidadorRenovaciones.MotivoRechazoRenovacion.PRESTAMO_INACTIVO.estaEn(completa));
+        assertTrue(ValidadorRenovaciones.MotivoRechazoRenovacion.REQUIERE_AUTORIZACION.estaEn(completa));
+        assertTrue(ValidadorRenovaciones.MotivoRechazoRenovacion.RESERVAS_PENDIENTES.estaEn(completa));
+        // Con corte en el primer motivo no se llega a consultar el resto
+        assertEquals(ValidadorRenovaciones.MotivoRechazoRenovacion.PRESTAMO_INACTIVO.getMascara(), rapida);
+        assertFalse(validador.puedeRenovarse(prestamo));
+        
+        // El resultado detallado coincide con la máscara completa
+        ValidadorRenovaciones.ResultadoValidacion resultado = validador.validarRenovacion(prestamo);
+        assertEquals(completa, resultado.getMascaraMotivos());
+        assertEquals(ValidadorRenovaciones.MotivoRechazoRenovacion.desdeMascara(completa), resultado.getMotivos());
+    }
+    
+    @Test
+    public void testValidacionRapidaPermiteRenovacion() {
+        Usuario usuario = new Usuario("U001", "Usuario Test", "usuario@test.com");
+        Libro libro = new Libro("L001", "Libro Test", "Autor Test", "123456789", CategoriaRecurso.LITERATURA);
+        Prestamo prestamo = new Prestamo("P-001", libro, usuario);
+        
+        assertEquals(0, validador.validarMotivos(prestamo, false));
+        assertTrue(validador.puedeRenovarse(prestamo));
+    }
+    
+    @Test
+    public void testPoliticaDeBibliotecaSeSumaALasReglas() {
+        Usuario usuario = new Usuario("U001", "Usuario Test", "usuario@test.com");
+        Libro libro = new Libro("L001", "Libro Test", "Autor Test", "123456789", CategoriaRecurso.LITERATURA);
+        Prestamo prestamo = new Prestamo("P-001", libro, usuario);
+        
+        gestorReglas.cargarPolitica(
+            "si reservas >= 2 entonces RECHAZAR\n" +
+            "si categoria = LITERATURA entonces RENOVAR 10");
+        
+        // Sin reservas se aplican los días de la política
+        ValidadorRenovaciones.ResultadoValidacion resultado = validador.validarRenovacion(prestamo);
+        assertTrue(resultado.isRenovacionPermitida());
+        assertEquals(10, resultado.getDiasSugeridos());
+        
+        // Con dos reservas la política rechaza la renovación
+        colaReservas.agregarReserva("L001", "U002");
+        colaReservas.agregarReserva("L001", "U003");
+        resultado = validador.validarRenovacion(prestamo);
+        assertTrue(resultado.getMotivos().contains(
+            ValidadorRenovaciones.MotivoRechazoRenovacion.POLITICA_BIBLIOTECA));
+        assertTrue(resultado.getMotivos().contains(
+            ValidadorRenovaciones.MotivoRechazoRenovacion.RESERVAS_PENDIENTES));
+    }
+    
+    @Test
+    public void testPoliticaPermiteRenovarConDiasDeGracia() {
+        Usuario usuario = new Usuario("U001", "Usuario Test", "usuario@test.com");
+        Libro libro = new Libro("L001", "Libro Test", "Autor Test", "123456789", CategoriaRecurso.LITERATURA);
+        Prestamo prestamo = new Prestamo("P-001", libro, usuario);
+        prestamo.setFechaDevolucionEstimada(LocalDateTime.now().minusDays(2));
+        
+        gestorReglas.cargarPolitica("si diasVencido > 0 y diasVencido <= 3 entonces RENOVAR 3");
+        
+        // Dentro de los días de gracia la política permite renovar el préstamo vencido
+        ValidadorRenovaciones.ResultadoValidacion resultado = validador.validarRenovacion(prestamo);
+        assertTrue(resultado.isRenovacionPermitida());
+        assertEquals(3, resultado.getDiasSugeridos());
+        
+        // Pasados los días de gracia vuelve a rechazarse por vencido
+        prestamo.setFechaDevolucionEstimada(LocalDateTime.now().minusDays(5));
+        assertTrue(ValidadorRenovaciones.MotivoRechazoRenovacion.PRESTAMO_VENCIDO.estaEn(
+            validador.validarMotivos(prestamo, false)));
+    }
+}